@@ -0,0 +1,59 @@
+package io.github.thacbao.itemcf.benchmark;
+
+import io.github.thacbao.itemcf.core.ComputationMode;
+import io.github.thacbao.itemcf.core.InteractionMatrix;
+import io.github.thacbao.itemcf.core.SimilarityCalculator;
+import io.github.thacbao.itemcf.similarity.CosineSimilarityStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Full similarity calculation with the engine's default settings, streaming
+ * into a sink that only counts. Compare thread counts with
+ * {@code -p parallelism=1,2,4,8}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ComputeBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int items;
+
+    @Param({"INVERTED_INDEX", "APPROXIMATE"})
+    ComputationMode mode;
+
+    @Param("1")
+    int parallelism;
+
+    private InteractionMatrix matrix;
+    private SimilarityCalculator calculator;
+
+    @Setup
+    public void setUp() {
+        matrix = ZipfianInteractions.ofItems(items).matrix();
+        calculator = new SimilarityCalculator(CosineSimilarityStrategy.INSTANCE, 0.15, 2, 50, mode, parallelism);
+    }
+
+    @Benchmark
+    public long compute() {
+        LongAdder kept = new LongAdder();
+        calculator.compute(matrix, neighbours -> kept.add(neighbours.size()));
+        return kept.sum();
+    }
+}
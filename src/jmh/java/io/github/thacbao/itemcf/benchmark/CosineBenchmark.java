@@ -0,0 +1,85 @@
+package io.github.thacbao.itemcf.benchmark;
+
+import io.github.thacbao.itemcf.similarity.CosineSimilarityStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One cosine evaluation between two item vectors sharing about a third of
+ * their users, through the boxed map overload and the sorted-row overloads
+ * with and without precomputed norms. Run with {@code -prof gc} to see allocation per
+ * pair.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CosineBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int length;
+
+    private final CosineSimilarityStrategy strategy = CosineSimilarityStrategy.INSTANCE;
+
+    private Map<Integer, Double> map1;
+    private Map<Integer, Double> map2;
+    private int[] users1;
+    private int[] users2;
+    private double[] scores1;
+    private double[] scores2;
+    private double norm1;
+    private double norm2;
+
+    @Setup
+    public void setUp() {
+        // Users 0, 2, 4, ... and 0, 3, 6, ...: every sixth user is shared
+        users1 = new int[length];
+        users2 = new int[length];
+        scores1 = new double[length];
+        scores2 = new double[length];
+        map1 = new HashMap<>();
+        map2 = new HashMap<>();
+        for (int k = 0; k < length; k++) {
+            users1[k] = 2 * k;
+            users2[k] = 3 * k;
+            scores1[k] = 1 + k % 5;
+            scores2[k] = 1 + (k * 7) % 5;
+            map1.put(users1[k], scores1[k]);
+            map2.put(users2[k], scores2[k]);
+            norm1 += scores1[k] * scores1[k];
+            norm2 += scores2[k] * scores2[k];
+        }
+        norm1 = Math.sqrt(norm1);
+        norm2 = Math.sqrt(norm2);
+    }
+
+    @Benchmark
+    public double mapVectors() {
+        return strategy.compute(map1, map2);
+    }
+
+    @Benchmark
+    public double sortedRows() {
+        return strategy.compute(users1, scores1, 0, length, users2, scores2, 0, length);
+    }
+
+    @Benchmark
+    public double sortedRowsWithNorms() {
+        return strategy.compute(users1, scores1, 0, length, norm1, users2, scores2, 0, length, norm2);
+    }
+}
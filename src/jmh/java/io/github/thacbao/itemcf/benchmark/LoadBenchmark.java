@@ -0,0 +1,49 @@
+package io.github.thacbao.itemcf.benchmark;
+
+import io.github.thacbao.itemcf.core.InteractionMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the CSR matrix from a keyset loader, including the per-page
+ * {@code Interaction} allocation a real loader would do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoadBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int items;
+
+    @Param("1000")
+    int batchSize;
+
+    private ZipfianInteractions log;
+
+    @Setup
+    public void setUp() {
+        log = ZipfianInteractions.ofItems(items);
+    }
+
+    @Benchmark
+    public InteractionMatrix load() {
+        InteractionMatrix matrix = new InteractionMatrix();
+        matrix.loadFrom(log.loader(), batchSize);
+        return matrix;
+    }
+}
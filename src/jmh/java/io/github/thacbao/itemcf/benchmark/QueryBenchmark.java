@@ -0,0 +1,75 @@
+package io.github.thacbao.itemcf.benchmark;
+
+import io.github.thacbao.itemcf.api.RecommendationEngine;
+import io.github.thacbao.itemcf.config.RecommendationConfig;
+import io.github.thacbao.itemcf.model.RecommendationResult;
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import io.github.thacbao.itemcf.port.impl.InMemorySimilarityStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read path against a populated {@link InMemorySimilarityStore} without a
+ * cache: throughput plus latency percentiles ({@link Mode#SampleTime}).
+ * Queried items follow the Zipfian popularity of the log, so head items with
+ * full neighbour lists dominate, as in production traffic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class QueryBenchmark {
+
+    private static final int USERS = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    int items;
+
+    private ZipfianInteractions log;
+    private InMemorySimilarityStore store;
+    private RecommendationEngine engine;
+    private List<Set<Integer>> histories;
+
+    private int nextItem;
+    private int nextUser;
+
+    @Setup
+    public void setUp() {
+        log = ZipfianInteractions.ofItems(items);
+        store = new InMemorySimilarityStore();
+        engine = RecommendationEngine.withCursorLoader(log.loader(), store, RecommendationConfig.builder()
+                .batchSize(10_000)
+                .build());
+        engine.calculateAndStoreSimilarities();
+        histories = log.histories(USERS);
+    }
+
+    @Benchmark
+    public List<SimilarityResult> findSimilar() {
+        int k = nextItem;
+        nextItem = k + 1 == log.size() ? 0 : k + 1;
+        return store.findSimilar(log.itemAt(k), RecommendationConfig.DEFAULT_TOP_K_SIMILAR);
+    }
+
+    @Benchmark
+    public List<RecommendationResult> getRecommendationsForUser() {
+        int user = nextUser;
+        nextUser = (user + 1) % USERS;
+        return engine.getRecommendationsForUser(user, histories.get(user), 20);
+    }
+}
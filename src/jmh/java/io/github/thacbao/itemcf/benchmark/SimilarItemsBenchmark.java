@@ -0,0 +1,74 @@
+package io.github.thacbao.itemcf.benchmark;
+
+import io.github.thacbao.itemcf.api.RecommendationEngine;
+import io.github.thacbao.itemcf.config.RecommendationConfig;
+import io.github.thacbao.itemcf.model.RecommendationResult;
+import io.github.thacbao.itemcf.port.impl.InMemoryCachePort;
+import io.github.thacbao.itemcf.port.impl.InMemorySimilarityStore;
+import io.github.thacbao.itemcf.port.impl.NoOpCachePort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code getSimilarItems} on the cached path (every item fits in an
+ * {@link InMemoryCachePort}, so all requests hit) and on the uncached path
+ * (every request reads the store). Items are queried in Zipfian order. Run
+ * with {@code -prof gc} to compare allocation per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SimilarItemsBenchmark {
+
+    @Param({"10000", "100000"})
+    int items;
+
+    @Param({"true", "false"})
+    boolean cached;
+
+    @Param({"10", "50"})
+    int limit;
+
+    private ZipfianInteractions log;
+    private RecommendationEngine engine;
+    private int nextItem;
+
+    @Setup
+    public void setUp() {
+        log = ZipfianInteractions.ofItems(items);
+        engine = RecommendationEngine.withCursorLoader(log.loader(), new InMemorySimilarityStore(),
+                RecommendationConfig.builder()
+                        .batchSize(10_000)
+                        .cachePort(cached
+                                ? InMemoryCachePort.builder().maximumWeight(2L * items).build()
+                                : NoOpCachePort.INSTANCE)
+                        .build());
+        engine.calculateAndStoreSimilarities();
+        // Fill the cache, so the measurement only sees hits
+        for (int k = 0; k < log.size(); k++) {
+            engine.getSimilarItems(log.itemAt(k), limit);
+        }
+    }
+
+    @Benchmark
+    public List<RecommendationResult> getSimilarItems() {
+        int k = nextItem;
+        nextItem = k + 1 == log.size() ? 0 : k + 1;
+        return engine.getSimilarItems(log.itemAt(k), limit);
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.thacbao.itemcf.benchmark;
+
+import io.github.thacbao.itemcf.core.InteractionMatrix;
+import io.github.thacbao.itemcf.model.Interaction;
+import io.github.thacbao.itemcf.model.InteractionBatch;
+import io.github.thacbao.itemcf.port.CursorInteractionLoader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic interaction log with Zipfian item popularity: the
+ * item of rank {@code r} is drawn with probability proportional to
+ * {@code 1 / r^exponent}, so a few head items collect most interactions and
+ * the tail is long, as in real catalogs. Users are drawn uniformly, which
+ * keeps per-user history sizes realistic instead of producing one user who
+ * touched a large share of the catalog.
+ * <p>
+ * Item IDs equal popularity ranks (0 is the most popular); scores are
+ * integers in [1, 5]. The log is generated once into primitive arrays so
+ * that benchmarks measure the library, not the generator.
+ */
+public final class ZipfianInteractions {
+
+    /** Interactions per item at every scale. */
+    public static final int INTERACTIONS_PER_ITEM = 10;
+
+    private final int items;
+    private final int users;
+    private final int[] userIds;
+    private final int[] itemIds;
+    private final double[] scores;
+
+    /**
+     * @param items    catalog size
+     * @param users    number of distinct users drawn from
+     * @param count    number of interactions to generate
+     * @param exponent Zipf exponent of item popularity, typically about 1
+     * @param seed     random seed
+     */
+    public ZipfianInteractions(int items, int users, int count, double exponent, long seed) {
+        this.items = items;
+        this.users = users;
+        this.userIds = new int[count];
+        this.itemIds = new int[count];
+        this.scores = new double[count];
+
+        double[] cumulative = new double[items];
+        double sum = 0;
+        for (int rank = 0; rank < items; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int k = 0; k < count; k++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble(sum));
+            itemIds[k] = rank >= 0 ? rank : -rank - 1;
+            userIds[k] = random.nextInt(users);
+            scores[k] = 1 + random.nextInt(5);
+        }
+    }
+
+    /** The standard scale used by the benchmarks: users = items, ten interactions per item. */
+    public static ZipfianInteractions ofItems(int items) {
+        return new ZipfianInteractions(items, items, items * INTERACTIONS_PER_ITEM, 1.0, 42);
+    }
+
+    public int items() {
+        return items;
+    }
+
+    public int users() {
+        return users;
+    }
+
+    public int size() {
+        return itemIds.length;
+    }
+
+    /** Item of the {@code k}-th interaction; cycling through these samples items by popularity. */
+    public int itemAt(int k) {
+        return itemIds[k];
+    }
+
+    /**
+     * Interaction histories of users {@code 0 .. count - 1}, as a caller would
+     * pass them to {@code getRecommendationsForUser}.
+     */
+    public List<Set<Integer>> histories(int count) {
+        List<Set<Integer>> histories = new ArrayList<>(count);
+        for (int u = 0; u < count; u++) {
+            histories.add(new HashSet<>());
+        }
+        for (int k = 0; k < size(); k++) {
+            if (userIds[k] < count) {
+                histories.get(userIds[k]).add(itemIds[k]);
+            }
+        }
+        return histories;
+    }
+
+    /** Keyset loader over the log; the cursor is the position of the next interaction. */
+    public CursorInteractionLoader loader() {
+        return (cursor, limit) -> {
+            int from = cursor == null ? 0 : Integer.parseInt(cursor);
+            int to = Math.min(size(), from + limit);
+            List<Interaction> page = new ArrayList<>(to - from);
+            for (int k = from; k < to; k++) {
+                page.add(new Interaction(userIds[k], itemIds[k], scores[k]));
+            }
+            String next = Integer.toString(to);
+            return to == size() ? InteractionBatch.last(page, next) : InteractionBatch.of(page, next);
+        };
+    }
+
+    /** Loads the whole log into a matrix. */
+    public InteractionMatrix matrix() {
+        InteractionMatrix matrix = new InteractionMatrix();
+        matrix.loadFrom(loader(), 10_000);
+        return matrix;
+    }
+}
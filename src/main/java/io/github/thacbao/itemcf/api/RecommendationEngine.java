@@ -1,19 +1,45 @@
 package io.github.thacbao.itemcf.api;
 
 import io.github.thacbao.itemcf.config.RecommendationConfig;
+import io.github.thacbao.itemcf.core.AsyncSimilarityWriter;
+import io.github.thacbao.itemcf.core.ComputationMode;
+import io.github.thacbao.itemcf.core.IncrementalCosineState;
 import io.github.thacbao.itemcf.core.InteractionMatrix;
+import io.github.thacbao.itemcf.core.RecallReport;
 import io.github.thacbao.itemcf.core.SimilarityCalculator;
+import io.github.thacbao.itemcf.core.TrimStats;
+import io.github.thacbao.itemcf.model.Interaction;
 import io.github.thacbao.itemcf.model.RecommendationResult;
 import io.github.thacbao.itemcf.model.SimilarityResult;
 import io.github.thacbao.itemcf.port.CachePort;
+import io.github.thacbao.itemcf.port.CursorInteractionLoader;
 import io.github.thacbao.itemcf.port.InteractionLoader;
 import io.github.thacbao.itemcf.port.SimilarityStore;
+import io.github.thacbao.itemcf.util.IntDoubleHashMap;
+import io.github.thacbao.itemcf.util.IntHashSet;
+import io.github.thacbao.itemcf.util.TopKHeap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Main entry point of the ItemCF library
@@ -28,11 +54,29 @@ public class RecommendationEngine {
     private static final Duration CACHE_TTL_SIMILAR = Duration.ofHours(24);
     private static final Duration CACHE_TTL_USER = Duration.ofHours(6);
 
-    private final InteractionLoader loader;
+    /** Popular items whose neighbours are fetched with one bulk lookup during warm-up. */
+    private static final int WARM_UP_BATCH_SIZE = 256;
+
+    private final CursorInteractionLoader loader;
     private final SimilarityStore store;
     private final RecommendationConfig config;
     private final SimilarityCalculator calculator;
     private final CachePort cache;
+    private final Executor asyncExecutor;
+
+    // Shared by the calculation, cache warm-up and batch recommendations; null when parallelism is 1.
+    // Its workers are daemon threads that retire when idle, so it needs no shutdown
+    private final ForkJoinPool pool;
+
+    // Cache misses being loaded, by cache key; concurrent misses wait for the same result
+    private final ConcurrentHashMap<String, CompletableFuture<List<RecommendationResult>>> inFlight =
+            new ConcurrentHashMap<>();
+
+    /** Statistics for {@link #applyInteractions}; replaced after every full recalculation. */
+    private volatile IncrementalCosineState incrementalState;
+
+    // Items of the last warmed recalculation, whose similar-item entries may still be cached
+    private volatile int[] cachedItemIds;
 
     /**
      * Creates a new engine with the given ports and configuration.
@@ -42,58 +86,110 @@ public class RecommendationEngine {
      * @param config algorithm configuration
      */
     public RecommendationEngine(InteractionLoader loader, SimilarityStore store, RecommendationConfig config) {
+        this(CursorInteractionLoader.fromOffsetLoader(Objects.requireNonNull(loader, "loader must not be null")),
+                store, config);
+    }
+
+    /**
+     * Creates a new engine that reads interactions by keyset pagination, which
+     * keeps every page equally cheap on large tables.
+     *
+     * @param loader the source of user-item interactions
+     * @param store  where computed similarity scores are persisted and queried
+     * @param config algorithm configuration
+     */
+    public static RecommendationEngine withCursorLoader(
+            CursorInteractionLoader loader, SimilarityStore store, RecommendationConfig config) {
+        return new RecommendationEngine(Objects.requireNonNull(loader, "loader must not be null"), store, config);
+    }
+
+    private RecommendationEngine(CursorInteractionLoader loader, SimilarityStore store, RecommendationConfig config) {
         this.loader = Objects.requireNonNull(loader, "loader must not be null");
         this.store = Objects.requireNonNull(store, "store must not be null");
         this.config = Objects.requireNonNull(config, "config must not be null");
+        if (config.isIncrementalUpdates() && !store.supportsReplace()) {
+            throw new IllegalArgumentException(
+                    "incrementalUpdates requires a store supporting replaceSimilar, got "
+                            + store.getClass().getSimpleName());
+        }
         this.cache = config.getCachePort();
+        this.asyncExecutor = config.getAsyncExecutor() != null
+                ? config.getAsyncExecutor()
+                : DefaultAsyncExecutor.INSTANCE;
+        this.pool = config.getParallelism() > 1 ? new ForkJoinPool(config.getParallelism()) : null;
         this.calculator = new SimilarityCalculator(
                 config.getStrategy(),
                 config.getSimilarityThreshold(),
-                config.getMinCommonUsers());
+                config.getMinCommonUsers(),
+                config.getTopKSimilar(),
+                config.getComputationMode(),
+                config.getParallelism(),
+                config.getLshBands(),
+                config.getLshRows(),
+                config.isCenterOnUserMean(),
+                pool);
     }
+
     /**
-     * Runs a full recalculation of all item-similarity scores
+     * Runs a full recalculation of all item-similarity scores.
+     * <p>
+     * Results are written into a new store generation while queries keep being
+     * served from the previous one; the generation is committed only after every
+     * result has been written, and caches are evicted only after the commit. If
+     * the run fails, the generation is aborted and the previous data stays.
      */
     public void calculateAndStoreSimilarities() {
         log.info("ItemCF: starting full similarity recalculation");
         long startTime = System.currentTimeMillis();
 
         try {
-            // Clear old data
-            store.deleteAll();
-            log.debug("ItemCF: cleared existing similarity store");
-
             // Build item-user matrix
-            InteractionMatrix matrix = new InteractionMatrix();
-            matrix.load(loader, config.getBatchSize());
+            InteractionMatrix matrix = loadMatrix();
 
             if (matrix.isEmpty()) {
-                log.warn("ItemCF: no interactions found, aborting similarity calculation");
+                log.warn("ItemCF: no interactions found, keeping existing similarities");
                 return;
             }
 
             log.info("ItemCF: loaded {} interactions across {} items",
                     matrix.totalInteractions(), matrix.itemCount());
 
-            // Compute pairwise similarities
-            List<SimilarityResult> allResults = calculator.compute(matrix.getMatrix());
-
-            // Flush to store in configurable batches (avoid OOM for large datasets)
-            int saveBatch = config.getSaveBatchSize();
-            for (int i = 0; i < allResults.size(); i += saveBatch) {
-                int end = Math.min(i + saveBatch, allResults.size());
-                store.saveAll(allResults.subList(i, end));
+            // Stream results into a new generation while computing; a bounded
+            // queue of saveBatchSize chunks caps how many results are held in memory
+            SimilarityStore.Generation generation = store.beginGeneration();
+            AsyncSimilarityWriter writer = new AsyncSimilarityWriter(
+                    generation::saveAll, config.getSaveBatchSize(), config.getWriteQueueCapacity());
+            long savedPairs;
+            try {
+                calculator.compute(matrix, writer);
+                writer.close();
+                savedPairs = writer.writtenCount();
+            } catch (RuntimeException | Error e) {
+                // compute() returns only once every block has stopped, so nothing feeds the
+                // writer any more; do not flush queued results into a generation that is thrown away
+                writer.abort();
+                generation.abort();
+                throw e;
             }
 
-            log.info("ItemCF: saved {} similarity pairs to store", allResults.size());
+            generation.commit();
+            log.info("ItemCF: committed {} similarity pairs to store", savedPairs);
 
-            // Evict stale caches
-            cache.evictByPattern(CACHE_PREFIX_SIMILAR + "*");
+            if (config.isIncrementalUpdates()) {
+                incrementalState = IncrementalCosineState.build(matrix);
+            }
+
+            // Touch caches only once readers see the new generation
+            if (config.getCacheWarmUpItems() > 0) {
+                refreshSimilarItems(matrix);
+            } else {
+                cache.evictByPattern(CACHE_PREFIX_SIMILAR + "*");
+            }
             cache.evictByPattern(CACHE_PREFIX_USER + "*");
 
             long durationSec = (System.currentTimeMillis() - startTime) / 1000;
             log.info("ItemCF: recalculation complete in {}s ({} items, {} pairs)",
-                    durationSec, matrix.itemCount(), allResults.size());
+                    durationSec, matrix.itemCount(), savedPairs);
 
         } catch (Exception e) {
             log.error("ItemCF: similarity recalculation failed", e);
@@ -101,38 +197,176 @@ public class RecommendationEngine {
         }
     }
 
+    /**
+     * Measures how many exact neighbours the configured computation finds. The
+     * interactions are loaded once and the neighbour lists are computed twice,
+     * with the configured mode and with {@link ComputationMode#INVERTED_INDEX},
+     * using the same strategy and limits; nothing is written to the store. Use
+     * it to tune {@link RecommendationConfig.Builder#lshBands(int)} and
+     * {@link RecommendationConfig.Builder#lshRows(int)} for
+     * {@link ComputationMode#APPROXIMATE} on a representative data set.
+     *
+     * @return recall and timings of the configured mode against the exact one
+     */
+    public RecallReport evaluateRecall() {
+        InteractionMatrix matrix = loadMatrix();
+        SimilarityCalculator exact = new SimilarityCalculator(
+                config.getStrategy(),
+                config.getSimilarityThreshold(),
+                config.getMinCommonUsers(),
+                config.getTopKSimilar(),
+                ComputationMode.INVERTED_INDEX,
+                config.getParallelism(),
+                SimilarityCalculator.DEFAULT_LSH_BANDS,
+                SimilarityCalculator.DEFAULT_LSH_ROWS,
+                config.isCenterOnUserMean(),
+                pool);
+        RecallReport report = RecallReport.evaluate(matrix, exact, calculator);
+        log.info("ItemCF: {} mode against exact: {}", config.getComputationMode(), report);
+        return report;
+    }
+
+    /**
+     * Folds new interactions into the current similarities without a full
+     * recalculation. Only the neighbour lists of items whose vectors changed,
+     * and of items co-occurring with them, are recomputed and written with
+     * {@link SimilarityStore#replaceSimilar}; their cache entries, and those of
+     * the users in {@code delta}, are evicted.
+     * <p>
+     * Requires {@link RecommendationConfig.Builder#incrementalUpdates(boolean)}
+     * and at least one completed {@link #calculateAndStoreSimilarities()}. A
+     * later full recalculation rebuilds everything from the loader, so deltas
+     * must also be visible to the loader by then to be kept.
+     * <p>
+     * If writing to the store fails, the store may hold only part of the
+     * update. The in-memory statistics are then discarded and further calls
+     * throw until the next full recalculation rebuilds them.
+     *
+     * @param delta new or updated interactions; a repeated (user, item) pair
+     *              keeps the higher score, as during loading
+     * @throws IllegalStateException if incremental updates are disabled, no
+     *                               recalculation has completed yet, or an
+     *                               earlier update failed since the last one
+     */
+    public void applyInteractions(Collection<Interaction> delta) {
+        Objects.requireNonNull(delta, "delta must not be null");
+        if (!config.isIncrementalUpdates()) {
+            throw new IllegalStateException("Incremental updates are not enabled");
+        }
+        IncrementalCosineState state = incrementalState;
+        if (state == null) {
+            throw new IllegalStateException(
+                    "No similarity calculation has completed since the last incremental update failure");
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> affected;
+        synchronized (state) {
+            if (incrementalState != state) {
+                throw new IllegalStateException("Incremental state was discarded, run a full recalculation");
+            }
+            affected = state.apply(delta);
+            try {
+                for (int itemId : affected) {
+                    store.replaceSimilar(itemId, state.neighbours(itemId, config.getSimilarityThreshold(),
+                            config.getMinCommonUsers(), config.getTopKSimilar()));
+                }
+            } catch (RuntimeException | Error e) {
+                // The state already holds the delta but the store does not; keep them from diverging
+                incrementalState = null;
+                for (int itemId : affected) {
+                    cache.evict(similarKey(itemId));
+                }
+                log.error("ItemCF: incremental update failed, incremental updates are disabled "
+                        + "until the next full recalculation", e);
+                throw e;
+            }
+        }
+
+        for (int itemId : affected) {
+            cache.evict(similarKey(itemId));
+        }
+        delta.stream().map(Interaction::userId).distinct()
+                .forEach(userId -> cache.evict(CACHE_PREFIX_USER + userId));
+
+        log.info("ItemCF: applied {} interactions incrementally, {} items updated", delta.size(), affected.size());
+    }
+
+    private InteractionMatrix loadMatrix() {
+        Path snapshot = config.getSnapshotPath();
+        InteractionMatrix matrix = snapshot != null ? restoreSnapshot(snapshot) : new InteractionMatrix();
+        matrix.loadFrom(loader, config.getBatchSize(),
+                config.getLoadPrefetchDepth(), config.getLoadParallelism());
+
+        // Checkpoint before sampling so later runs resume from the full data
+        if (snapshot != null) {
+            try {
+                matrix.saveSnapshot(snapshot, config.isSnapshotCompression());
+            } catch (UncheckedIOException e) {
+                log.warn("ItemCF: could not write matrix snapshot {}, next run reloads more data", snapshot, e);
+            }
+        }
+
+        if (config.getMaxInteractionsPerUser() > 0 || config.getMaxInteractionsPerItem() > 0) {
+            TrimStats trim = matrix.downsample(config.getMaxInteractionsPerUser(), config.getMaxInteractionsPerItem());
+            if (trim.trimmed()) {
+                log.info("ItemCF: down-sampled {} heavy users and {} popular items, kept {} of {} entries, "
+                        + "co-occurrences {} -> {}",
+                        trim.usersCapped(), trim.itemsCapped(), trim.entriesAfter(), trim.entriesBefore(),
+                        trim.cooccurrencesBefore(), trim.cooccurrencesAfter());
+            }
+        }
+        return matrix;
+    }
+
+    /** Restores the snapshot if there is a usable one, otherwise starts from an empty matrix. */
+    private static InteractionMatrix restoreSnapshot(Path snapshot) {
+        if (!Files.exists(snapshot)) {
+            return new InteractionMatrix();
+        }
+        try {
+            InteractionMatrix matrix = InteractionMatrix.fromSnapshot(snapshot);
+            log.info("ItemCF: restored {} entries from snapshot {}, resuming after watermark {}",
+                    matrix.entryCount(), snapshot, matrix.watermark());
+            return matrix;
+        } catch (UncheckedIOException | IllegalStateException e) {
+            log.warn("ItemCF: ignoring unreadable matrix snapshot {}, loading everything", snapshot, e);
+            return new InteractionMatrix();
+        }
+    }
+
     /**
      * Returns the top-{@code limit} items most similar to the given item.
      * 
      * @param itemId the reference item ID
      * @param limit  maximum number of results to return
-     * @return similar items ordered by similarity score descending
+     * @return similar items ordered by similarity score descending; an
+     *         unmodifiable view shared with the cache
      */
     @SuppressWarnings("unchecked")
     public List<RecommendationResult> getSimilarItems(int itemId, int limit) {
-        String cacheKey = CACHE_PREFIX_SIMILAR + itemId;
+        String cacheKey = similarKey(itemId);
 
         // Cache hit
         Optional<Object> cached = cache.get(cacheKey);
         if (cached.isPresent()) {
             log.debug("ItemCF: cache hit for similar items of item {}", itemId);
-            List<RecommendationResult> full = (List<RecommendationResult>) cached.get();
-            return full.stream().limit(limit).collect(Collectors.toList());
+            return head((List<RecommendationResult>) cached.get(), limit);
         }
 
-        // Fetch from store — use topKSimilar as the internal cap
-        List<SimilarityResult> similarities = store.findSimilar(itemId, config.getTopKSimilar());
+        List<RecommendationResult> results = loadOnce(cacheKey, () -> {
+            // Fetch from store — use topKSimilar as the internal cap
+            List<RecommendationResult> loaded = toRecommendations(store.findSimilar(itemId, config.getTopKSimilar()));
 
-        List<RecommendationResult> results = similarities.stream()
-                .map(sr -> new RecommendationResult(sr.itemId2(), sr.score()))
-                .sorted()
-                .collect(Collectors.toList());
-
-        if (!results.isEmpty()) {
-            cache.put(cacheKey, results, CACHE_TTL_SIMILAR);
-        }
+            if (!loaded.isEmpty()) {
+                cache.put(cacheKey, loaded, jittered(CACHE_TTL_SIMILAR));
+            }
+            return loaded;
+        });
 
-        return results.stream().limit(limit).collect(Collectors.toList());
+        return head(results, limit);
     }
 
     /**
@@ -142,7 +376,8 @@ public class RecommendationEngine {
      * @param userInteractedItems set of item IDs the user has already interacted
      *                            with
      * @param limit               maximum number of results to return
-     * @return personalized recommendations ordered by aggregated score descending
+     * @return personalized recommendations ordered by aggregated score
+     *         descending; unmodifiable
      */
     @SuppressWarnings("unchecked")
     public List<RecommendationResult> getRecommendationsForUser(
@@ -154,10 +389,9 @@ public class RecommendationEngine {
 
         // Cache hit
         Optional<Object> cached = cache.get(cacheKey);
-        if (cached.isPresent()) {
+        if (cached.isPresent() && covers((List<RecommendationResult>) cached.get(), limit)) {
             log.debug("ItemCF: cache hit for user recommendations of user {}", userId);
-            List<RecommendationResult> full = (List<RecommendationResult>) cached.get();
-            return full.stream().limit(limit).collect(Collectors.toList());
+            return head((List<RecommendationResult>) cached.get(), limit);
         }
 
         if (userInteractedItems.isEmpty()) {
@@ -165,37 +399,587 @@ public class RecommendationEngine {
             return Collections.emptyList();
         }
 
-        // Aggregate scores from similar items of each interacted item
-        Map<Integer, Double> scoreAccumulator = new HashMap<>();
+        int scoredLimit = scoredLimit(limit);
+        List<RecommendationResult> recommendations = loadOnce(userLoadKey(cacheKey, scoredLimit), () -> {
+            // One bulk lookup, so a remote store answers in a single round trip
+            Map<Integer, List<SimilarityResult>> neighbours =
+                    store.findSimilar(userInteractedItems, config.getTopKSimilar());
+
+            List<RecommendationResult> scored = score(userInteractedItems, neighbours, scoredLimit);
+            if (scored.isEmpty()) {
+                log.debug("ItemCF: no similar items found for user {}, returning empty list", userId);
+                return scored;
+            }
+
+            cache.put(cacheKey, scored, jittered(CACHE_TTL_USER));
+            log.debug("ItemCF: generated {} recommendations for user {}", scored.size(), userId);
+            return scored;
+        });
+        return head(recommendations, limit);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getSimilarItems(int, int)}: same
+     * results and caching, but the cache and store are called through
+     * {@link CachePort#getAsync} and {@link SimilarityStore#findSimilarAsync},
+     * so no caller thread blocks on I/O. Concurrent misses for one item
+     * share a single load with the blocking method.
+     *
+     * @param itemId the reference item ID
+     * @param limit  maximum number of results to return
+     * @return a future of the similar items ordered by similarity score
+     *         descending; an unmodifiable view shared with the cache
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<RecommendationResult>> getSimilarItemsAsync(int itemId, int limit) {
+        String cacheKey = similarKey(itemId);
+
+        return cache.getAsync(cacheKey, asyncExecutor).thenCompose(cached -> {
+            if (cached.isPresent()) {
+                log.debug("ItemCF: cache hit for similar items of item {}", itemId);
+                return CompletableFuture.completedFuture((List<RecommendationResult>) cached.get());
+            }
+            return loadOnceAsync(cacheKey, () -> store
+                    .findSimilarAsync(itemId, config.getTopKSimilar(), asyncExecutor)
+                    .thenCompose(similarities -> {
+                        List<RecommendationResult> loaded = toRecommendations(similarities);
+                        if (loaded.isEmpty()) {
+                            return CompletableFuture.completedFuture(loaded);
+                        }
+                        return cache.putAsync(cacheKey, loaded, jittered(CACHE_TTL_SIMILAR), asyncExecutor)
+                                .thenApply(stored -> loaded);
+                    }));
+        }).thenApply(results -> head(results, limit));
+    }
+
+    /**
+     * Asynchronous variant of
+     * {@link #getRecommendationsForUser(int, Set, int)}. The neighbours of
+     * all items in the history are requested at once through
+     * {@link SimilarityStore#findSimilarAsync(Collection, int, Executor)},
+     * whose default issues the per-item lookups concurrently; scoring then
+     * runs on {@link RecommendationConfig#getAsyncExecutor()}, never on a
+     * store client's callback thread.
+     *
+     * @param userId              the user to recommend items for
+     * @param userInteractedItems set of item IDs the user has already interacted
+     *                            with
+     * @param limit               maximum number of results to return
+     * @return a future of the recommendations ordered by aggregated score
+     *         descending; unmodifiable
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<RecommendationResult>> getRecommendationsForUserAsync(
+            int userId,
+            Set<Integer> userInteractedItems,
+            int limit) {
+
+        String cacheKey = CACHE_PREFIX_USER + userId;
 
-        for (int interactedItemId : userInteractedItems) {
-            List<SimilarityResult> similarities = store.findSimilar(interactedItemId, config.getTopKSimilar());
+        return cache.getAsync(cacheKey, asyncExecutor).thenCompose(cached -> {
+            if (cached.isPresent() && covers((List<RecommendationResult>) cached.get(), limit)) {
+                log.debug("ItemCF: cache hit for user recommendations of user {}", userId);
+                return CompletableFuture.completedFuture((List<RecommendationResult>) cached.get());
+            }
+            if (userInteractedItems.isEmpty()) {
+                log.debug("ItemCF: user {} has no interaction history, returning empty list", userId);
+                return CompletableFuture.completedFuture(Collections.<RecommendationResult>emptyList());
+            }
+            int scoredLimit = scoredLimit(limit);
+            return loadOnceAsync(userLoadKey(cacheKey, scoredLimit), () -> store
+                    .findSimilarAsync(userInteractedItems, config.getTopKSimilar(), asyncExecutor)
+                    .thenApplyAsync(neighbours -> score(userInteractedItems, neighbours, scoredLimit), asyncExecutor)
+                    .thenCompose(scored -> {
+                        if (scored.isEmpty()) {
+                            log.debug("ItemCF: no similar items found for user {}, returning empty list", userId);
+                            return CompletableFuture.completedFuture(scored);
+                        }
+                        return cache.putAsync(cacheKey, scored, jittered(CACHE_TTL_USER), asyncExecutor)
+                                .thenApply(stored -> {
+                                    log.debug("ItemCF: generated {} recommendations for user {}",
+                                            scored.size(), userId);
+                                    return scored;
+                                });
+                    }));
+        }).thenApply(results -> head(results, limit));
+    }
 
-            for (SimilarityResult sr : similarities) {
-                int candidateId = sr.itemId2();
-                // Never recommend items the user already interacted with
-                if (!userInteractedItems.contains(candidateId)) {
-                    scoreAccumulator.merge(candidateId, sr.score(), Double::sum);
+    /**
+     * Returns personalized recommendations for many users at once, with the
+     * same results as calling {@link #getRecommendationsForUser} per user.
+     * <p>
+     * Items shared by several histories are looked up only once, and all
+     * neighbour lists missing from the cache are fetched with a single
+     * {@link SimilarityStore#findSimilar(Collection, int)} call. Users are then
+     * scored on {@link RecommendationConfig#getParallelism()} threads. Meant
+     * for offline jobs such as campaigns: pass users in chunks of a few
+     * thousand so the fetched neighbour lists stay small.
+     *
+     * @param userHistories item IDs each user has already interacted with, by
+     *                      user ID
+     * @param limit         maximum number of results per user
+     * @return recommendations ordered by aggregated score descending, for
+     *         every requested user in iteration order; empty for users
+     *         without usable history
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Integer, List<RecommendationResult>> getRecommendationsForUsers(
+            Map<Integer, ? extends Set<Integer>> userHistories,
+            int limit) {
+        Objects.requireNonNull(userHistories, "userHistories must not be null");
+
+        Map<Integer, List<RecommendationResult>> results = new LinkedHashMap<>(userHistories.size() * 4 / 3 + 1);
+        List<Integer> pending = new ArrayList<>();
+        Set<Integer> items = new HashSet<>();
+        for (Map.Entry<Integer, ? extends Set<Integer>> entry : userHistories.entrySet()) {
+            int userId = entry.getKey();
+            Optional<Object> cached = cache.get(CACHE_PREFIX_USER + userId);
+            if (cached.isPresent() && covers((List<RecommendationResult>) cached.get(), limit)) {
+                results.put(userId, head((List<RecommendationResult>) cached.get(), limit));
+            } else {
+                // Placeholder keeps the caller's order; replaced once scored
+                results.put(userId, Collections.emptyList());
+                if (!entry.getValue().isEmpty()) {
+                    pending.add(userId);
+                    items.addAll(entry.getValue());
                 }
             }
         }
+        if (pending.isEmpty()) {
+            return results;
+        }
 
-        if (scoreAccumulator.isEmpty()) {
-            log.debug("ItemCF: no similar items found for user {}, returning empty list", userId);
-            return Collections.emptyList();
+        Map<Integer, List<SimilarityResult>> neighbours = store.findSimilar(items, config.getTopKSimilar());
+        log.debug("ItemCF: fetched neighbours of {} distinct items for {} users", items.size(), pending.size());
+
+        int scoredLimit = scoredLimit(limit);
+        List<List<RecommendationResult>> scored = new ArrayList<>(Collections.nCopies(pending.size(), null));
+        IntConsumer scoreUser = k -> scored.set(k, score(userHistories.get(pending.get(k)), neighbours, scoredLimit));
+        if (pool == null || pending.size() == 1) {
+            for (int k = 0; k < pending.size(); k++) {
+                scoreUser.accept(k);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, pending.size()).parallel().forEach(scoreUser)).join();
         }
 
-        List<RecommendationResult> recommendations = scoreAccumulator.entrySet().stream()
-                .map(e -> new RecommendationResult(e.getKey(), e.getValue()))
-                .sorted()
-                .limit(limit)
-                .collect(Collectors.toList());
+        for (int k = 0; k < pending.size(); k++) {
+            List<RecommendationResult> recommendations = scored.get(k);
+            if (!recommendations.isEmpty()) {
+                results.put(pending.get(k), head(recommendations, limit));
+                cache.put(CACHE_PREFIX_USER + pending.get(k), recommendations, jittered(CACHE_TTL_USER));
+            }
+        }
+        log.debug("ItemCF: generated recommendations for {} users", pending.size());
+        return results;
+    }
 
-        if (!recommendations.isEmpty()) {
-            cache.put(cacheKey, recommendations, CACHE_TTL_USER);
+    /**
+     * Overwrites the similar-item entries of the popular items in place, then
+     * evicts only the entries that were not rewritten: the other items of
+     * {@code matrix}, and items of the previous recalculation that are gone.
+     * An engine's first recalculation cannot tell which items earlier runs
+     * cached, so it evicts all similar-item entries before warming up.
+     */
+    private void refreshSimilarItems(InteractionMatrix matrix) {
+        int[] previous = cachedItemIds;
+        if (previous == null) {
+            cache.evictByPattern(CACHE_PREFIX_SIMILAR + "*");
         }
+        IntHashSet warmed = warmUp(matrix);
 
-        log.debug("ItemCF: generated {} recommendations for user {}", recommendations.size(), userId);
-        return recommendations;
+        int[] current = new int[matrix.itemCount()];
+        for (int i = 0; i < current.length; i++) {
+            current[i] = matrix.itemId(i);
+        }
+        if (previous != null) {
+            long startTime = System.currentTimeMillis();
+            int evicted = 0;
+            IntHashSet currentSet = new IntHashSet(current.length);
+            for (int itemId : current) {
+                currentSet.add(itemId);
+                if (!warmed.contains(itemId)) {
+                    cache.evict(similarKey(itemId));
+                    evicted++;
+                }
+            }
+            for (int itemId : previous) {
+                if (!currentSet.contains(itemId)) {
+                    cache.evict(similarKey(itemId));
+                    evicted++;
+                }
+            }
+            log.debug("ItemCF: evicted {} stale similar-item entries in {} ms",
+                    evicted, System.currentTimeMillis() - startTime);
+        }
+        cachedItemIds = current;
+    }
+
+    /**
+     * Writes the similar items of the {@code cacheWarmUpItems} items with the
+     * most interactions to the cache, as up to {@code cacheWarmUpParallelism}
+     * tasks on the engine pool. A failure is logged and leaves the remaining
+     * items to be loaded on demand.
+     *
+     * @return the IDs of the items whose entries were rewritten
+     */
+    private IntHashSet warmUp(InteractionMatrix matrix) {
+        long startTime = System.currentTimeMillis();
+        int[] popular = popularItems(matrix, config.getCacheWarmUpItems());
+        int batches = (popular.length + WARM_UP_BATCH_SIZE - 1) / WARM_UP_BATCH_SIZE;
+        // Set by position in popular; each batch writes its own range
+        boolean[] rewritten = new boolean[popular.length];
+        LongAdder warmed = new LongAdder();
+        IntConsumer warmBatch = b -> {
+            int from = b * WARM_UP_BATCH_SIZE;
+            int to = Math.min(popular.length, from + WARM_UP_BATCH_SIZE);
+            List<Integer> itemIds = new ArrayList<>(to - from);
+            for (int k = from; k < to; k++) {
+                itemIds.add(popular[k]);
+            }
+            Map<Integer, List<SimilarityResult>> found = store.findSimilar(itemIds, config.getTopKSimilar());
+            for (int k = from; k < to; k++) {
+                List<RecommendationResult> results = toRecommendations(found.getOrDefault(popular[k], List.of()));
+                if (!results.isEmpty()) {
+                    cache.put(similarKey(popular[k]), results, jittered(CACHE_TTL_SIMILAR));
+                    rewritten[k] = true;
+                    warmed.increment();
+                }
+            }
+        };
+
+        try {
+            int tasks = Math.min(config.getCacheWarmUpParallelism(), batches);
+            if (pool == null || tasks <= 1) {
+                for (int b = 0; b < batches; b++) {
+                    warmBatch.accept(b);
+                }
+            } else {
+                // Each task takes every tasks-th batch, which caps the concurrent store lookups
+                List<ForkJoinTask<?>> running = new ArrayList<>(tasks);
+                for (int t = 0; t < tasks; t++) {
+                    int first = t;
+                    running.add(pool.submit(() -> {
+                        for (int b = first; b < batches; b += tasks) {
+                            warmBatch.accept(b);
+                        }
+                    }));
+                }
+                running.forEach(ForkJoinTask::join);
+            }
+            log.info("ItemCF: warmed cache with {} of {} popular items in {} ms",
+                    warmed.sum(), popular.length, System.currentTimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            log.warn("ItemCF: cache warm-up failed after {} items, the rest is loaded on demand", warmed.sum(), e);
+        }
+
+        IntHashSet warmedIds = new IntHashSet(popular.length);
+        for (int k = 0; k < popular.length; k++) {
+            if (rewritten[k]) {
+                warmedIds.add(popular[k]);
+            }
+        }
+        return warmedIds;
+    }
+
+    /** IDs of the {@code count} items with the most interactions, most popular first. */
+    private static int[] popularItems(InteractionMatrix matrix, int count) {
+        int n = Math.min(count, matrix.itemCount());
+        if (n == 0) {
+            return new int[0];
+        }
+        TopKHeap heap = new TopKHeap(n);
+        for (int i = 0; i < matrix.itemCount(); i++) {
+            heap.offer(matrix.itemId(i), matrix.rowLength(i));
+        }
+        int[] itemIds = new int[n];
+        heap.drainDescending(itemIds, new double[n]);
+        return itemIds;
+    }
+
+    private static String similarKey(int itemId) {
+        return CACHE_PREFIX_SIMILAR + itemId;
+    }
+
+    /**
+     * Converts a neighbour list into its final, immutable form. Stores return
+     * neighbours best first, so sorting is only a fallback for stores that do
+     * not.
+     */
+    private static List<RecommendationResult> toRecommendations(List<SimilarityResult> similarities) {
+        RecommendationResult[] results = new RecommendationResult[similarities.size()];
+        boolean sorted = true;
+        for (int k = 0; k < results.length; k++) {
+            SimilarityResult sr = similarities.get(k);
+            results[k] = new RecommendationResult(sr.itemId2(), sr.score());
+            sorted &= k == 0 || sr.score() <= results[k - 1].score();
+        }
+        if (!sorted) {
+            Arrays.sort(results);
+        }
+        return List.of(results);
+    }
+
+    /**
+     * The first {@code limit} results as an O(1) view. Cached lists are
+     * immutable (or private copies deserialized from a remote cache), so the
+     * view can be handed out without copying.
+     */
+    private static List<RecommendationResult> head(List<RecommendationResult> results, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must be >= 0");
+        }
+        return results.size() <= limit ? results : results.subList(0, limit);
+    }
+
+    /**
+     * Number of user recommendations to score and cache for a request:
+     * {@code limit}, but never fewer than {@code topKSimilar}, so requests
+     * for up to that many share one cache entry and one load.
+     */
+    private int scoredLimit(int limit) {
+        return Math.max(limit, config.getTopKSimilar());
+    }
+
+    /**
+     * Whether a cached user list answers a request for {@code limit}
+     * results. Lists are scored to at least {@code topKSimilar}, so a
+     * shorter one is complete; a longer one may have been cut at a smaller
+     * limit than this request's and is scored again.
+     */
+    private boolean covers(List<RecommendationResult> cached, int limit) {
+        return cached.size() >= limit || cached.size() < config.getTopKSimilar();
+    }
+
+    /** Single-flight key of a user load, so loads scored to different limits are not shared. */
+    private String userLoadKey(String cacheKey, int scoredLimit) {
+        return scoredLimit == config.getTopKSimilar() ? cacheKey : cacheKey + "#" + scoredLimit;
+    }
+
+    /**
+     * Runs {@code loader} for a cache miss on {@code cacheKey}, unless a load
+     * for that key is already running, in which case this waits for its
+     * result instead (single-flight). This keeps a burst of requests for the
+     * same expired or evicted entry from all hitting the store. Waiters share
+     * the result list, and a failure of the load is rethrown to every waiter.
+     */
+    private List<RecommendationResult> loadOnce(String cacheKey, Supplier<List<RecommendationResult>> loader) {
+        CompletableFuture<List<RecommendationResult>> mine = new CompletableFuture<>();
+        CompletableFuture<List<RecommendationResult>> running = inFlight.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            log.debug("ItemCF: waiting for in-flight load of {}", cacheKey);
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            List<RecommendationResult> loaded = loader.get();
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #loadOnce}: starts {@code loader}
+     * unless a load for {@code cacheKey} is already running, blocking or not,
+     * and otherwise returns a future of that load's result. Each caller gets
+     * its own copy of the shared future, so cancelling one does not affect
+     * the others.
+     */
+    private CompletableFuture<List<RecommendationResult>> loadOnceAsync(
+            String cacheKey, Supplier<CompletableFuture<List<RecommendationResult>>> loader) {
+        CompletableFuture<List<RecommendationResult>> mine = new CompletableFuture<>();
+        CompletableFuture<List<RecommendationResult>> running = inFlight.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            log.debug("ItemCF: waiting for in-flight load of {}", cacheKey);
+            return running.copy();
+        }
+        CompletableFuture<List<RecommendationResult>> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException | Error e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((loaded, failure) -> {
+            inFlight.remove(cacheKey, mine);
+            if (failure == null) {
+                mine.complete(loaded);
+            } else {
+                // Blocking waiters rethrow the cause, so do not wrap it twice
+                mine.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause()
+                        : failure);
+            }
+        });
+        return mine.copy();
+    }
+
+    /** Shortens {@code ttl} by a random fraction below the configured jitter. */
+    private Duration jittered(Duration ttl) {
+        double jitter = config.getCacheTtlJitter();
+        if (jitter == 0) {
+            return ttl;
+        }
+        return ttl.minusMillis((long) (ttl.toMillis() * jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * Sums the scores of the neighbours of every item in {@code history},
+     * never recommending an item already in it. Accumulates into pooled
+     * primitive scratch space and keeps only the best {@code limit}
+     * candidates in a heap, so a request allocates little beyond its result.
+     * Ties are broken by ascending item ID.
+     */
+    private static List<RecommendationResult> score(
+            Set<Integer> history, Map<Integer, List<SimilarityResult>> neighbours, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must be >= 0");
+        }
+        ScoringScratch scratch = ScoringScratch.acquire();
+        IntHashSet seen = scratch.seen;
+        IntDoubleHashMap scores = scratch.scores;
+        try {
+            for (int itemId : history) {
+                seen.add(itemId);
+            }
+            for (int interactedItemId : history) {
+                List<SimilarityResult> similar = neighbours.get(interactedItemId);
+                if (similar == null) {
+                    continue;
+                }
+                for (int k = 0, n = similar.size(); k < n; k++) {
+                    SimilarityResult sr = similar.get(k);
+                    if (!seen.contains(sr.itemId2())) {
+                        scores.addTo(sr.itemId2(), sr.score());
+                    }
+                }
+            }
+            if (scores.isEmpty() || limit == 0) {
+                return Collections.emptyList();
+            }
+
+            TopKHeap heap = scratch.heap(Math.min(limit, scores.size()));
+            for (int slot = 0; slot < scores.capacity(); slot++) {
+                if (scores.isUsed(slot)) {
+                    heap.offer(scores.keyAt(slot), scores.valueAt(slot));
+                }
+            }
+            int count = heap.drainDescending(scratch.ids, scratch.values);
+            RecommendationResult[] results = new RecommendationResult[Math.min(limit, count)];
+            for (int k = 0; k < results.length; k++) {
+                results[k] = new RecommendationResult(scratch.ids[k], scratch.values[k]);
+            }
+            return List.of(results);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * Default executor of the asynchronous query methods, shared by all
+     * engines and created on first use: a virtual thread per task where the
+     * JDK offers it (21 and later), otherwise a cached pool of daemon
+     * threads. Looked up reflectively, since the library targets Java 17.
+     */
+    private static final class DefaultAsyncExecutor {
+
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                AtomicInteger threads = new AtomicInteger();
+                return Executors.newCachedThreadPool(task -> {
+                    Thread thread = new Thread(task, "itemcf-async-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    /**
+     * Reusable buffers of one scoring call. Idle instances wait in a small
+     * pool with a slot per processor rather than in a ThreadLocal, because
+     * the default async executor starts a new virtual thread per request.
+     * Buffers that grew past {@link #MAX_RETAINED_SLOTS} for an unusually
+     * large request are dropped afterwards, so neither the memory nor the
+     * cost of clearing stays high.
+     */
+    private static final class ScoringScratch {
+
+        private static final int MAX_RETAINED_SLOTS = 1 << 16;
+
+        private static final AtomicReferenceArray<ScoringScratch> IDLE =
+                new AtomicReferenceArray<>(Runtime.getRuntime().availableProcessors());
+
+        IntHashSet seen = new IntHashSet(64);
+        IntDoubleHashMap scores = new IntDoubleHashMap(256);
+        private TopKHeap heap;
+        int[] ids;
+        double[] values;
+
+        /** Returns an empty heap holding at least {@code capacity} entries. */
+        TopKHeap heap(int capacity) {
+            if (heap == null || heap.capacity() < capacity) {
+                heap = new TopKHeap(capacity);
+                ids = new int[capacity];
+                values = new double[capacity];
+            }
+            return heap;
+        }
+
+        /** Takes an idle instance from the pool, or creates one when all are in use. */
+        static ScoringScratch acquire() {
+            int start = ThreadLocalRandom.current().nextInt(IDLE.length());
+            for (int k = 0; k < IDLE.length(); k++) {
+                int slot = (start + k) % IDLE.length();
+                ScoringScratch scratch = IDLE.get(slot);
+                if (scratch != null && IDLE.compareAndSet(slot, scratch, null)) {
+                    return scratch;
+                }
+            }
+            return new ScoringScratch();
+        }
+
+        /** Clears this instance and returns it to the pool, or drops it when the pool is full. */
+        void release() {
+            reset();
+            int start = ThreadLocalRandom.current().nextInt(IDLE.length());
+            for (int k = 0; k < IDLE.length(); k++) {
+                if (IDLE.compareAndSet((start + k) % IDLE.length(), null, this)) {
+                    return;
+                }
+            }
+        }
+
+        private void reset() {
+            if (seen.capacity() > MAX_RETAINED_SLOTS) {
+                seen = new IntHashSet(64);
+            } else {
+                seen.clear();
+            }
+            if (scores.capacity() > MAX_RETAINED_SLOTS) {
+                scores = new IntDoubleHashMap(256);
+            } else {
+                scores.clear();
+            }
+            if (heap != null) {
+                heap.clear();
+                if (heap.capacity() > MAX_RETAINED_SLOTS) {
+                    heap = null;
+                    ids = null;
+                    values = null;
+                }
+            }
+        }
     }
 }
@@ -1,11 +1,16 @@
 package io.github.thacbao.itemcf.config;
 
+import io.github.thacbao.itemcf.core.ComputationMode;
+import io.github.thacbao.itemcf.core.SimilarityCalculator;
 import io.github.thacbao.itemcf.port.CachePort;
 import io.github.thacbao.itemcf.port.impl.NoOpCachePort;
+import io.github.thacbao.itemcf.similarity.AdjustedCosineSimilarityStrategy;
 import io.github.thacbao.itemcf.similarity.CosineSimilarityStrategy;
 import io.github.thacbao.itemcf.similarity.SimilarityStrategy;
 
+import java.nio.file.Path;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 public final class RecommendationConfig {
 
@@ -21,25 +26,104 @@ public final class RecommendationConfig {
     /** Default batch size for loading interactions. */
     public static final int DEFAULT_BATCH_SIZE = 1000;
 
+    /** Default number of pages a cursor loader may fetch ahead of ingestion. */
+    public static final int DEFAULT_LOAD_PREFETCH_DEPTH = 0;
+
+    /** Default number of threads used to load interactions. */
+    public static final int DEFAULT_LOAD_PARALLELISM = 1;
+
+    /** Default cap on interactions per user; 0 keeps all of them. */
+    public static final int DEFAULT_MAX_INTERACTIONS_PER_USER = 0;
+
+    /** Default cap on interactions per item; 0 keeps all of them. */
+    public static final int DEFAULT_MAX_INTERACTIONS_PER_ITEM = 0;
+
     /** Default batch flush size for saving similarity results. */
     public static final int DEFAULT_SAVE_BATCH_SIZE = 1000;
 
+    /** Default number of full save batches that may wait for the background writer. */
+    public static final int DEFAULT_WRITE_QUEUE_CAPACITY = 8;
+
+    /** Scores are not centered on user means by default. */
+    public static final boolean DEFAULT_CENTER_ON_USER_MEAN = false;
+
+    /** Default pair enumeration mode for the similarity calculation. */
+    public static final ComputationMode DEFAULT_COMPUTATION_MODE = ComputationMode.INVERTED_INDEX;
+
+    /** Default number of threads used by the similarity calculation. */
+    public static final int DEFAULT_PARALLELISM = 1;
+
+    /** Default number of LSH bands in {@link ComputationMode#APPROXIMATE} mode. */
+    public static final int DEFAULT_LSH_BANDS = SimilarityCalculator.DEFAULT_LSH_BANDS;
+
+    /** Default number of MinHash values per LSH band in {@link ComputationMode#APPROXIMATE} mode. */
+    public static final int DEFAULT_LSH_ROWS = SimilarityCalculator.DEFAULT_LSH_ROWS;
+
+    /** Whether matrix snapshots are compressed by default. */
+    public static final boolean DEFAULT_SNAPSHOT_COMPRESSION = false;
+
+    /** Cache TTLs are not jittered by default. */
+    public static final double DEFAULT_CACHE_TTL_JITTER = 0.0;
+
+    /** No cache warm-up after a recalculation by default. */
+    public static final int DEFAULT_CACHE_WARM_UP_ITEMS = 0;
+
+    /** Default number of threads warming the cache. */
+    public static final int DEFAULT_CACHE_WARM_UP_PARALLELISM = 1;
+
+    /** Whether incremental updates are enabled by default. */
+    public static final boolean DEFAULT_INCREMENTAL_UPDATES = false;
+
     private final double similarityThreshold;
     private final int minCommonUsers;
     private final int topKSimilar;
     private final int batchSize;
+    private final int loadPrefetchDepth;
+    private final int loadParallelism;
+    private final int maxInteractionsPerUser;
+    private final int maxInteractionsPerItem;
+    private final Path snapshotPath;
+    private final boolean snapshotCompression;
     private final int saveBatchSize;
+    private final int writeQueueCapacity;
     private final SimilarityStrategy strategy;
+    private final boolean centerOnUserMean;
+    private final ComputationMode computationMode;
+    private final int parallelism;
+    private final int lshBands;
+    private final int lshRows;
+    private final boolean incrementalUpdates;
     private final CachePort cachePort;
+    private final double cacheTtlJitter;
+    private final int cacheWarmUpItems;
+    private final int cacheWarmUpParallelism;
+    private final Executor asyncExecutor;
 
     private RecommendationConfig(Builder builder) {
         this.similarityThreshold = builder.similarityThreshold;
         this.minCommonUsers = builder.minCommonUsers;
         this.topKSimilar = builder.topKSimilar;
         this.batchSize = builder.batchSize;
+        this.loadPrefetchDepth = builder.loadPrefetchDepth;
+        this.loadParallelism = builder.loadParallelism;
+        this.maxInteractionsPerUser = builder.maxInteractionsPerUser;
+        this.maxInteractionsPerItem = builder.maxInteractionsPerItem;
+        this.snapshotPath = builder.snapshotPath;
+        this.snapshotCompression = builder.snapshotCompression;
         this.saveBatchSize = builder.saveBatchSize;
+        this.writeQueueCapacity = builder.writeQueueCapacity;
         this.strategy = builder.strategy;
+        this.centerOnUserMean = builder.centerOnUserMean;
+        this.computationMode = builder.computationMode;
+        this.parallelism = builder.parallelism;
+        this.lshBands = builder.lshBands;
+        this.lshRows = builder.lshRows;
+        this.incrementalUpdates = builder.incrementalUpdates;
         this.cachePort = builder.cachePort;
+        this.cacheTtlJitter = builder.cacheTtlJitter;
+        this.cacheWarmUpItems = builder.cacheWarmUpItems;
+        this.cacheWarmUpParallelism = builder.cacheWarmUpParallelism;
+        this.asyncExecutor = builder.asyncExecutor;
     }
 
     /** Minimum cosine score for a pair to be persisted. */
@@ -53,7 +137,8 @@ public final class RecommendationConfig {
     }
 
     /**
-     * Maximum number of similar items stored per item in
+     * Maximum number of similar items stored per item. Applied while computing,
+     * so only each item's top-K neighbours are ever materialised and saved.
      */
     public int getTopKSimilar() {
         return topKSimilar;
@@ -66,6 +151,36 @@ public final class RecommendationConfig {
         return batchSize;
     }
 
+    /** Number of pages a cursor loader may fetch ahead of ingestion. */
+    public int getLoadPrefetchDepth() {
+        return loadPrefetchDepth;
+    }
+
+    /** Number of threads fetching (offset loaders) or ingesting (cursor loaders) interactions. */
+    public int getLoadParallelism() {
+        return loadParallelism;
+    }
+
+    /** Interactions kept per user before the calculation; 0 means no cap. */
+    public int getMaxInteractionsPerUser() {
+        return maxInteractionsPerUser;
+    }
+
+    /** Interactions kept per item before the calculation; 0 means no cap. */
+    public int getMaxInteractionsPerItem() {
+        return maxInteractionsPerItem;
+    }
+
+    /** Where the loaded interaction matrix is checkpointed; {@code null} if disabled. */
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    /** Whether matrix snapshots are Deflate-compressed. */
+    public boolean isSnapshotCompression() {
+        return snapshotCompression;
+    }
+
     /**
      * Number of similarity pairs flushed to
      */
@@ -73,16 +188,77 @@ public final class RecommendationConfig {
         return saveBatchSize;
     }
 
+    /**
+     * Number of full save batches that may be queued for the background writer
+     * before the calculation blocks.
+     */
+    public int getWriteQueueCapacity() {
+        return writeQueueCapacity;
+    }
+
     /** The similarity algorithm to use. */
     public SimilarityStrategy getStrategy() {
         return strategy;
     }
 
+    /** Whether each user's mean score is subtracted from their scores before the strategy sees them. */
+    public boolean isCenterOnUserMean() {
+        return centerOnUserMean;
+    }
+
+    /** How candidate item pairs are enumerated during the calculation. */
+    public ComputationMode getComputationMode() {
+        return computationMode;
+    }
+
+    /** Number of threads used by the similarity calculation and batch recommendations. */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** Number of LSH bands used in {@link ComputationMode#APPROXIMATE} mode. */
+    public int getLshBands() {
+        return lshBands;
+    }
+
+    /** Number of MinHash values per LSH band used in {@link ComputationMode#APPROXIMATE} mode. */
+    public int getLshRows() {
+        return lshRows;
+    }
+
+    /**
+     * Whether the engine keeps the statistics needed to apply interaction
+     * deltas without a full recalculation.
+     */
+    public boolean isIncrementalUpdates() {
+        return incrementalUpdates;
+    }
+
     /** Cache port (defaults to no-op). */
     public CachePort getCachePort() {
         return cachePort;
     }
 
+    /** Largest fraction by which a cache entry's TTL is randomly shortened. */
+    public double getCacheTtlJitter() {
+        return cacheTtlJitter;
+    }
+
+    /** Number of most popular items whose similar items are cached after each recalculation. */
+    public int getCacheWarmUpItems() {
+        return cacheWarmUpItems;
+    }
+
+    /** Maximum number of concurrent tasks loading the warm-up entries. */
+    public int getCacheWarmUpParallelism() {
+        return cacheWarmUpParallelism;
+    }
+
+    /** Executor of the asynchronous query methods; {@code null} for the engine's default. */
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
     /** Returns a builder pre-configured with all default values. */
     public static Builder builder() {
         return new Builder();
@@ -101,9 +277,26 @@ public final class RecommendationConfig {
         private int minCommonUsers = DEFAULT_MIN_COMMON_USERS;
         private int topKSimilar = DEFAULT_TOP_K_SIMILAR;
         private int batchSize = DEFAULT_BATCH_SIZE;
+        private int loadPrefetchDepth = DEFAULT_LOAD_PREFETCH_DEPTH;
+        private int loadParallelism = DEFAULT_LOAD_PARALLELISM;
+        private int maxInteractionsPerUser = DEFAULT_MAX_INTERACTIONS_PER_USER;
+        private int maxInteractionsPerItem = DEFAULT_MAX_INTERACTIONS_PER_ITEM;
+        private Path snapshotPath;
+        private boolean snapshotCompression = DEFAULT_SNAPSHOT_COMPRESSION;
         private int saveBatchSize = DEFAULT_SAVE_BATCH_SIZE;
+        private int writeQueueCapacity = DEFAULT_WRITE_QUEUE_CAPACITY;
         private SimilarityStrategy strategy = CosineSimilarityStrategy.INSTANCE;
+        private boolean centerOnUserMean = DEFAULT_CENTER_ON_USER_MEAN;
+        private ComputationMode computationMode = DEFAULT_COMPUTATION_MODE;
+        private int parallelism = DEFAULT_PARALLELISM;
+        private int lshBands = DEFAULT_LSH_BANDS;
+        private int lshRows = DEFAULT_LSH_ROWS;
+        private boolean incrementalUpdates = DEFAULT_INCREMENTAL_UPDATES;
         private CachePort cachePort = NoOpCachePort.INSTANCE;
+        private double cacheTtlJitter = DEFAULT_CACHE_TTL_JITTER;
+        private int cacheWarmUpItems = DEFAULT_CACHE_WARM_UP_ITEMS;
+        private int cacheWarmUpParallelism = DEFAULT_CACHE_WARM_UP_PARALLELISM;
+        private Executor asyncExecutor;
 
         private Builder() {
         }
@@ -132,7 +325,8 @@ public final class RecommendationConfig {
         }
 
         /**
-         * Top-K similar items to query when building recommendations for a user.
+         * Number of neighbours kept per item by the calculation, and queried per
+         * item when building recommendations for a user.
          * Default: {@value DEFAULT_TOP_K_SIMILAR}.
          */
         public Builder topKSimilar(int topKSimilar) {
@@ -153,6 +347,85 @@ public final class RecommendationConfig {
             return this;
         }
 
+        /**
+         * Number of pages a {@code CursorInteractionLoader} may fetch on a
+         * background thread while earlier pages are still being ingested, so
+         * loader round-trips overlap with ingestion. Ignored for offset loaders,
+         * which are paged concurrently instead. Default:
+         * {@value DEFAULT_LOAD_PREFETCH_DEPTH} (load on the calling thread).
+         */
+        public Builder loadPrefetchDepth(int loadPrefetchDepth) {
+            if (loadPrefetchDepth < 0)
+                throw new IllegalArgumentException("loadPrefetchDepth must be >= 0");
+            this.loadPrefetchDepth = loadPrefetchDepth;
+            return this;
+        }
+
+        /**
+         * Number of loading threads. An offset {@code InteractionLoader} is
+         * called concurrently for different offsets and must then be
+         * thread-safe; a {@code CursorInteractionLoader} is still called from one
+         * thread, and this many threads ingest its pages. The loaded matrix is
+         * identical for any value. Default: {@value DEFAULT_LOAD_PARALLELISM}.
+         */
+        public Builder loadParallelism(int loadParallelism) {
+            if (loadParallelism < 1)
+                throw new IllegalArgumentException("loadParallelism must be >= 1");
+            this.loadParallelism = loadParallelism;
+            return this;
+        }
+
+        /**
+         * Largest number of interactions kept per user. A user with more, such
+         * as a bot or crawler, adds a quadratic number of co-occurrences; above
+         * the cap a deterministic pseudo-random sample of this size is kept, so
+         * repeated runs over the same data keep the same interactions.
+         * Default: {@value DEFAULT_MAX_INTERACTIONS_PER_USER} (no cap).
+         */
+        public Builder maxInteractionsPerUser(int maxInteractionsPerUser) {
+            if (maxInteractionsPerUser < 0)
+                throw new IllegalArgumentException("maxInteractionsPerUser must be >= 0");
+            this.maxInteractionsPerUser = maxInteractionsPerUser;
+            return this;
+        }
+
+        /**
+         * Largest number of interactions kept per item, applied after the
+         * per-user cap, sampled the same way. Bounds the row length of
+         * blockbuster items. Default:
+         * {@value DEFAULT_MAX_INTERACTIONS_PER_ITEM} (no cap).
+         */
+        public Builder maxInteractionsPerItem(int maxInteractionsPerItem) {
+            if (maxInteractionsPerItem < 0)
+                throw new IllegalArgumentException("maxInteractionsPerItem must be >= 0");
+            this.maxInteractionsPerItem = maxInteractionsPerItem;
+            return this;
+        }
+
+        /**
+         * Local file where the engine checkpoints the loaded interaction matrix
+         * and its loader watermark. When the file exists, a recalculation
+         * restores it and only loads interactions after the watermark, then
+         * writes the updated snapshot back. This requires a loader whose
+         * cursor (or offset) keeps pointing past already-read data, i.e.
+         * append-only sources ordered by an increasing key; delete the file to
+         * force a full reload. Default: none (always load everything).
+         */
+        public Builder snapshotPath(Path snapshotPath) {
+            this.snapshotPath = Objects.requireNonNull(snapshotPath, "snapshotPath must not be null");
+            return this;
+        }
+
+        /**
+         * Whether snapshots are Deflate-compressed. The body is already
+         * delta and varint encoded; compression roughly halves it again at
+         * some CPU cost. Default: {@value DEFAULT_SNAPSHOT_COMPRESSION}.
+         */
+        public Builder snapshotCompression(boolean snapshotCompression) {
+            this.snapshotCompression = snapshotCompression;
+            return this;
+        }
+
         /**
          * Number of similarity pairs flushed per save batch. Default:
          * {@value DEFAULT_SAVE_BATCH_SIZE}.
@@ -164,6 +437,20 @@ public final class RecommendationConfig {
             return this;
         }
 
+        /**
+         * Number of full save batches that may wait for the background writer.
+         * Results are streamed to the store while the calculation runs; when the
+         * queue is full the calculation waits, so peak memory is bounded by
+         * roughly {@code writeQueueCapacity * saveBatchSize} results. Default:
+         * {@value DEFAULT_WRITE_QUEUE_CAPACITY}.
+         */
+        public Builder writeQueueCapacity(int writeQueueCapacity) {
+            if (writeQueueCapacity < 1)
+                throw new IllegalArgumentException("writeQueueCapacity must be >= 1");
+            this.writeQueueCapacity = writeQueueCapacity;
+            return this;
+        }
+
         /**
          * Similarity strategy to use. Default: {@link CosineSimilarityStrategy}.
          */
@@ -172,6 +459,84 @@ public final class RecommendationConfig {
             return this;
         }
 
+        /**
+         * Subtracts each user's mean score from all of that user's scores
+         * before the strategy sees them, which removes differences in how
+         * generously users rate. Required by
+         * {@link AdjustedCosineSimilarityStrategy}, and not supported with
+         * incremental updates. Default: {@value DEFAULT_CENTER_ON_USER_MEAN}.
+         */
+        public Builder centerOnUserMean(boolean centerOnUserMean) {
+            this.centerOnUserMean = centerOnUserMean;
+            return this;
+        }
+
+        /**
+         * Pair enumeration mode. Default: {@link ComputationMode#INVERTED_INDEX},
+         * which only visits item pairs that share at least one user.
+         * {@link ComputationMode#APPROXIMATE} trades recall for speed, see
+         * {@link #lshBands(int)} and {@link #lshRows(int)}.
+         */
+        public Builder computationMode(ComputationMode computationMode) {
+            this.computationMode = Objects.requireNonNull(computationMode, "computationMode must not be null");
+            return this;
+        }
+
+        /**
+         * Number of ForkJoin worker threads used by the similarity calculation
+         * and by {@code getRecommendationsForUsers}. The configured strategy
+         * must be thread-safe when this is greater than 1. Results are
+         * identical for any value. Default:
+         * {@value DEFAULT_PARALLELISM} (computes on the calling thread).
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1)
+                throw new IllegalArgumentException("parallelism must be >= 1");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Number of LSH bands in {@link ComputationMode#APPROXIMATE} mode. A pair
+         * of items with Jaccard similarity {@code s} over their users becomes a
+         * candidate with probability {@code 1 - (1 - s^lshRows)^lshBands}, so
+         * more bands raise recall at the cost of more candidates to score.
+         * Default: {@value DEFAULT_LSH_BANDS}.
+         */
+        public Builder lshBands(int lshBands) {
+            if (lshBands < 1)
+                throw new IllegalArgumentException("lshBands must be >= 1");
+            this.lshBands = lshBands;
+            return this;
+        }
+
+        /**
+         * Number of MinHash values per LSH band in
+         * {@link ComputationMode#APPROXIMATE} mode. More rows make a band match
+         * only for more similar pairs, cutting candidates and recall. Default:
+         * {@value DEFAULT_LSH_ROWS}.
+         */
+        public Builder lshRows(int lshRows) {
+            if (lshRows < 1)
+                throw new IllegalArgumentException("lshRows must be >= 1");
+            this.lshRows = lshRows;
+            return this;
+        }
+
+        /**
+         * Enables {@code RecommendationEngine.applyInteractions}. After each full
+         * recalculation the engine keeps every item's norm and the dot product of
+         * every co-occurring pair in memory, so the heap cost is comparable to
+         * the co-occurrence structure of the catalog. Only supported with
+         * {@link CosineSimilarityStrategy}, and with a store whose
+         * {@code supportsReplace()} returns {@code true}. Default:
+         * {@value DEFAULT_INCREMENTAL_UPDATES}.
+         */
+        public Builder incrementalUpdates(boolean incrementalUpdates) {
+            this.incrementalUpdates = incrementalUpdates;
+            return this;
+        }
+
         /**
          * Cache port to use. Default: {@link NoOpCachePort} (no caching).
          */
@@ -180,7 +545,71 @@ public final class RecommendationConfig {
             return this;
         }
 
+        /**
+         * Shortens every cache TTL by a random fraction in
+         * {@code [0, cacheTtlJitter)}, so entries written together (for
+         * example right after a recalculation) do not all expire at the same
+         * moment. Must be in [0, 1). Default: {@value DEFAULT_CACHE_TTL_JITTER}
+         * (fixed TTLs).
+         */
+        public Builder cacheTtlJitter(double cacheTtlJitter) {
+            if (cacheTtlJitter < 0 || cacheTtlJitter >= 1)
+                throw new IllegalArgumentException("cacheTtlJitter must be in [0,1)");
+            this.cacheTtlJitter = cacheTtlJitter;
+            return this;
+        }
+
+        /**
+         * Number of most popular items, by interaction count, whose similar
+         * items are written to the cache after each recalculation. Their
+         * entries are overwritten in place, so popular items keep hitting the
+         * cache across rebuilds; only the similar-item entries that were not
+         * rewritten are evicted afterwards. An engine's first recalculation
+         * evicts all similar-item entries before warming up, since it does
+         * not know which items earlier runs cached. When 0, all similar-item
+         * entries are evicted after every recalculation. Default:
+         * {@value DEFAULT_CACHE_WARM_UP_ITEMS} (no warm-up).
+         */
+        public Builder cacheWarmUpItems(int cacheWarmUpItems) {
+            if (cacheWarmUpItems < 0)
+                throw new IllegalArgumentException("cacheWarmUpItems must be >= 0");
+            this.cacheWarmUpItems = cacheWarmUpItems;
+            return this;
+        }
+
+        /**
+         * Maximum number of concurrent warm-up tasks loading entries from the
+         * store, which caps the extra load on the store and cache. The tasks
+         * run on the engine's pool, so {@link #parallelism(int)} also bounds
+         * them; with a parallelism of 1 the warm-up runs on the calling
+         * thread. Default: {@value DEFAULT_CACHE_WARM_UP_PARALLELISM}.
+         */
+        public Builder cacheWarmUpParallelism(int cacheWarmUpParallelism) {
+            if (cacheWarmUpParallelism < 1)
+                throw new IllegalArgumentException("cacheWarmUpParallelism must be >= 1");
+            this.cacheWarmUpParallelism = cacheWarmUpParallelism;
+            return this;
+        }
+
+        /**
+         * Executor on which the asynchronous query methods run blocking port
+         * calls and scoring. Ports with native asynchronous clients complete
+         * on their own threads and use it only for scoring. Default: a
+         * virtual thread per task on JDK 21 and later, otherwise a shared
+         * pool of daemon threads created on demand.
+         */
+        public Builder asyncExecutor(Executor asyncExecutor) {
+            this.asyncExecutor = Objects.requireNonNull(asyncExecutor, "asyncExecutor must not be null");
+            return this;
+        }
+
         public RecommendationConfig build() {
+            if (incrementalUpdates && strategy.getClass() != CosineSimilarityStrategy.class)
+                throw new IllegalArgumentException("incrementalUpdates requires CosineSimilarityStrategy");
+            if (incrementalUpdates && centerOnUserMean)
+                throw new IllegalArgumentException("incrementalUpdates does not support centerOnUserMean");
+            if (strategy instanceof AdjustedCosineSimilarityStrategy && !centerOnUserMean)
+                throw new IllegalArgumentException("AdjustedCosineSimilarityStrategy requires centerOnUserMean(true)");
             return new RecommendationConfig(this);
         }
     }
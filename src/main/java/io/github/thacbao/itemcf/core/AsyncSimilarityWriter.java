@@ -0,0 +1,214 @@
+package io.github.thacbao.itemcf.core;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link SimilaritySink} that regroups incoming results into batches of
+ * {@code batchSize} and hands them to a single background thread for writing,
+ * so store I/O overlaps with the calculation.
+ * <p>
+ * At most {@code queueCapacity} full batches wait in the queue; producers block
+ * when it is full, which bounds memory to roughly
+ * {@code (queueCapacity + 2) * batchSize} results. If the writer fails, the
+ * next {@link #accept} and {@link #close()} rethrow its error. When the
+ * calculation itself fails, {@link #abort()} drops what is still queued
+ * instead of writing it; producers still inside {@code accept}, including
+ * those blocked on a full queue, then fail fast instead of queueing batches
+ * nobody will take.
+ */
+public final class AsyncSimilarityWriter implements SimilaritySink, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncSimilarityWriter.class);
+
+    /** Marks the end of the stream for the writer thread. */
+    private static final List<SimilarityResult> END = List.of();
+
+    /** How long a producer blocked on a full queue waits before re-checking for an abort. */
+    private static final long OFFER_TIMEOUT_MILLIS = 50;
+
+    private final Consumer<List<SimilarityResult>> batchWriter;
+    private final int batchSize;
+    private final BlockingQueue<List<SimilarityResult>> queue;
+    private final Thread thread;
+
+    private List<SimilarityResult> pending;
+    private volatile Throwable failure;
+    private volatile boolean aborted;
+    private volatile long written;
+    private boolean closed;
+
+    /**
+     * @param batchWriter   called on the writer thread with each batch, e.g.
+     *                      {@code store::saveAll}
+     * @param batchSize     number of results per batch
+     * @param queueCapacity number of full batches that may wait for the writer
+     */
+    public AsyncSimilarityWriter(Consumer<List<SimilarityResult>> batchWriter, int batchSize, int queueCapacity) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be >= 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be >= 1");
+        }
+        this.batchWriter = Objects.requireNonNull(batchWriter, "batchWriter must not be null");
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.pending = new ArrayList<>(batchSize);
+        this.thread = new Thread(this::drain, "itemcf-similarity-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void accept(List<SimilarityResult> neighbours) {
+        List<List<SimilarityResult>> full = new ArrayList<>(1);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("writer is closed");
+            }
+            for (SimilarityResult result : neighbours) {
+                pending.add(result);
+                if (pending.size() == batchSize) {
+                    full.add(pending);
+                    pending = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        // Enqueue outside the lock so other producers keep filling batches
+        for (List<SimilarityResult> batch : full) {
+            enqueue(batch);
+        }
+    }
+
+    /** Number of results written by the background thread so far. */
+    public long writtenCount() {
+        return written;
+    }
+
+    /**
+     * Flushes the last partial batch and waits for the writer thread to finish.
+     *
+     * @throws IllegalStateException if any batch failed to be written
+     */
+    @Override
+    public void close() {
+        List<SimilarityResult> last;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            last = pending;
+            pending = null;
+        }
+        try {
+            if (!last.isEmpty()) {
+                enqueue(last);
+            }
+        } finally {
+            endStream();
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * Discards the partial batch and every queued batch, then waits for the
+     * writer thread to finish the batch it may be writing. Used when the
+     * output is about to be thrown away; does nothing after {@link #close()}
+     * and never rethrows a write failure, so it cannot mask the error that
+     * caused the abort.
+     */
+    public void abort() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending = null;
+        }
+        aborted = true;
+        queue.clear();
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        // Drop anything a racing producer queued after the writer thread stopped
+        queue.clear();
+    }
+
+    private void enqueue(List<SimilarityResult> batch) {
+        checkWritable();
+        try {
+            while (!queue.offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkWritable();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing similarity results", e);
+        }
+        // The queue is cleared on abort, which may be what let this batch in
+        checkWritable();
+    }
+
+    private void checkWritable() {
+        rethrowFailure();
+        if (aborted) {
+            throw new IllegalStateException("writer was aborted");
+        }
+    }
+
+    private void endStream() {
+        try {
+            // The writer keeps draining after a failure, so this cannot block forever
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the similarity writer", e);
+        }
+    }
+
+    private void rethrowFailure() {
+        Throwable t = failure;
+        if (t != null) {
+            throw new IllegalStateException("Writing similarity results failed", t);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                List<SimilarityResult> batch = queue.take();
+                if (batch == END) {
+                    return;
+                }
+                if (failure != null || aborted) {
+                    continue; // discard, but keep producers from blocking
+                }
+                try {
+                    batchWriter.accept(batch);
+                    written += batch.size();
+                } catch (Throwable t) {
+                    log.error("ItemCF: failed to write a batch of {} similarity results", batch.size(), t);
+                    failure = t;
+                }
+            }
+        } catch (InterruptedException e) {
+            failure = e;
+        }
+    }
+}
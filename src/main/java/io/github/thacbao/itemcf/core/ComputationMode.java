@@ -0,0 +1,32 @@
+package io.github.thacbao.itemcf.core;
+
+/**
+ * Selects how {@link SimilarityCalculator} enumerates candidate item pairs.
+ */
+public enum ComputationMode {
+
+    /**
+     * Visits every (i, j) item pair and checks the number of common users for
+     * each one. Runs in O(n²) in the number of items regardless of sparsity;
+     * a symmetric strategy scores each unordered pair only once.
+     */
+    ALL_PAIRS,
+
+    /**
+     * Builds a user → items inverted index and only visits pairs that share at
+     * least one user, accumulating dot products and common-user counts in a
+     * single pass. Produces the same pairs as {@link #ALL_PAIRS}.
+     */
+    INVERTED_INDEX,
+
+    /**
+     * Uses MinHash signatures of each item's user set with LSH banding to pick
+     * candidate pairs, then scores only those candidates exactly. Cost grows
+     * with the number of candidates instead of with co-occurrences, so a few
+     * very heavy users no longer dominate the run. Candidates are scored with
+     * the same values as the exact modes, but some true neighbours may be
+     * missed; tune recall with the LSH bands and rows, and measure it with
+     * {@link RecallReport}.
+     */
+    APPROXIMATE
+}
@@ -0,0 +1,171 @@
+package io.github.thacbao.itemcf.core;
+
+import io.github.thacbao.itemcf.model.Interaction;
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import io.github.thacbao.itemcf.util.IntDoubleHashMap;
+import io.github.thacbao.itemcf.util.TopKHeap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Sufficient statistics for updating cosine similarities without a full
+ * recalculation: every user's current scores, every item's squared L2 norm,
+ * and the dot product and common-user count of every co-occurring item pair.
+ * <p>
+ * Memory grows with the number of co-occurring pairs, like the co-occurrence
+ * pass itself; the state is therefore only built when incremental updates are
+ * enabled. Not thread-safe; callers serialise {@link #apply} calls.
+ */
+public final class IncrementalCosineState {
+
+    private static final Logger log = LoggerFactory.getLogger(IncrementalCosineState.class);
+
+    /** userId → (itemId → score) */
+    private final Map<Integer, IntDoubleHashMap> userScores = new HashMap<>();
+    /** itemId → per-item statistics */
+    private final Map<Integer, ItemStats> items = new HashMap<>();
+
+    private IncrementalCosineState() {
+    }
+
+    /**
+     * Builds the state from a loaded matrix. Costs one pass over every
+     * co-occurring pair, i.e. the same work as the co-occurrence calculation.
+     */
+    public static IncrementalCosineState build(InteractionMatrix matrix) {
+        IncrementalCosineState state = new IncrementalCosineState();
+        InvertedIndex index = InvertedIndex.of(matrix);
+        double[] scores = matrix.scores();
+        int[] users = matrix.userIndices();
+
+        for (int i = 0; i < matrix.itemCount(); i++) {
+            ItemStats stats = state.item(matrix.itemId(i));
+            for (int p = matrix.rowStart(i); p < matrix.rowEnd(i); p++) {
+                stats.normSquared += scores[p] * scores[p];
+                state.userScores.computeIfAbsent(matrix.userId(users[p]), k -> new IntDoubleHashMap(4))
+                        .put(matrix.itemId(i), scores[p]);
+            }
+        }
+
+        for (int u = 0; u < index.userCount(); u++) {
+            int end = index.userEnd(u);
+            for (int a = index.userStart(u); a < end; a++) {
+                PairStatsRow row = state.item(matrix.itemId(index.itemAt(a))).pairs;
+                for (int b = index.userStart(u); b < end; b++) {
+                    if (a != b) {
+                        row.add(matrix.itemId(index.itemAt(b)), index.scoreAt(a) * index.scoreAt(b), 1);
+                    }
+                }
+            }
+        }
+
+        log.debug("Built incremental cosine state for {} items and {} users", state.items.size(),
+                state.userScores.size());
+        return state;
+    }
+
+    /**
+     * Folds new interactions into the statistics. As during loading, a repeated
+     * (user, item) pair keeps the maximum score.
+     *
+     * @param delta new interactions
+     * @return IDs of the items whose neighbour lists may have changed: every
+     *         item whose vector changed, plus every item co-occurring with one
+     */
+    public Set<Integer> apply(Collection<Interaction> delta) {
+        Set<Integer> changedItems = new HashSet<>();
+
+        for (Interaction interaction : delta) {
+            int itemId = interaction.itemId();
+            IntDoubleHashMap row = userScores.computeIfAbsent(interaction.userId(), k -> new IntDoubleHashMap(4));
+            double oldScore = row.get(itemId, 0.0);
+            double newScore = Math.max(oldScore, interaction.score());
+            if (newScore == oldScore) {
+                continue;
+            }
+
+            ItemStats stats = item(itemId);
+            stats.normSquared += newScore * newScore - oldScore * oldScore;
+
+            double change = newScore - oldScore;
+            int newPair = oldScore == 0.0 ? 1 : 0;
+            for (int slot = 0; slot < row.capacity(); slot++) {
+                if (row.isUsed(slot) && row.keyAt(slot) != itemId) {
+                    int other = row.keyAt(slot);
+                    double dotChange = change * row.valueAt(slot);
+                    stats.pairs.add(other, dotChange, newPair);
+                    item(other).pairs.add(itemId, dotChange, newPair);
+                }
+            }
+            row.put(itemId, newScore);
+            changedItems.add(itemId);
+        }
+
+        // A changed norm moves the cosine of every pair the item belongs to
+        Set<Integer> affected = new HashSet<>(changedItems);
+        for (int itemId : changedItems) {
+            PairStatsRow pairs = items.get(itemId).pairs;
+            for (int slot = 0; slot < pairs.capacity(); slot++) {
+                if (pairs.isUsed(slot)) {
+                    affected.add(pairs.neighbourAt(slot));
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Recomputes one item's neighbour list from the current statistics, with
+     * the same filtering and tie-breaking as {@link SimilarityCalculator}.
+     *
+     * @return the item's retained neighbours, best first; empty if none
+     *         qualify
+     */
+    public List<SimilarityResult> neighbours(int itemId, double threshold, int minCommonUsers, int topK) {
+        ItemStats stats = items.get(itemId);
+        if (stats == null || stats.pairs.size() == 0) {
+            return Collections.emptyList();
+        }
+
+        double norm = Math.sqrt(stats.normSquared);
+        TopKHeap heap = new TopKHeap(Math.min(topK, stats.pairs.size()));
+        PairStatsRow pairs = stats.pairs;
+        for (int slot = 0; slot < pairs.capacity(); slot++) {
+            if (!pairs.isUsed(slot) || pairs.countAt(slot) < minCommonUsers) {
+                continue;
+            }
+            int other = pairs.neighbourAt(slot);
+            double otherNorm = Math.sqrt(items.get(other).normSquared);
+            if (norm == 0.0 || otherNorm == 0.0) {
+                continue;
+            }
+            // Deltas accumulate in a different order than the norms, so clamp
+            // rounding noise above 1 for identical vectors
+            double sim = Math.min(1.0, pairs.dotAt(slot) / (norm * otherNorm));
+            if (sim >= threshold) {
+                heap.offer(other, sim);
+            }
+        }
+
+        int[] ids = new int[heap.size()];
+        double[] sims = new double[heap.size()];
+        int count = heap.drainDescending(ids, sims);
+        List<SimilarityResult> results = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            results.add(new SimilarityResult(itemId, ids[k], sims[k]));
+        }
+        return results;
+    }
+
+    private ItemStats item(int itemId) {
+        return items.computeIfAbsent(itemId, k -> new ItemStats());
+    }
+
+    private static final class ItemStats {
+
+        double normSquared;
+        final PairStatsRow pairs = new PairStatsRow();
+    }
+}
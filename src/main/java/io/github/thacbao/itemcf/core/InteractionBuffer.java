@@ -0,0 +1,168 @@
+package io.github.thacbao.itemcf.core;
+
+import java.util.Arrays;
+
+/**
+ * Growable, primitive buffer of raw (itemId, userId, score) triples collected
+ * while loading, compacted into the CSR layout of {@link InteractionMatrix} by
+ * {@link #build(InteractionMatrix)}.
+ */
+final class InteractionBuffer {
+
+    private int[] itemIds;
+    private int[] userIds;
+    private double[] scores;
+    private int size;
+
+    InteractionBuffer() {
+        this(1024);
+    }
+
+    InteractionBuffer(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        this.itemIds = new int[capacity];
+        this.userIds = new int[capacity];
+        this.scores = new double[capacity];
+    }
+
+    void add(int itemId, int userId, double score) {
+        if (size == itemIds.length) {
+            int capacity = size + (size >> 1);
+            itemIds = Arrays.copyOf(itemIds, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+        itemIds[size] = itemId;
+        userIds[size] = userId;
+        scores[size] = score;
+        size++;
+    }
+
+    /** Appends every entry currently held by {@code matrix}. */
+    void addAll(InteractionMatrix matrix) {
+        int[] rowOffsets = matrix.rowOffsets();
+        int[] userIndices = matrix.userIndices();
+        double[] values = matrix.scores();
+        for (int i = 0; i < matrix.itemCount(); i++) {
+            int itemId = matrix.itemId(i);
+            for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                add(itemId, matrix.userId(userIndices[p]), values[p]);
+            }
+        }
+    }
+
+    /** Appends every entry of {@code other}, e.g. to merge per-thread shards. */
+    void addAll(InteractionBuffer other) {
+        int required = size + other.size;
+        if (required > itemIds.length) {
+            int capacity = Math.max(required, size + (size >> 1));
+            itemIds = Arrays.copyOf(itemIds, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+        System.arraycopy(other.itemIds, 0, itemIds, size, other.size);
+        System.arraycopy(other.userIds, 0, userIds, size, other.size);
+        System.arraycopy(other.scores, 0, scores, size, other.size);
+        size = required;
+    }
+
+    /** Drops every entry at position {@code newSize} and beyond. */
+    void truncate(int newSize) {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("newSize " + newSize + " outside [0, " + size + "]");
+        }
+        size = newSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Compacts the buffer into {@code target}: remaps item and user IDs to dense
+     * indices in ascending ID order, groups entries into per-item rows sorted by
+     * user index, and merges duplicate (user, item) pairs by keeping the maximum
+     * score.
+     */
+    void build(InteractionMatrix target) {
+        int[] itemIdTable = distinctSorted(itemIds, size);
+        int[] userIdTable = distinctSorted(userIds, size);
+        int n = itemIdTable.length;
+        int m = userIdTable.length;
+
+        int[] itemIdx = new int[size];
+        int[] userIdx = new int[size];
+        for (int k = 0; k < size; k++) {
+            itemIdx[k] = Arrays.binarySearch(itemIdTable, itemIds[k]);
+            userIdx[k] = Arrays.binarySearch(userIdTable, userIds[k]);
+        }
+
+        // Two stable counting sorts: by user, then by item. Each item row ends
+        // up ordered by user index, with duplicates adjacent.
+        int[] byUser = countingSort(userIdx, m, identity(size));
+        int[] order = countingSort(itemIdx, n, byUser);
+
+        int[] rowOffsets = new int[n + 1];
+        int[] rowUsers = new int[size];
+        double[] rowScores = new double[size];
+        int nnz = 0;
+        int prevItem = -1;
+        int prevUser = -1;
+        for (int k : order) {
+            int item = itemIdx[k];
+            int user = userIdx[k];
+            if (item == prevItem && user == prevUser) {
+                rowScores[nnz - 1] = Math.max(rowScores[nnz - 1], scores[k]);
+                continue;
+            }
+            rowUsers[nnz] = user;
+            rowScores[nnz] = scores[k];
+            rowOffsets[item + 1]++;
+            nnz++;
+            prevItem = item;
+            prevUser = user;
+        }
+        for (int i = 0; i < n; i++) {
+            rowOffsets[i + 1] += rowOffsets[i];
+        }
+
+        target.install(itemIdTable, userIdTable, rowOffsets,
+                Arrays.copyOf(rowUsers, nnz), Arrays.copyOf(rowScores, nnz));
+    }
+
+    private static int[] distinctSorted(int[] values, int length) {
+        int[] copy = Arrays.copyOf(values, length);
+        Arrays.sort(copy);
+        int distinct = 0;
+        for (int k = 0; k < length; k++) {
+            if (k == 0 || copy[k] != copy[k - 1]) {
+                copy[distinct++] = copy[k];
+            }
+        }
+        return Arrays.copyOf(copy, distinct);
+    }
+
+    private static int[] identity(int length) {
+        int[] positions = new int[length];
+        for (int k = 0; k < length; k++) {
+            positions[k] = k;
+        }
+        return positions;
+    }
+
+    /** Stable counting sort of {@code positions} by {@code keys[position]}. */
+    private static int[] countingSort(int[] keys, int keyCount, int[] positions) {
+        int[] starts = new int[keyCount + 1];
+        for (int p : positions) {
+            starts[keys[p] + 1]++;
+        }
+        for (int key = 0; key < keyCount; key++) {
+            starts[key + 1] += starts[key];
+        }
+        int[] sorted = new int[positions.length];
+        for (int p : positions) {
+            sorted[starts[keys[p]]++] = p;
+        }
+        return sorted;
+    }
+}
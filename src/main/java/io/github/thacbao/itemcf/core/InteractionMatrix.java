@@ -1,77 +1,428 @@
 package io.github.thacbao.itemcf.core;
 
 import io.github.thacbao.itemcf.model.Interaction;
+import io.github.thacbao.itemcf.model.InteractionBatch;
+import io.github.thacbao.itemcf.port.CursorInteractionLoader;
 import io.github.thacbao.itemcf.port.InteractionLoader;
+import io.github.thacbao.itemcf.port.impl.OffsetCursorInteractionLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Item-user interaction matrix in compressed sparse row (CSR) form.
+ * <p>
+ * Item and user IDs are remapped to dense indices in ascending ID order. The
+ * users of item {@code i} occupy positions {@code [rowStart(i), rowEnd(i))} of
+ * the user-index and score arrays, sorted by ascending user index, so two rows
+ * can be intersected by merging two sorted {@code int} slices. Each stored
+ * interaction costs 12 bytes.
+ */
 public class InteractionMatrix {
 
     private static final Logger log = LoggerFactory.getLogger(InteractionMatrix.class);
 
-    /** item-user matrix: itemId → (userId → score) */
-    private final Map<Integer, Map<Integer, Double>> matrix = new HashMap<>();
+    private static final int[] EMPTY_INTS = new int[0];
+    private static final double[] EMPTY_DOUBLES = new double[0];
+
+    /** dense item index → itemId, ascending */
+    private int[] itemIds = EMPTY_INTS;
+    /** dense user index → userId, ascending */
+    private int[] userIds = EMPTY_INTS;
+    /** row i spans [rowOffsets[i], rowOffsets[i + 1]) */
+    private int[] rowOffsets = {0};
+    private int[] userIndices = EMPTY_INTS;
+    private double[] scores = EMPTY_DOUBLES;
+    /** L2 norm of each row, computed once per build */
+    private double[] norms = EMPTY_DOUBLES;
 
     private int totalInteractions = 0;
 
+    /** Cursor after the last loaded page, see {@link #watermark()}. */
+    private String watermark;
+
+    /** Lazily materialised boxed view, see {@link #getMatrix()}. */
+    private Map<Integer, Map<Integer, Double>> mapView;
+
     /**
      * Loads all interactions from the given loader in batches and builds the
-     * matrix.
+     * matrix. Entries already present in this matrix are kept and merged with
+     * the loaded ones.
+     * <p>
+     * Offset pagination re-scans all preceding rows on most databases; prefer
+     * {@link #loadFrom(CursorInteractionLoader, int)} for large sources.
      *
      * @param loader    source of interaction data
      * @param batchSize number of interactions to load per batch
      */
     public void load(InteractionLoader loader, int batchSize) {
-        int offset = 0;
+        watermark = null;
+        loadFrom(CursorInteractionLoader.fromOffsetLoader(loader), batchSize);
+    }
+
+    /**
+     * Loads interactions page by page from a keyset-paginated loader, starting
+     * after the current {@link #watermark()}, and builds the matrix. Entries
+     * already present in this matrix are kept and merged with the loaded ones,
+     * so calling this again on the same matrix reads only newer data. (Named
+     * apart from {@code load} so lambda loaders stay unambiguous.)
+     *
+     * @param loader    source of interaction data
+     * @param batchSize number of interactions to request per page
+     */
+    public void loadFrom(CursorInteractionLoader loader, int batchSize) {
+        loadFrom(loader, batchSize, 0, 1);
+    }
+
+    /**
+     * Like {@link #loadFrom(CursorInteractionLoader, int)}, but overlaps
+     * loader round-trips with ingestion. Reads the same interactions and builds
+     * the same matrix as the sequential load.
+     * <p>
+     * A loader adapted with {@link CursorInteractionLoader#fromOffsetLoader}
+     * is paged concurrently: {@code parallelism} threads each fetch the next
+     * unclaimed offset and ingest it, and the loader must be thread-safe. Any
+     * other cursor loader is called from a single background thread that runs
+     * up to {@code prefetchDepth} pages ahead of {@code parallelism} ingesting
+     * threads.
+     *
+     * @param loader        source of interaction data
+     * @param batchSize     number of interactions to request per page
+     * @param prefetchDepth pages a cursor loader may fetch ahead; 0 with a
+     *                      {@code parallelism} of 1 loads on the calling thread
+     * @param parallelism   number of fetching (offset) or ingesting (cursor)
+     *                      threads
+     */
+    public void loadFrom(CursorInteractionLoader loader, int batchSize, int prefetchDepth, int parallelism) {
+        if (prefetchDepth < 0) {
+            throw new IllegalArgumentException("prefetchDepth must be >= 0");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        if (prefetchDepth == 0 && parallelism == 1) {
+            loadSequential(loader, batchSize);
+            return;
+        }
+
+        InteractionPipeline.Outcome outcome;
+        if (loader instanceof OffsetCursorInteractionLoader offsetLoader) {
+            int startOffset = watermark == null ? 0 : Integer.parseInt(watermark);
+            outcome = InteractionPipeline.fromOffsets(offsetLoader.delegate(), startOffset, batchSize, parallelism);
+        } else {
+            outcome = InteractionPipeline.fromCursor(loader, watermark, batchSize, prefetchDepth, parallelism);
+        }
+
+        InteractionBuffer buffer = new InteractionBuffer(entryCount() + outcome.loaded());
+        buffer.addAll(this);
+        for (InteractionBuffer shard : outcome.shards()) {
+            buffer.addAll(shard);
+        }
+        buffer.build(this);
+        totalInteractions += outcome.loaded();
+        if (outcome.cursor() != null) {
+            watermark = outcome.cursor();
+        }
+
+        log.debug("Loaded {} interactions across {} batches on {} threads into item-user matrix "
+                + "({} unique items, {} entries)",
+                outcome.loaded(), outcome.batchCount(), parallelism, itemCount(), entryCount());
+    }
+
+    private void loadSequential(CursorInteractionLoader loader, int batchSize) {
+        InteractionBuffer buffer = new InteractionBuffer(Math.max(batchSize, entryCount()));
+        buffer.addAll(this);
+
         int batchCount = 0;
+        int loaded = 0;
 
         while (true) {
-            List<Interaction> batch = loader.loadBatch(offset, batchSize);
+            InteractionBatch batch = loader.loadBatch(watermark, batchSize);
+            List<Interaction> interactions = batch.interactions();
 
-            if (batch == null || batch.isEmpty()) {
-                break;
+            for (Interaction interaction : interactions) {
+                buffer.add(interaction.itemId(), interaction.userId(), interaction.score());
             }
 
-            for (Interaction interaction : batch) {
-                matrix.computeIfAbsent(interaction.itemId(), k -> new HashMap<>())
-                        .merge(interaction.userId(), interaction.score(), Double::max);
+            if (batch.cursor() != null) {
+                watermark = batch.cursor();
+            }
+            loaded += interactions.size();
+            if (!interactions.isEmpty()) {
+                batchCount++;
             }
 
-            totalInteractions += batch.size();
-            offset += batchSize;
-            batchCount++;
-
-            if (batch.size() < batchSize) {
+            if (interactions.isEmpty() || batch.last()) {
                 break;
             }
         }
 
-        log.debug("Loaded {} interactions across {} batches into item-user matrix ({} unique items)",
-                totalInteractions, batchCount, matrix.size());
+        buffer.build(this);
+        totalInteractions += loaded;
+
+        log.debug("Loaded {} interactions across {} batches into item-user matrix ({} unique items, {} entries)",
+                loaded, batchCount, itemCount(), entryCount());
     }
 
     /**
-     * Returns the item-user matrix.
+     * Builds a matrix from a boxed item-user map.
      *
-     * @return map of itemId → (userId → score); never null, may be empty
+     * @param itemMatrix itemId → (userId → score)
      */
-    public Map<Integer, Map<Integer, Double>> getMatrix() {
+    public static InteractionMatrix fromMap(Map<Integer, Map<Integer, Double>> itemMatrix) {
+        InteractionBuffer buffer = new InteractionBuffer();
+        int count = 0;
+        for (Map.Entry<Integer, Map<Integer, Double>> row : itemMatrix.entrySet()) {
+            for (Map.Entry<Integer, Double> cell : row.getValue().entrySet()) {
+                buffer.add(row.getKey(), cell.getKey(), cell.getValue());
+                count++;
+            }
+        }
+        InteractionMatrix matrix = new InteractionMatrix();
+        buffer.build(matrix);
+        matrix.totalInteractions = count;
         return matrix;
     }
 
+    /**
+     * Writes this matrix and its {@link #watermark()} to {@code path} as a
+     * compact binary snapshot. The snapshot is written to a temporary file
+     * first and then moved into place, so a crash never leaves a partial
+     * snapshot behind.
+     *
+     * @param path     snapshot file
+     * @param compress whether to Deflate-compress the snapshot body; saves
+     *                 space at some CPU cost on both save and restore
+     * @throws UncheckedIOException if the snapshot cannot be written
+     */
+    public void saveSnapshot(Path path, boolean compress) {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                MatrixSnapshot.write(this, out, compress);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("Could not write matrix snapshot " + path, e);
+        }
+        log.debug("Saved snapshot of {} items and {} entries at watermark {} to {}",
+                itemCount(), entryCount(), watermark, path);
+    }
+
+    /**
+     * Restores a matrix written by {@link #saveSnapshot}, including its
+     * watermark, so a following {@link #loadFrom} only reads interactions
+     * added after the snapshot was taken.
+     *
+     * @param path snapshot file
+     * @throws UncheckedIOException  if the snapshot cannot be read
+     * @throws IllegalStateException if the file is not a valid snapshot
+     */
+    public static InteractionMatrix fromSnapshot(Path path) {
+        InteractionMatrix matrix = new InteractionMatrix();
+        try (InputStream in = Files.newInputStream(path)) {
+            MatrixSnapshot.read(in, matrix);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read matrix snapshot " + path, e);
+        }
+        log.debug("Restored snapshot of {} items and {} entries at watermark {} from {}",
+                matrix.itemCount(), matrix.entryCount(), matrix.watermark, path);
+        return matrix;
+    }
+
+    /**
+     * Caps the entries of very active users and very popular items, which add
+     * little signal but dominate the quadratic co-occurrence pass. A user above
+     * {@code maxPerUser} keeps a deterministic pseudo-random sample of that
+     * many entries, chosen by a hash of the (user, item) pair; then an item
+     * still above {@code maxPerItem} is sampled the same way. Items and users
+     * left without entries are dropped. {@link #totalInteractions()} and the
+     * {@link #watermark()} are unchanged.
+     *
+     * @param maxPerUser largest number of entries kept per user; 0 disables
+     *                   the cap
+     * @param maxPerItem largest number of entries kept per item; 0 disables
+     *                   the cap
+     * @return what was removed
+     */
+    public TrimStats downsample(int maxPerUser, int maxPerItem) {
+        if (maxPerUser < 0 || maxPerItem < 0) {
+            throw new IllegalArgumentException("maxPerUser and maxPerItem must be >= 0");
+        }
+        TrimStats stats = InteractionSampler.sample(this, maxPerUser, maxPerItem);
+        log.debug("Down-sampled {} users and {} items, kept {} of {} entries",
+                stats.usersCapped(), stats.itemsCapped(), stats.entriesAfter(), stats.entriesBefore());
+        return stats;
+    }
+
+    void install(int[] itemIds, int[] userIds, int[] rowOffsets, int[] userIndices, double[] scores) {
+        this.itemIds = itemIds;
+        this.userIds = userIds;
+        this.rowOffsets = rowOffsets;
+        this.userIndices = userIndices;
+        this.scores = scores;
+        this.norms = l2Norms(rowOffsets, scores);
+        this.mapView = null;
+    }
+
+    void restoreProgress(int totalInteractions, String watermark) {
+        this.totalInteractions = totalInteractions;
+        this.watermark = watermark;
+    }
+
+    private static double[] l2Norms(int[] rowOffsets, double[] scores) {
+        double[] norms = new double[rowOffsets.length - 1];
+        for (int i = 0; i < norms.length; i++) {
+            double sumOfSquares = 0.0;
+            for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                sumOfSquares += scores[p] * scores[p];
+            }
+            norms[i] = Math.sqrt(sumOfSquares);
+        }
+        return norms;
+    }
+
+    /**
+     * Returns a boxed view of the item-user matrix. The view is built on first
+     * use and is intended only as an adapter for code written against the map
+     * representation; the computation paths read the CSR arrays directly.
+     *
+     * @return unmodifiable map of itemId → (userId → score); never null, may be
+     *         empty
+     */
+    public Map<Integer, Map<Integer, Double>> getMatrix() {
+        if (mapView == null) {
+            Map<Integer, Map<Integer, Double>> view = new HashMap<>(itemIds.length * 2);
+            for (int i = 0; i < itemIds.length; i++) {
+                Map<Integer, Double> row = new HashMap<>((rowEnd(i) - rowStart(i)) * 2);
+                for (int p = rowStart(i); p < rowEnd(i); p++) {
+                    row.put(userIds[userIndices[p]], scores[p]);
+                }
+                view.put(itemIds[i], Collections.unmodifiableMap(row));
+            }
+            mapView = Collections.unmodifiableMap(view);
+        }
+        return mapView;
+    }
+
     public boolean isEmpty() {
-        return matrix.isEmpty();
+        return itemIds.length == 0;
     }
 
     public int itemCount() {
-        return matrix.size();
+        return itemIds.length;
+    }
+
+    /** Number of distinct users. */
+    public int userCount() {
+        return userIds.length;
     }
 
+    /**
+     * Cursor just after the last page read by a load; a later {@link #loadFrom}
+     * resumes from here. {@code null} before anything has been loaded.
+     */
+    public String watermark() {
+        return watermark;
+    }
+
+    /** Number of interactions read from the loader, including duplicates. */
     public int totalInteractions() {
         return totalInteractions;
     }
+
+    /** Number of stored (item, user) entries after duplicate merging. */
+    public int entryCount() {
+        return userIndices.length;
+    }
+
+    /** Returns the item ID stored at the given dense index. */
+    public int itemId(int index) {
+        return itemIds[index];
+    }
+
+    /** Returns the dense index of {@code itemId}, or {@code -1} if absent. */
+    public int itemIndex(int itemId) {
+        int index = Arrays.binarySearch(itemIds, itemId);
+        return index >= 0 ? index : -1;
+    }
+
+    /** Returns the user ID stored at the given dense index. */
+    public int userId(int index) {
+        return userIds[index];
+    }
+
+    /** Returns the dense index of {@code userId}, or {@code -1} if absent. */
+    public int userIndex(int userId) {
+        int index = Arrays.binarySearch(userIds, userId);
+        return index >= 0 ? index : -1;
+    }
+
+    /** First position of item {@code index}'s row. */
+    public int rowStart(int index) {
+        return rowOffsets[index];
+    }
+
+    /** Position one past the end of item {@code index}'s row. */
+    public int rowEnd(int index) {
+        return rowOffsets[index + 1];
+    }
+
+    /** Number of users who interacted with the item at {@code index}. */
+    public int rowLength(int index) {
+        return rowOffsets[index + 1] - rowOffsets[index];
+    }
+
+    /** L2 norm of the scores in row {@code index}, precomputed when the matrix is built. */
+    public double norm(int index) {
+        return norms[index];
+    }
+
+    // Raw CSR arrays, shared with the computation paths; never modified after
+    // the matrix is built.
+
+    int[] rowOffsets() {
+        return rowOffsets;
+    }
+
+    int[] userIndices() {
+        return userIndices;
+    }
+
+    /**
+     * A new array parallel to {@link #userIndices()} holding the original user
+     * IDs. Dense indices follow ascending user ID, so every row stays sorted.
+     */
+    int[] userIdsByEntry() {
+        int[] ids = new int[userIndices.length];
+        for (int p = 0; p < ids.length; p++) {
+            ids[p] = userIds[userIndices[p]];
+        }
+        return ids;
+    }
+
+    double[] scores() {
+        return scores;
+    }
+
+    double[] norms() {
+        return norms;
+    }
 }
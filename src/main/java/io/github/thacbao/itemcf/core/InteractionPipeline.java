@@ -0,0 +1,221 @@
+package io.github.thacbao.itemcf.core;
+
+import io.github.thacbao.itemcf.model.Interaction;
+import io.github.thacbao.itemcf.model.InteractionBatch;
+import io.github.thacbao.itemcf.port.CursorInteractionLoader;
+import io.github.thacbao.itemcf.port.InteractionLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent ingestion paths behind {@link InteractionMatrix#loadFrom(
+ * CursorInteractionLoader, int, int, int)}. Every worker fills its own
+ * {@link InteractionBuffer} shard, so ingestion needs no locking; the shards
+ * are concatenated before the single CSR build.
+ * <p>
+ * Both paths read exactly the interactions the sequential loop would read.
+ */
+final class InteractionPipeline {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /** What a load produced, before it is merged into the matrix. */
+    record Outcome(List<InteractionBuffer> shards, int loaded, int batchCount, String cursor) {
+    }
+
+    private InteractionPipeline() {
+    }
+
+    /**
+     * Fetches offset pages on {@code parallelism} threads. Each worker claims
+     * the next page index, fetches it and ingests it into its own shard. The
+     * first page shorter than {@code batchSize} ends the data; pages past it,
+     * fetched speculatively by other workers, are discarded.
+     */
+    static Outcome fromOffsets(InteractionLoader loader, int startOffset, int batchSize, int parallelism) {
+        AtomicInteger nextPage = new AtomicInteger();
+        AtomicInteger endPage = new AtomicInteger(Integer.MAX_VALUE);
+
+        List<Callable<OffsetShard>> workers = new ArrayList<>(parallelism);
+        for (int w = 0; w < parallelism; w++) {
+            workers.add(() -> {
+                OffsetShard shard = new OffsetShard(batchSize);
+                int page;
+                while ((page = nextPage.getAndIncrement()) <= endPage.get()) {
+                    List<Interaction> batch = loader.loadBatch(startOffset + page * batchSize, batchSize);
+                    int size = batch == null ? 0 : batch.size();
+                    if (size < batchSize) {
+                        endPage.accumulateAndGet(page, Math::min);
+                    }
+                    shard.add(page, batch);
+                }
+                return shard;
+            });
+        }
+
+        List<OffsetShard> shards = runAll(workers, parallelism);
+        int end = endPage.get();
+        List<InteractionBuffer> buffers = new ArrayList<>(shards.size());
+        int loaded = 0;
+        int batchCount = 0;
+        for (OffsetShard shard : shards) {
+            shard.dropPagesAfter(end);
+            buffers.add(shard.buffer);
+            loaded += shard.buffer.size();
+            batchCount += shard.pageCount();
+        }
+        // Same watermark as the sequential adapter: just past the short page, as
+        // every page before it is full
+        return new Outcome(buffers, loaded, batchCount, Integer.toString(startOffset + loaded));
+    }
+
+    /**
+     * Fetches cursor pages on one background thread, up to
+     * {@code prefetchDepth} pages ahead, while {@code parallelism} workers
+     * (including the calling thread) ingest them.
+     */
+    static Outcome fromCursor(CursorInteractionLoader loader, String startCursor, int batchSize,
+            int prefetchDepth, int parallelism) {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(Math.max(1, prefetchDepth));
+        Object end = new Object();
+        String[] cursor = {startCursor};
+        int[] batchCount = {0};
+
+        Callable<InteractionBuffer> fetcher = () -> {
+            try {
+                while (true) {
+                    InteractionBatch batch = loader.loadBatch(cursor[0], batchSize);
+                    if (batch.cursor() != null) {
+                        cursor[0] = batch.cursor();
+                    }
+                    if (!batch.interactions().isEmpty()) {
+                        batchCount[0]++;
+                        queue.put(batch.interactions());
+                    }
+                    if (batch.interactions().isEmpty() || batch.last()) {
+                        return null;
+                    }
+                }
+            } finally {
+                queue.put(end);
+            }
+        };
+        Callable<InteractionBuffer> ingester = () -> {
+            InteractionBuffer buffer = new InteractionBuffer(batchSize);
+            while (true) {
+                Object item = queue.take();
+                if (item == end) {
+                    queue.put(end); // let the other ingesters see it too
+                    return buffer;
+                }
+                @SuppressWarnings("unchecked")
+                List<Interaction> interactions = (List<Interaction>) item;
+                for (Interaction interaction : interactions) {
+                    buffer.add(interaction.itemId(), interaction.userId(), interaction.score());
+                }
+            }
+        };
+
+        List<Callable<InteractionBuffer>> tasks = new ArrayList<>(parallelism + 1);
+        tasks.add(fetcher);
+        for (int w = 0; w < parallelism; w++) {
+            tasks.add(ingester);
+        }
+        List<InteractionBuffer> shards = new ArrayList<>(runAll(tasks, parallelism + 1));
+        shards.remove(0);
+
+        int loaded = 0;
+        for (InteractionBuffer shard : shards) {
+            loaded += shard.size();
+        }
+        // The fetcher's writes happen-before its future completes
+        return new Outcome(shards, loaded, batchCount[0], cursor[0]);
+    }
+
+    /**
+     * Runs every task on its own thread and returns their results in
+     * submission order. The first failure interrupts the remaining tasks and
+     * is rethrown.
+     */
+    private static <T> List<T> runAll(List<Callable<T>> tasks, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "itemcf-loader-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                futures.add(completion.submit(task));
+            }
+            // Wait in completion order so a failure surfaces while others block
+            for (int k = 0; k < tasks.size(); k++) {
+                completion.take().get();
+            }
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Loading interactions failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading interactions", e);
+        } finally {
+            // Unblocks workers waiting on the queue after a failure
+            executor.shutdownNow();
+        }
+    }
+
+    /** One worker's shard, with the start of every page so late pages can be cut. */
+    private static final class OffsetShard {
+
+        final InteractionBuffer buffer;
+        private final List<int[]> pages = new ArrayList<>(); // {page index, buffer start}
+
+        OffsetShard(int batchSize) {
+            this.buffer = new InteractionBuffer(batchSize);
+        }
+
+        void add(int page, List<Interaction> batch) {
+            if (batch == null || batch.isEmpty()) {
+                return;
+            }
+            pages.add(new int[]{page, buffer.size()});
+            for (Interaction interaction : batch) {
+                buffer.add(interaction.itemId(), interaction.userId(), interaction.score());
+            }
+        }
+
+        /** Pages are claimed in ascending order, so the ones to drop form a suffix. */
+        void dropPagesAfter(int lastPage) {
+            for (int k = 0; k < pages.size(); k++) {
+                if (pages.get(k)[0] > lastPage) {
+                    buffer.truncate(pages.get(k)[1]);
+                    pages.subList(k, pages.size()).clear();
+                    return;
+                }
+            }
+        }
+
+        int pageCount() {
+            return pages.size();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.thacbao.itemcf.core;
+
+import java.util.Arrays;
+
+/**
+ * Caps the number of entries per user and per item of an
+ * {@link InteractionMatrix} by bottom-k sampling: every (user, item) entry
+ * gets a pseudo-random priority hashed from the two IDs, and a capped user or
+ * item keeps its {@code k} entries of lowest priority.
+ * <p>
+ * This is a reservoir sample whose randomness is a function of the entry
+ * itself, so the result does not depend on load order or thread count, and
+ * the per-user sample of a merged data set equals the sample of the merged
+ * per-user samples.
+ */
+final class InteractionSampler {
+
+    private static final long USER_SEED = 0x9E3779B97F4A7C15L;
+    private static final long ITEM_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    private InteractionSampler() {
+    }
+
+    /**
+     * Samples {@code matrix} in place.
+     *
+     * @param maxPerUser largest number of entries kept per user; 0 disables
+     *                   the cap
+     * @param maxPerItem largest number of entries kept per item, applied
+     *                   after the per-user cap; 0 disables the cap
+     */
+    static TrimStats sample(InteractionMatrix matrix, int maxPerUser, int maxPerItem) {
+        int[] rowOffsets = matrix.rowOffsets();
+        int[] users = matrix.userIndices();
+        int entries = users.length;
+        boolean[] keep = new boolean[entries];
+        Arrays.fill(keep, true);
+
+        int[] userCounts = userCounts(matrix, keep);
+        long cooccurrencesBefore = sumOfSquares(userCounts);
+
+        int usersCapped = 0;
+        if (maxPerUser > 0) {
+            usersCapped = capUsers(matrix, userCounts, maxPerUser, keep);
+        }
+
+        int itemsCapped = 0;
+        if (maxPerItem > 0) {
+            long[] priorities = new long[maxPerItem + 1];
+            for (int i = 0; i < matrix.itemCount(); i++) {
+                int kept = 0;
+                for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                    if (keep[p]) {
+                        kept++;
+                    }
+                }
+                if (kept <= maxPerItem) {
+                    continue;
+                }
+                if (priorities.length < kept) {
+                    priorities = new long[kept];
+                }
+                int count = 0;
+                for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                    if (keep[p]) {
+                        priorities[count++] = priority(matrix, i, users[p], ITEM_SEED);
+                    }
+                }
+                Arrays.sort(priorities, 0, count);
+                long cutoff = priorities[maxPerItem - 1];
+                for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                    if (keep[p] && priority(matrix, i, users[p], ITEM_SEED) > cutoff) {
+                        keep[p] = false;
+                    }
+                }
+                itemsCapped++;
+            }
+        }
+
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        long cooccurrencesAfter = kept == entries ? cooccurrencesBefore : sumOfSquares(userCounts(matrix, keep));
+
+        if (kept < entries) {
+            double[] scores = matrix.scores();
+            InteractionBuffer buffer = new InteractionBuffer(kept);
+            for (int i = 0; i < matrix.itemCount(); i++) {
+                for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                    if (keep[p]) {
+                        buffer.add(matrix.itemId(i), matrix.userId(users[p]), scores[p]);
+                    }
+                }
+            }
+            // Re-densifies the IDs, dropping items and users left without entries
+            buffer.build(matrix);
+        }
+
+        return new TrimStats(usersCapped, itemsCapped, entries, kept, cooccurrencesBefore, cooccurrencesAfter);
+    }
+
+    /** Clears {@code keep} for all but the lowest-priority entries of every user above the cap. */
+    private static int capUsers(InteractionMatrix matrix, int[] userCounts, int maxPerUser, boolean[] keep) {
+        int[] rowOffsets = matrix.rowOffsets();
+        int[] users = matrix.userIndices();
+
+        // Priorities of the heavy users only, grouped by user
+        int[] offsets = new int[userCounts.length + 1];
+        int heavy = 0;
+        for (int u = 0; u < userCounts.length; u++) {
+            if (userCounts[u] > maxPerUser) {
+                offsets[u + 1] = userCounts[u];
+                heavy++;
+            }
+        }
+        if (heavy == 0) {
+            return 0;
+        }
+        for (int u = 0; u < userCounts.length; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+        long[] priorities = new long[offsets[userCounts.length]];
+        int[] cursor = Arrays.copyOf(offsets, userCounts.length);
+        for (int i = 0; i < matrix.itemCount(); i++) {
+            for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                int u = users[p];
+                if (userCounts[u] > maxPerUser) {
+                    priorities[cursor[u]++] = priority(matrix, i, u, USER_SEED);
+                }
+            }
+        }
+
+        long[] cutoffs = new long[userCounts.length];
+        for (int u = 0; u < userCounts.length; u++) {
+            if (userCounts[u] > maxPerUser) {
+                Arrays.sort(priorities, offsets[u], offsets[u + 1]);
+                cutoffs[u] = priorities[offsets[u] + maxPerUser - 1];
+            }
+        }
+        for (int i = 0; i < matrix.itemCount(); i++) {
+            for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                int u = users[p];
+                if (userCounts[u] > maxPerUser && priority(matrix, i, u, USER_SEED) > cutoffs[u]) {
+                    keep[p] = false;
+                }
+            }
+        }
+        return heavy;
+    }
+
+    private static int[] userCounts(InteractionMatrix matrix, boolean[] keep) {
+        int[] counts = new int[matrix.userCount()];
+        int[] users = matrix.userIndices();
+        for (int p = 0; p < users.length; p++) {
+            if (keep[p]) {
+                counts[users[p]]++;
+            }
+        }
+        return counts;
+    }
+
+    private static long sumOfSquares(int[] counts) {
+        long sum = 0;
+        for (int count : counts) {
+            sum += (long) count * count;
+        }
+        return sum;
+    }
+
+    /** SplitMix64 finaliser over the entry's IDs, so priorities survive re-densifying. */
+    private static long priority(InteractionMatrix matrix, int item, int user, long seed) {
+        long z = ((long) matrix.userId(user) << 32 | (matrix.itemId(item) & 0xFFFFFFFFL)) ^ seed;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
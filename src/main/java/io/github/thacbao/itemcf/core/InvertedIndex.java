@@ -0,0 +1,90 @@
+package io.github.thacbao.itemcf.core;
+
+import java.util.Arrays;
+
+/**
+ * User → items inverted index over an {@link InteractionMatrix}, i.e. its
+ * transpose: the items of user {@code u} occupy positions
+ * {@code [offsets[u], offsets[u + 1])} of {@code items}/{@code scores}, sorted
+ * by ascending item index.
+ */
+final class InvertedIndex {
+
+    private final int[] offsets;
+    private final int[] items;
+    private final double[] scores;
+
+    private InvertedIndex(int[] offsets, int[] items, double[] scores) {
+        this.offsets = offsets;
+        this.items = items;
+        this.scores = scores;
+    }
+
+    static InvertedIndex of(InteractionMatrix matrix) {
+        return of(matrix, matrix.scores());
+    }
+
+    /**
+     * Transposes {@code matrix} with {@code values} in place of its scores;
+     * {@code values} must be parallel to the matrix's score array.
+     */
+    static InvertedIndex of(InteractionMatrix matrix, double[] values) {
+        int userCount = matrix.userCount();
+        int[] rowOffsets = matrix.rowOffsets();
+        int[] userIndices = matrix.userIndices();
+
+        int[] offsets = new int[userCount + 1];
+        for (int u : userIndices) {
+            offsets[u + 1]++;
+        }
+        for (int u = 0; u < userCount; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+
+        // Rows are visited in ascending item index, so each user's list comes
+        // out sorted
+        int[] cursor = Arrays.copyOf(offsets, userCount);
+        int[] items = new int[userIndices.length];
+        double[] scores = new double[userIndices.length];
+        for (int i = 0; i < matrix.itemCount(); i++) {
+            for (int p = rowOffsets[i]; p < rowOffsets[i + 1]; p++) {
+                int q = cursor[userIndices[p]]++;
+                items[q] = i;
+                scores[q] = values[p];
+            }
+        }
+
+        return new InvertedIndex(offsets, items, scores);
+    }
+
+    int userCount() {
+        return offsets.length - 1;
+    }
+
+    int userStart(int user) {
+        return offsets[user];
+    }
+
+    int userEnd(int user) {
+        return offsets[user + 1];
+    }
+
+    /** Number of items the user interacted with. */
+    int userLength(int user) {
+        return offsets[user + 1] - offsets[user];
+    }
+
+    /** First position in the user's list holding an item index greater than {@code item}. */
+    int firstAfter(int user, int item) {
+        int position = Arrays.binarySearch(items, offsets[user], offsets[user + 1], item);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    int itemAt(int position) {
+        return items[position];
+    }
+
+    double scoreAt(int position) {
+        return scores[position];
+    }
+}
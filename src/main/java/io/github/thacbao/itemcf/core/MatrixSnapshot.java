@@ -0,0 +1,225 @@
+package io.github.thacbao.itemcf.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary codec for {@link InteractionMatrix} snapshots.
+ * <p>
+ * Layout (version 1): magic "ICFM", version and flags as ints, then a body
+ * that is Deflate-compressed when {@link #FLAG_DEFLATE} is set:
+ *
+ * <pre>
+ * watermark          flag byte, then UTF string if present
+ * totalInteractions  varint
+ * itemIds            count, then first ID zigzag-encoded and ascending deltas, all varints
+ * userIds            same encoding
+ * rows               per item: length, first user index, ascending deltas (varints)
+ * scores             per entry: varint 2 * score for whole numbers in [0, 2^28),
+ *                    otherwise varint 1 followed by the 8-byte IEEE 754 value
+ * </pre>
+ *
+ * Integer ratings and implicit-feedback weights therefore take one byte each,
+ * and a typical user index delta one or two.
+ */
+final class MatrixSnapshot {
+
+    static final int MAGIC = 0x4943464D; // "ICFM"
+    static final int VERSION = 1;
+    static final int FLAG_DEFLATE = 1;
+
+    private static final long WHOLE_SCORE_LIMIT = 1L << 28;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private MatrixSnapshot() {
+    }
+
+    static void write(InteractionMatrix matrix, OutputStream target, boolean compress) throws IOException {
+        DataOutputStream header = new DataOutputStream(target);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(compress ? FLAG_DEFLATE : 0);
+        header.flush();
+
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            OutputStream body = compress
+                    ? new DeflaterOutputStream(new NonClosing(target), deflater, BUFFER_SIZE)
+                    : new NonClosing(target);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(body, BUFFER_SIZE));
+
+            String watermark = matrix.watermark();
+            out.writeBoolean(watermark != null);
+            if (watermark != null) {
+                out.writeUTF(watermark);
+            }
+            writeVarint(out, matrix.totalInteractions());
+
+            writeAscending(out, matrix.itemCount(), matrix::itemId);
+            writeAscending(out, matrix.userCount(), matrix::userId);
+
+            int[] users = matrix.userIndices();
+            for (int i = 0; i < matrix.itemCount(); i++) {
+                writeVarint(out, matrix.rowLength(i));
+                int previous = 0;
+                for (int p = matrix.rowStart(i); p < matrix.rowEnd(i); p++) {
+                    writeVarint(out, users[p] - previous);
+                    previous = users[p];
+                }
+            }
+
+            for (double score : matrix.scores()) {
+                if (score >= 0 && score < WHOLE_SCORE_LIMIT && score == Math.rint(score)) {
+                    writeVarint(out, (long) score << 1);
+                } else {
+                    writeVarint(out, 1);
+                    out.writeDouble(score);
+                }
+            }
+            out.close(); // finishes the deflate stream; the target stays open
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    static void read(InputStream source, InteractionMatrix target) throws IOException {
+        DataInputStream header = new DataInputStream(source);
+        if (header.readInt() != MAGIC) {
+            throw new IllegalStateException("Not an interaction matrix snapshot");
+        }
+        int version = header.readInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported interaction matrix snapshot version " + version);
+        }
+        boolean compressed = (header.readInt() & FLAG_DEFLATE) != 0;
+
+        InputStream body = compressed ? new InflaterInputStream(source) : source;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(body, BUFFER_SIZE));
+
+        String watermark = in.readBoolean() ? in.readUTF() : null;
+        int totalInteractions = readInt(in);
+
+        int[] itemIds = readAscending(in);
+        int[] userIds = readAscending(in);
+
+        int[] rowOffsets = new int[itemIds.length + 1];
+        int[] users = new int[16];
+        int entries = 0;
+        for (int i = 0; i < itemIds.length; i++) {
+            int length = readInt(in);
+            if (users.length < entries + length) {
+                users = Arrays.copyOf(users, Math.max(entries + length, users.length * 2));
+            }
+            int user = 0;
+            for (int k = 0; k < length; k++) {
+                user += readInt(in);
+                if (user < 0 || user >= userIds.length || (k > 0 && user <= users[entries - 1])) {
+                    throw new IllegalStateException("Corrupt interaction matrix snapshot: bad user index");
+                }
+                users[entries++] = user;
+            }
+            rowOffsets[i + 1] = entries;
+        }
+
+        double[] scores = new double[entries];
+        for (int p = 0; p < entries; p++) {
+            long tagged = readVarint(in);
+            scores[p] = (tagged & 1) == 0 ? (double) (tagged >>> 1) : in.readDouble();
+        }
+
+        target.install(itemIds, userIds, rowOffsets, Arrays.copyOf(users, entries), scores);
+        target.restoreProgress(totalInteractions, watermark);
+    }
+
+    private interface IntAt {
+        int get(int index);
+    }
+
+    private static void writeAscending(DataOutputStream out, int count, IntAt values) throws IOException {
+        writeVarint(out, count);
+        long previous = 0;
+        for (int k = 0; k < count; k++) {
+            long value = values.get(k);
+            // The first value may be negative; later deltas are positive
+            writeVarint(out, k == 0 ? (value << 1) ^ (value >> 63) : value - previous);
+            previous = value;
+        }
+    }
+
+    private static int[] readAscending(DataInputStream in) throws IOException {
+        int[] values = new int[readInt(in)];
+        long previous = 0;
+        for (int k = 0; k < values.length; k++) {
+            long raw = readVarint(in);
+            long value = k == 0 ? (raw >>> 1) ^ -(raw & 1) : previous + raw;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE || (k > 0 && raw <= 0)) {
+                throw new IllegalStateException("Corrupt interaction matrix snapshot: bad ID sequence");
+            }
+            values[k] = (int) value;
+            previous = value;
+        }
+        return values;
+    }
+
+    static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated interaction matrix snapshot");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Corrupt interaction matrix snapshot: varint too long");
+    }
+
+    private static int readInt(DataInputStream in) throws IOException {
+        long value = readVarint(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Corrupt interaction matrix snapshot: count out of range");
+        }
+        return (int) value;
+    }
+
+    /** Keeps the caller's stream open when the body stream is closed. */
+    private static final class NonClosing extends FilterOutputStream {
+
+        NonClosing(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
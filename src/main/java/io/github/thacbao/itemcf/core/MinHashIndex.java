@@ -0,0 +1,217 @@
+package io.github.thacbao.itemcf.core;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Locality-sensitive candidate index over the user sets of an
+ * {@link InteractionMatrix}. Every item gets {@code bands * rows} MinHash
+ * values; each band of {@code rows} values is hashed into a bucket, and two
+ * items are candidates when they share a bucket in at least one band.
+ * <p>
+ * Two items with Jaccard similarity {@code s} become candidates with
+ * probability {@code 1 - (1 - s^rows)^bands}, so more bands raise recall and
+ * more rows cut false candidates. Signatures are built one band at a time
+ * (bands in parallel if requested) and discarded after bucketing; only
+ * buckets with at least two items are kept.
+ * <p>
+ * Items sharing a very active user often take that user's hash as their
+ * minimum and pile into one huge bucket, which would bring back the
+ * quadratic blow-up LSH is meant to avoid. Buckets above a size cap are
+ * therefore dropped; truly similar pairs in them usually still meet in
+ * another band. The hash functions use fixed seeds, so the candidates are
+ * deterministic.
+ */
+final class MinHashIndex {
+
+    private static final long SEED = 0x5DEECE66DL;
+    private static final int NO_BUCKET = -1;
+
+    private final int bands;
+    /** [band][item] → bucket of the item, or {@link #NO_BUCKET} if alone */
+    private final int[][] bucketOf;
+    /** [band][bucket] → start of the bucket in {@link #members}; one extra end entry */
+    private final int[][] bucketStarts;
+    /** [band] → items of all buckets, grouped by bucket */
+    private final int[][] members;
+
+    private MinHashIndex(int bands, int[][] bucketOf, int[][] bucketStarts, int[][] members) {
+        this.bands = bands;
+        this.bucketOf = bucketOf;
+        this.bucketStarts = bucketStarts;
+        this.members = members;
+    }
+
+    /**
+     * @param maxBucketSize largest bucket kept; larger ones are dropped
+     * @param pool          pool hashing bands concurrently; {@code null} builds
+     *                      on the caller thread
+     */
+    static MinHashIndex build(InteractionMatrix matrix, int bands, int rows, int maxBucketSize, ForkJoinPool pool) {
+        int[][] bucketOf = new int[bands][];
+        int[][] bucketStarts = new int[bands][];
+        int[][] members = new int[bands][];
+        IntConsumer buildBand = band -> bucket(bandKeys(matrix, band, rows), maxBucketSize, band,
+                bucketOf, bucketStarts, members);
+
+        if (pool == null) {
+            for (int band = 0; band < bands; band++) {
+                buildBand.accept(band);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, bands).parallel().forEach(buildBand)).join();
+        }
+        return new MinHashIndex(bands, bucketOf, bucketStarts, members);
+    }
+
+    /** Hashes the {@code rows} MinHash values of every item in one band into a single key. */
+    private static int[] bandKeys(InteractionMatrix matrix, int band, int rows) {
+        int[] users = matrix.userIndices();
+        int userCount = matrix.userCount();
+        // Seeded per band so the keys do not depend on which thread built which band
+        SplittableRandom random = new SplittableRandom(SEED + band);
+
+        // userHashes[u * rows + r]: user u under the band's r-th hash function,
+        // computed once per user rather than once per occurrence
+        int[] userHashes = new int[userCount * rows];
+        for (int r = 0; r < rows; r++) {
+            int multiplier = random.nextInt() | 1;
+            int increment = random.nextInt();
+            for (int u = 0; u < userCount; u++) {
+                userHashes[u * rows + r] = mix(u * multiplier + increment);
+            }
+        }
+
+        int[] minima = new int[rows];
+        int[] keys = new int[matrix.itemCount()];
+        for (int i = 0; i < keys.length; i++) {
+            Arrays.fill(minima, Integer.MAX_VALUE);
+            for (int p = matrix.rowStart(i); p < matrix.rowEnd(i); p++) {
+                int base = users[p] * rows;
+                for (int r = 0; r < rows; r++) {
+                    minima[r] = Math.min(minima[r], userHashes[base + r]);
+                }
+            }
+            int key = 0x811C9DC5;
+            for (int r = 0; r < rows; r++) {
+                key = mix(key * 31 + minima[r]);
+            }
+            keys[i] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Groups the items of one band by key with a counting pass over an
+     * open-addressing table, then keeps the groups of two up to
+     * {@code maxBucketSize} items. A rare 32-bit key collision only adds
+     * candidates, which are scored exactly.
+     */
+    private static void bucket(int[] keys, int maxBucketSize, int band,
+            int[][] bucketOf, int[][] bucketStarts, int[][] members) {
+        int n = keys.length;
+        int capacity = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+        int mask = capacity - 1;
+        int[] tableKeys = new int[capacity];
+        int[] tableCounts = new int[capacity]; // 0 marks a free slot
+        int[] slotOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            int slot = keys[i] & mask;
+            while (tableCounts[slot] != 0 && tableKeys[slot] != keys[i]) {
+                slot = (slot + 1) & mask;
+            }
+            tableKeys[slot] = keys[i];
+            tableCounts[slot]++;
+            slotOf[i] = slot;
+        }
+
+        // Number shared slots in order of first appearance and lay their
+        // members out contiguously, ascending by item within each bucket
+        int[] bucketOfSlot = tableKeys; // keys are no longer needed
+        Arrays.fill(bucketOfSlot, NO_BUCKET);
+        int[] of = new int[n];
+        int[] starts = new int[n / 2 + 1];
+        int buckets = 0;
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            int slot = slotOf[i];
+            if (tableCounts[slot] < 2 || tableCounts[slot] > maxBucketSize) {
+                of[i] = NO_BUCKET;
+                continue;
+            }
+            if (bucketOfSlot[slot] == NO_BUCKET) {
+                bucketOfSlot[slot] = buckets;
+                starts[buckets++] = size;
+                size += tableCounts[slot];
+            }
+            of[i] = bucketOfSlot[slot];
+        }
+        starts[buckets] = size;
+
+        int[] cursor = Arrays.copyOf(starts, buckets);
+        int[] grouped = new int[size];
+        for (int i = 0; i < n; i++) {
+            if (of[i] != NO_BUCKET) {
+                grouped[cursor[of[i]]++] = i;
+            }
+        }
+
+        bucketOf[band] = of;
+        bucketStarts[band] = Arrays.copyOf(starts, buckets + 1);
+        members[band] = grouped;
+    }
+
+    /**
+     * Collects the distinct candidates of item {@code i} into {@code out}.
+     *
+     * @param marks scratch flags indexed by item, all {@code false} on entry
+     *              and on return
+     * @return number of candidates written to {@code out}
+     */
+    int candidates(int i, boolean[] marks, int[] out) {
+        int count = 0;
+        marks[i] = true;
+        for (int band = 0; band < bands; band++) {
+            int bucket = bucketOf[band][i];
+            if (bucket == NO_BUCKET) {
+                continue;
+            }
+            int[] grouped = members[band];
+            for (int k = bucketStarts[band][bucket]; k < bucketStarts[band][bucket + 1]; k++) {
+                int j = grouped[k];
+                if (!marks[j]) {
+                    marks[j] = true;
+                    out[count++] = j;
+                }
+            }
+        }
+        marks[i] = false;
+        for (int k = 0; k < count; k++) {
+            marks[out[k]] = false;
+        }
+        return count;
+    }
+
+    /** Upper bound on the candidates of item {@code i}: its bucket sizes summed over all bands. */
+    long candidateBound(int i) {
+        long bound = 0;
+        for (int band = 0; band < bands; band++) {
+            int bucket = bucketOf[band][i];
+            if (bucket != NO_BUCKET) {
+                bound += bucketStarts[band][bucket + 1] - bucketStarts[band][bucket];
+            }
+        }
+        return bound;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.thacbao.itemcf.core;
+
+/**
+ * Open-addressing map from a neighbour item ID to the running dot product and
+ * common-user count of one item with that neighbour.
+ */
+final class PairStatsRow {
+
+    private int[] keys;
+    private double[] dots;
+    private int[] counts;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    PairStatsRow() {
+        allocate(8);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(int neighbour, double dotDelta, int countDelta) {
+        int slot = find(neighbour);
+        if (!used[slot]) {
+            keys[slot] = neighbour;
+            dots[slot] = dotDelta;
+            counts[slot] = countDelta;
+            used[slot] = true;
+            if (++size > (mask + 1) >>> 1) {
+                rehash();
+            }
+            return;
+        }
+        dots[slot] += dotDelta;
+        counts[slot] += countDelta;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    boolean isUsed(int slot) {
+        return used[slot];
+    }
+
+    int neighbourAt(int slot) {
+        return keys[slot];
+    }
+
+    double dotAt(int slot) {
+        return dots[slot];
+    }
+
+    int countAt(int slot) {
+        return counts[slot];
+    }
+
+    private int find(int key) {
+        int h = key * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        double[] oldDots = dots;
+        int[] oldCounts = counts;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length * 2);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldUsed[slot]) {
+                int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                dots[target] = oldDots[slot];
+                counts[target] = oldCounts[slot];
+                used[target] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        dots = new double[capacity];
+        counts = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+}
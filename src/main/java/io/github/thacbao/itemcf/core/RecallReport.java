@@ -0,0 +1,101 @@
+package io.github.thacbao.itemcf.core;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares an approximate neighbour computation with an exact one over the
+ * same matrix.
+ *
+ * @param exactPairs        number of neighbour entries kept by the exact run
+ * @param approximatePairs  number of neighbour entries kept by the
+ *                          approximate run
+ * @param matchedPairs      number of exact entries also kept by the
+ *                          approximate run
+ * @param meanItemRecall    per-item share of exact neighbours found, averaged
+ *                          over the items that have any exact neighbour
+ * @param exactTime         wall time of the exact run
+ * @param approximateTime   wall time of the approximate run
+ */
+public record RecallReport(
+        long exactPairs,
+        long approximatePairs,
+        long matchedPairs,
+        double meanItemRecall,
+        Duration exactTime,
+        Duration approximateTime) {
+
+    /**
+     * Runs both calculators over {@code matrix} and compares their neighbour
+     * lists. Both should share the strategy, threshold, minimum common users
+     * and top-K so that only the pair enumeration differs.
+     *
+     * @param matrix      item-user matrix
+     * @param exact       reference calculator, e.g. in
+     *                    {@link ComputationMode#INVERTED_INDEX} mode
+     * @param approximate calculator under evaluation, e.g. in
+     *                    {@link ComputationMode#APPROXIMATE} mode
+     */
+    public static RecallReport evaluate(InteractionMatrix matrix, SimilarityCalculator exact,
+            SimilarityCalculator approximate) {
+        long start = System.nanoTime();
+        List<SimilarityResult> exactResults = exact.compute(matrix);
+        Duration exactTime = Duration.ofNanos(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        List<SimilarityResult> approximateResults = approximate.compute(matrix);
+        Duration approximateTime = Duration.ofNanos(System.nanoTime() - start);
+
+        return compare(exactResults, approximateResults, exactTime, approximateTime);
+    }
+
+    static RecallReport compare(List<SimilarityResult> exact, List<SimilarityResult> approximate,
+            Duration exactTime, Duration approximateTime) {
+        Map<Integer, Set<Integer>> found = new HashMap<>();
+        for (SimilarityResult result : approximate) {
+            found.computeIfAbsent(result.itemId1(), k -> new HashSet<>()).add(result.itemId2());
+        }
+
+        Map<Integer, int[]> perItem = new HashMap<>(); // itemId1 → {matched, expected}
+        long matched = 0;
+        for (SimilarityResult result : exact) {
+            int[] counts = perItem.computeIfAbsent(result.itemId1(), k -> new int[2]);
+            counts[1]++;
+            if (found.getOrDefault(result.itemId1(), Set.of()).contains(result.itemId2())) {
+                counts[0]++;
+                matched++;
+            }
+        }
+
+        double recallSum = 0.0;
+        for (int[] counts : perItem.values()) {
+            recallSum += (double) counts[0] / counts[1];
+        }
+        double meanItemRecall = perItem.isEmpty() ? 1.0 : recallSum / perItem.size();
+        return new RecallReport(exact.size(), approximate.size(), matched, meanItemRecall,
+                exactTime, approximateTime);
+    }
+
+    /** Share of all exact neighbour entries found by the approximate run; 1 if there are none. */
+    public double recall() {
+        return exactPairs == 0 ? 1.0 : (double) matchedPairs / exactPairs;
+    }
+
+    /** Exact wall time divided by approximate wall time. */
+    public double speedup() {
+        return approximateTime.isZero() ? Double.POSITIVE_INFINITY
+                : (double) exactTime.toNanos() / approximateTime.toNanos();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("recall %.4f (%d of %d pairs), mean item recall %.4f, exact %d ms, approximate %d ms",
+                recall(), matchedPairs, exactPairs, meanItemRecall, exactTime.toMillis(), approximateTime.toMillis());
+    }
+}
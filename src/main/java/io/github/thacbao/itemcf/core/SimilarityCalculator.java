@@ -1,19 +1,56 @@
 package io.github.thacbao.itemcf.core;
 
 import io.github.thacbao.itemcf.model.SimilarityResult;
+import io.github.thacbao.itemcf.similarity.CooccurrenceSimilarityStrategy;
+import io.github.thacbao.itemcf.similarity.CosineSimilarityStrategy;
+import io.github.thacbao.itemcf.similarity.ItemStatistics;
+import io.github.thacbao.itemcf.similarity.PairStatistics;
 import io.github.thacbao.itemcf.similarity.SimilarityStrategy;
+import io.github.thacbao.itemcf.util.TopKHeap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
 
 public class SimilarityCalculator {
 
     private static final Logger log = LoggerFactory.getLogger(SimilarityCalculator.class);
 
+    /** Blocks per worker thread; extra blocks give work stealing room to even out. */
+    private static final int BLOCKS_PER_THREAD = 8;
+
+    /** Scores a block buffers for later rows before merging them into those rows' heaps. */
+    private static final int REVERSE_BUFFER_SIZE = 4096;
+
+    /** LSH buckets may hold this many items per retained neighbour, see {@link #maxBucketSize()}. */
+    private static final int LSH_BUCKET_CAP_PER_NEIGHBOUR = 10;
+    private static final int MIN_LSH_BUCKET_CAP = 100;
+
+    /** Default number of LSH bands for {@link ComputationMode#APPROXIMATE}. */
+    public static final int DEFAULT_LSH_BANDS = 64;
+
+    /** Default number of MinHash values per LSH band for {@link ComputationMode#APPROXIMATE}. */
+    public static final int DEFAULT_LSH_ROWS = 2;
+
     private final SimilarityStrategy strategy;
     private final double threshold;
     private final int minCommonUsers;
+    private final int topK;
+    private final ComputationMode mode;
+    private final int parallelism;
+    private final int lshBands;
+    private final int lshRows;
+    private final boolean centerOnUserMean;
+    private final ForkJoinPool pool;
+
+    // Created on first parallel compute when no pool was given; its workers are
+    // daemon threads that retire when idle, so it needs no shutdown
+    private ForkJoinPool ownPool;
 
     /**
      * @param strategy       algorithm used to compute similarity
@@ -21,9 +58,101 @@ public class SimilarityCalculator {
      * @param minCommonUsers minimum number of shared users
      */
     public SimilarityCalculator(SimilarityStrategy strategy, double threshold, int minCommonUsers) {
+        this(strategy, threshold, minCommonUsers, ComputationMode.INVERTED_INDEX);
+    }
+
+    /**
+     * @param strategy       algorithm used to compute similarity
+     * @param threshold      minimum score for a pair to be retained
+     * @param minCommonUsers minimum number of shared users
+     * @param mode           how candidate pairs are enumerated
+     */
+    public SimilarityCalculator(SimilarityStrategy strategy, double threshold, int minCommonUsers,
+            ComputationMode mode) {
+        this(strategy, threshold, minCommonUsers, Integer.MAX_VALUE, mode, 1);
+    }
+
+    /**
+     * @param strategy       algorithm used to compute similarity; must be
+     *                       thread-safe when {@code parallelism > 1}
+     * @param threshold      minimum score for a pair to be retained
+     * @param minCommonUsers minimum number of shared users
+     * @param topK           maximum number of neighbours kept per item;
+     *                       {@link Integer#MAX_VALUE} keeps every qualifying pair
+     * @param mode           how candidate pairs are enumerated
+     * @param parallelism    number of worker threads; 1 computes on the caller
+     *                       thread
+     */
+    public SimilarityCalculator(SimilarityStrategy strategy, double threshold, int minCommonUsers,
+            int topK, ComputationMode mode, int parallelism) {
+        this(strategy, threshold, minCommonUsers, topK, mode, parallelism,
+                DEFAULT_LSH_BANDS, DEFAULT_LSH_ROWS);
+    }
+
+    /**
+     * @param strategy       algorithm used to compute similarity; must be
+     *                       thread-safe when {@code parallelism > 1}
+     * @param threshold      minimum score for a pair to be retained
+     * @param minCommonUsers minimum number of shared users
+     * @param topK           maximum number of neighbours kept per item;
+     *                       {@link Integer#MAX_VALUE} keeps every qualifying pair
+     * @param mode           how candidate pairs are enumerated
+     * @param parallelism    number of worker threads; 1 computes on the caller
+     *                       thread
+     * @param lshBands       number of LSH bands for
+     *                       {@link ComputationMode#APPROXIMATE}
+     * @param lshRows        number of MinHash values per LSH band for
+     *                       {@link ComputationMode#APPROXIMATE}
+     */
+    public SimilarityCalculator(SimilarityStrategy strategy, double threshold, int minCommonUsers,
+            int topK, ComputationMode mode, int parallelism, int lshBands, int lshRows) {
+        this(strategy, threshold, minCommonUsers, topK, mode, parallelism, lshBands, lshRows, false, null);
+    }
+
+    /**
+     * @param strategy       algorithm used to compute similarity; must be
+     *                       thread-safe when {@code parallelism > 1}
+     * @param threshold      minimum score for a pair to be retained
+     * @param minCommonUsers minimum number of shared users
+     * @param topK           maximum number of neighbours kept per item;
+     *                       {@link Integer#MAX_VALUE} keeps every qualifying pair
+     * @param mode           how candidate pairs are enumerated
+     * @param parallelism    number of worker threads; 1 computes on the caller
+     *                       thread
+     * @param lshBands       number of LSH bands for
+     *                       {@link ComputationMode#APPROXIMATE}
+     * @param lshRows        number of MinHash values per LSH band for
+     *                       {@link ComputationMode#APPROXIMATE}
+     * @param centerOnUserMean whether each user's mean score is subtracted
+     *                       from all of that user's scores before the
+     *                       strategy sees them, as adjusted cosine requires
+     * @param pool           pool running the work when {@code parallelism > 1},
+     *                       owned by the caller; {@code null} makes the
+     *                       calculator create one on first use and reuse it
+     *                       for every later {@code compute} call
+     */
+    public SimilarityCalculator(SimilarityStrategy strategy, double threshold, int minCommonUsers,
+            int topK, ComputationMode mode, int parallelism, int lshBands, int lshRows,
+            boolean centerOnUserMean, ForkJoinPool pool) {
+        if (topK < 1) {
+            throw new IllegalArgumentException("topK must be >= 1");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        if (lshBands < 1 || lshRows < 1) {
+            throw new IllegalArgumentException("lshBands and lshRows must be >= 1");
+        }
         this.strategy = Objects.requireNonNull(strategy);
         this.threshold = threshold;
         this.minCommonUsers = minCommonUsers;
+        this.topK = topK;
+        this.mode = Objects.requireNonNull(mode);
+        this.parallelism = parallelism;
+        this.lshBands = lshBands;
+        this.lshRows = lshRows;
+        this.centerOnUserMean = centerOnUserMean;
+        this.pool = pool;
     }
 
     /**
@@ -31,56 +160,708 @@ public class SimilarityCalculator {
      * matrix.
      *
      * @param itemMatrix item-user matrix: itemId → (userId → score)
-     * @return list of qualified {@link SimilarityResult} pairs (bidirectional)
+     * @return qualifying {@link SimilarityResult}s, at most {@code topK} per
+     *         item
      */
     public List<SimilarityResult> compute(Map<Integer, Map<Integer, Double>> itemMatrix) {
-        List<Integer> itemIds = new ArrayList<>(itemMatrix.keySet());
-        int n = itemIds.size();
-        List<SimilarityResult> results = new ArrayList<>();
+        return compute(InteractionMatrix.fromMap(itemMatrix));
+    }
+
+    /**
+     * Computes the top-{@code topK} neighbours of every item in the given CSR
+     * matrix. Each item's row is scored against all candidate items and reduced
+     * through a bounded min-heap, so only the retained neighbours are ever
+     * materialised. Results are grouped by {@code itemId1} in ascending ID order
+     * and sorted by score descending (ties by ascending neighbour ID) within a
+     * group; the output is identical for any parallelism.
+     *
+     * @param matrix item-user matrix
+     * @return qualifying {@link SimilarityResult}s, at most {@code topK} per
+     *         item
+     */
+    public List<SimilarityResult> compute(InteractionMatrix matrix) {
+        Pass pass = new Pass(matrix);
+        int[] bounds = blockBounds(pass);
+
+        // One result buffer per block, concatenated in block order so the
+        // output does not depend on which thread ran which block
+        List<List<SimilarityResult>> buffers = new ArrayList<>(bounds.length - 1);
+        for (int k = 0; k < bounds.length - 1; k++) {
+            buffers.add(new ArrayList<>());
+        }
+        execute(pass, bounds, block -> buffers.get(block)::addAll);
+
+        int total = 0;
+        for (List<SimilarityResult> buffer : buffers) {
+            total += buffer.size();
+        }
+        List<SimilarityResult> results = new ArrayList<>(total);
+        for (List<SimilarityResult> buffer : buffers) {
+            results.addAll(buffer);
+        }
+
+        log.debug("Kept {} neighbour entries (top-{} per item) from {} items",
+                results.size(), topK, matrix.itemCount());
+        return results;
+    }
+
+    /**
+     * Computes the same neighbours as {@link #compute(InteractionMatrix)} but
+     * pushes each item's list to {@code sink} as soon as it is final, so no
+     * result list for the whole catalog is ever built. With
+     * {@code parallelism > 1} the sink is called concurrently and items arrive
+     * in no particular order. If the sink or any block fails, the remaining
+     * blocks stop and this method returns only once none of them can call the
+     * sink again.
+     *
+     * @param matrix item-user matrix
+     * @param sink   receiver of each item's neighbours
+     */
+    public void compute(InteractionMatrix matrix, SimilaritySink sink) {
+        Objects.requireNonNull(sink, "sink must not be null");
+        Pass pass = new Pass(matrix);
+        execute(pass, blockBounds(pass), block -> sink);
+    }
 
-        log.debug("Computing pairwise similarities for {} items ({} pairs)", n, (long) n * (n - 1) / 2);
+    private int[] blockBounds(Pass pass) {
+        int n = pass.matrix.itemCount();
+        if (mode == ComputationMode.ALL_PAIRS) {
+            log.debug("Computing pairwise similarities for {} items ({} pairs)", n, (long) n * (n - 1) / 2);
+        } else if (mode == ComputationMode.APPROXIMATE) {
+            log.debug("Computing LSH candidate similarities for {} items ({} bands x {} rows)",
+                    n, lshBands, lshRows);
+        } else {
+            log.debug("Computing co-occurring similarities for {} items over {} users", n, pass.index.userCount());
+        }
+        return parallelism == 1
+                ? new int[] {0, n}
+                : partition(pass.rowCosts(), parallelism * BLOCKS_PER_THREAD);
+    }
 
-        for (int i = 0; i < n; i++) {
-            for (int j = i + 1; j < n; j++) {
-                int id1 = itemIds.get(i);
-                int id2 = itemIds.get(j);
+    private void execute(Pass pass, int[] bounds, IntFunction<SimilaritySink> blockSinks) {
+        int blockCount = bounds.length - 1;
+        pass.start(blockCount);
+        if (parallelism == 1) {
+            pass.computeBlock(bounds, 0, blockSinks);
+            return;
+        }
 
-                Map<Integer, Double> v1 = itemMatrix.get(id1);
-                Map<Integer, Double> v2 = itemMatrix.get(id2);
+        pool().invoke(new BlockTask(pass, bounds, blockSinks, 0, blockCount));
+        log.debug("Computed {} row blocks on {} threads", blockCount, parallelism);
+    }
 
-                // Check common users BEFORE running the full similarity computation
-                int commonUsers = countCommonUsers(v1, v2);
-                if (commonUsers < minCommonUsers) {
-                    continue;
+    /** The pool running parallel work, or {@code null} when computing on the caller thread. */
+    private synchronized ForkJoinPool pool() {
+        if (parallelism == 1) {
+            return null;
+        }
+        if (pool != null) {
+            return pool;
+        }
+        if (ownPool == null) {
+            ownPool = new ForkJoinPool(parallelism);
+        }
+        return ownPool;
+    }
+
+    /**
+     * Splits rows into at most {@code blocks} contiguous ranges of roughly equal
+     * total cost.
+     *
+     * @return block boundaries: block k spans rows {@code [bounds[k], bounds[k + 1])}
+     */
+    static int[] partition(long[] rowCosts, int blocks) {
+        int n = rowCosts.length;
+        long total = 0;
+        for (long cost : rowCosts) {
+            total += cost;
+        }
+        int target = Math.max(1, Math.min(blocks, n));
+
+        int[] bounds = new int[target + 1];
+        int count = 0;
+        long accumulated = 0;
+        for (int i = 0; i < n && count < target - 1; i++) {
+            accumulated += rowCosts[i];
+            // Cut once this block reaches its share of the total work
+            if (accumulated * target >= total * (count + 1)) {
+                bounds[++count] = i + 1;
+            }
+        }
+        bounds[++count] = n;
+        return Arrays.copyOf(bounds, count + 1);
+    }
+
+    /**
+     * Largest LSH bucket kept in APPROXIMATE mode. Huge buckets come from hub
+     * users rather than similarity, and a few times topK candidates per bucket
+     * leave enough room to fill each item's neighbour list.
+     */
+    private int maxBucketSize() {
+        long cap = Math.max(MIN_LSH_BUCKET_CAP, (long) LSH_BUCKET_CAP_PER_NEIGHBOUR * topK);
+        return (int) Math.min(Integer.MAX_VALUE, cap);
+    }
+
+    private static double cosine(double dotProduct, double norm1, double norm2) {
+        if (norm1 == 0.0 || norm2 == 0.0) {
+            return 0.0;
+        }
+        // Rounding can push identical rows just above 1, e.g. sqrt(3) * sqrt(3) < 3
+        return Math.min(1.0, dotProduct / (norm1 * norm2));
+    }
+
+    /** L2 norm of every row of {@code scores}. */
+    private static double[] rowNorms(InteractionMatrix matrix, double[] scores) {
+        double[] norms = new double[matrix.itemCount()];
+        for (int i = 0; i < norms.length; i++) {
+            double sumOfSquares = 0.0;
+            for (int p = matrix.rowStart(i); p < matrix.rowEnd(i); p++) {
+                sumOfSquares += scores[p] * scores[p];
+            }
+            norms[i] = Math.sqrt(sumOfSquares);
+        }
+        return norms;
+    }
+
+    /** Copy of the matrix scores with each user's mean score subtracted. */
+    private static double[] userCenteredScores(InteractionMatrix matrix) {
+        int[] users = matrix.userIndices();
+        double[] scores = matrix.scores();
+        double[] sums = new double[matrix.userCount()];
+        int[] counts = new int[matrix.userCount()];
+        for (int p = 0; p < users.length; p++) {
+            sums[users[p]] += scores[p];
+            counts[users[p]]++;
+        }
+        double[] centered = new double[scores.length];
+        for (int p = 0; p < users.length; p++) {
+            centered[p] = scores[p] - sums[users[p]] / counts[users[p]];
+        }
+        return centered;
+    }
+
+    private static ItemStatistics[] itemStatistics(InteractionMatrix matrix, double[] scores) {
+        ItemStatistics[] stats = new ItemStatistics[matrix.itemCount()];
+        for (int i = 0; i < stats.length; i++) {
+            double sum = 0.0;
+            double sumOfSquares = 0.0;
+            for (int p = matrix.rowStart(i); p < matrix.rowEnd(i); p++) {
+                sum += scores[p];
+                sumOfSquares += scores[p] * scores[p];
+            }
+            stats[i] = new ItemStatistics(matrix.rowLength(i), sum, sumOfSquares);
+        }
+        return stats;
+    }
+
+    /**
+     * Read-only state shared by all blocks of one {@link #compute} call, plus a
+     * pool of per-thread scratch accumulators.
+     * <p>
+     * With a symmetric strategy, ALL_PAIRS and INVERTED_INDEX are triangular:
+     * row i only scores the items after it and offers each score to both
+     * rows. Row i's own neighbours and the scores it owes later rows go
+     * through per-block buffers into shared per-row heaps. A row is final,
+     * and emitted, once every block up to its own has finished. The heaps
+     * keep the best entries under a total order, so the results do not depend
+     * on the order in which blocks merge into them.
+     */
+    private final class Pass {
+
+        private final InteractionMatrix matrix;
+        private final int[] users;
+        /** Original user IDs per entry, handed to custom strategies; {@code users} when unused */
+        private final int[] userIds;
+        /** Matrix scores, or user-mean centered copies of them if configured */
+        private final double[] scores;
+        private final InvertedIndex index;
+        private final MinHashIndex candidates;
+        /** Row norms when the strategy is plain cosine, which can then skip recomputing them */
+        private final double[] norms;
+        /** Set when the strategy scores pairs from aggregates */
+        private final CooccurrenceSimilarityStrategy statsStrategy;
+        private final ItemStatistics[] itemStats;
+        private final int heapCapacity;
+        private final Queue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+        /** Whether each pair is scored once, from its lower row, for both rows */
+        private final boolean triangular;
+        /** Neighbours gathered so far for rows not yet emitted; triangular passes only */
+        private final AtomicReferenceArray<TopKHeap> rowHeaps;
+        // Guarded by this pass: finished blocks, and the first block not yet emitted
+        private boolean[] blockDone;
+        private int emitFrontier;
+        /** Set once a block fails; the remaining blocks then stop at their next row */
+        private volatile boolean cancelled;
+
+        Pass(InteractionMatrix matrix) {
+            this.matrix = matrix;
+            this.users = matrix.userIndices();
+            this.statsStrategy = strategy instanceof CooccurrenceSimilarityStrategy s ? s : null;
+            this.scores = centerOnUserMean ? userCenteredScores(matrix) : matrix.scores();
+            this.index = mode == ComputationMode.INVERTED_INDEX ? InvertedIndex.of(matrix, scores) : null;
+            this.candidates = mode == ComputationMode.APPROXIMATE
+                    ? MinHashIndex.build(matrix, lshBands, lshRows, maxBucketSize(), pool())
+                    : null;
+            this.itemStats = statsStrategy != null ? itemStatistics(matrix, scores) : null;
+            this.norms = strategy.getClass() != CosineSimilarityStrategy.class ? null
+                    : centerOnUserMean ? rowNorms(matrix, scores)
+                    : matrix.norms();
+            // Custom strategies see user IDs, as with the map-based API; the built-in paths use dense indices
+            this.userIds = norms == null && statsStrategy == null ? matrix.userIdsByEntry() : users;
+            this.heapCapacity = Math.max(1, Math.min(topK, matrix.itemCount()));
+            this.triangular = candidates == null && strategy.isSymmetric();
+            this.rowHeaps = triangular ? new AtomicReferenceArray<>(matrix.itemCount()) : null;
+        }
+
+        synchronized void start(int blockCount) {
+            blockDone = new boolean[blockCount];
+            emitFrontier = 0;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Estimated work of each row: every other item for ALL_PAIRS, the number
+         * of visited co-occurrences for INVERTED_INDEX, the LSH bucket sizes for
+         * APPROXIMATE. A triangular pass only counts the items after the row,
+         * so early rows weigh more.
+         */
+        long[] rowCosts() {
+            int n = matrix.itemCount();
+            long[] costs = new long[n];
+            for (int i = 0; i < n; i++) {
+                if (candidates != null) {
+                    costs[i] = 1 + candidates.candidateBound(i);
+                } else if (index == null) {
+                    costs[i] = triangular ? n - i : n;
+                } else {
+                    long cost = 1;
+                    for (int p = matrix.rowStart(i); p < matrix.rowEnd(i); p++) {
+                        int user = users[p];
+                        cost += (triangular
+                                ? index.userEnd(user) - index.firstAfter(user, i)
+                                : index.userLength(user)) + 1;
+                    }
+                    costs[i] = cost;
                 }
+            }
+            return costs;
+        }
 
-                double sim = strategy.compute(v1, v2);
+        void computeBlock(int[] bounds, int block, IntFunction<SimilaritySink> blockSinks) {
+            Scratch scratch = scratchPool.poll();
+            if (scratch == null) {
+                int slots = mode != ComputationMode.ALL_PAIRS || statsStrategy != null ? matrix.itemCount() : 0;
+                scratch = new Scratch(slots, heapCapacity, statsStrategy != null, candidates != null, triangular);
+            }
+            SimilaritySink sink = triangular ? null : blockSinks.apply(block);
+            for (int i = bounds[block]; i < bounds[block + 1]; i++) {
+                if (cancelled) {
+                    return;
+                }
+                if (candidates != null) {
+                    candidateRow(i, scratch);
+                } else if (index == null) {
+                    allPairsRow(i, scratch);
+                } else {
+                    cooccurrenceRow(i, scratch);
+                }
+                if (triangular) {
+                    mergeRow(i, scratch);
+                } else {
+                    emit(i, scratch.heap, scratch, sink);
+                }
+            }
+            if (triangular) {
+                flushReverse(scratch);
+                emitFinishedBlocks(bounds, block, blockSinks, scratch);
+            }
+            scratchPool.offer(scratch);
+        }
 
-                if (sim >= threshold) {
-                    // Store bidirectional: A→B and B→A (same score)
-                    results.add(new SimilarityResult(id1, id2, sim));
-                    results.add(new SimilarityResult(id2, id1, sim));
+        private void allPairsRow(int i, Scratch scratch) {
+            for (int j = triangular ? i + 1 : 0; j < matrix.itemCount(); j++) {
+                if (j != i) {
+                    offer(i, j, pairSimilarity(i, j, scratch), scratch);
                 }
             }
         }
 
-        log.debug("Found {} qualifying similarity pairs (bidirectional) from {} items", results.size(), n);
-        return results;
+        /**
+         * Scores row i against its LSH candidates only. Each candidate pair is
+         * scored exactly, so the results are a subset of the exact pass's
+         * qualifying pairs.
+         */
+        private void candidateRow(int i, Scratch scratch) {
+            int count = candidates.candidates(i, scratch.marks, scratch.touched);
+            for (int k = 0; k < count; k++) {
+                int j = scratch.touched[k];
+                offer(i, j, pairSimilarity(i, j, scratch), scratch);
+            }
+        }
+
+        /** Merges rows i and j into their similarity, or NaN (never retained) if they share too few users. */
+        private double pairSimilarity(int i, int j, Scratch scratch) {
+            if (statsStrategy != null) {
+                mergePairStatistics(i, j, scratch);
+                double sim = scratch.common[j] >= minCommonUsers ? statisticsSimilarity(i, j, scratch) : Double.NaN;
+                scratch.reset(j);
+                return sim;
+            }
+            // Check common users BEFORE running the full similarity computation
+            int commonUsers = countCommonUsers(matrix.rowStart(i), matrix.rowEnd(i),
+                    matrix.rowStart(j), matrix.rowEnd(j));
+            return commonUsers < minCommonUsers ? Double.NaN : rowSimilarity(i, j);
+        }
+
+        /**
+         * Sparse co-occurrence pass for row i: walks the users of i and, through
+         * the inverted index, every other item those users also touched. Pairs
+         * that share no user are never visited.
+         */
+        private void cooccurrenceRow(int i, Scratch scratch) {
+            double[] dot = scratch.dot;
+            int[] common = scratch.common;
+            int[] touched = scratch.touched;
+            int touchedCount = 0;
+
+            for (int p = matrix.rowStart(i); p < matrix.rowEnd(i); p++) {
+                int user = users[p];
+                double score = scores[p];
+
+                int end = index.userEnd(user);
+                for (int q = triangular ? index.firstAfter(user, i) : index.userStart(user); q < end; q++) {
+                    int j = index.itemAt(q);
+                    if (j == i) {
+                        continue;
+                    }
+                    if (common[j]++ == 0) {
+                        touched[touchedCount++] = j;
+                    }
+                    double other = index.scoreAt(q);
+                    dot[j] += score * other;
+                    if (scratch.moments) {
+                        scratch.sum1[j] += score;
+                        scratch.sum2[j] += other;
+                        scratch.squares1[j] += score * score;
+                        scratch.squares2[j] += other * other;
+                    }
+                }
+            }
+
+            for (int t = 0; t < touchedCount; t++) {
+                int j = touched[t];
+                if (common[j] >= minCommonUsers) {
+                    double sim;
+                    if (norms != null) {
+                        sim = cosine(dot[j], norms[i], norms[j]);
+                    } else if (statsStrategy != null) {
+                        sim = statisticsSimilarity(i, j, scratch);
+                    } else {
+                        sim = rowSimilarity(i, j);
+                    }
+                    offer(i, j, sim, scratch);
+                }
+                scratch.reset(j);
+            }
+        }
+
+        /** Fills slot j of the accumulators by merging rows i and j, as the co-occurrence pass would. */
+        private void mergePairStatistics(int i, int j, Scratch scratch) {
+            int p = matrix.rowStart(i);
+            int q = matrix.rowStart(j);
+            int endP = matrix.rowEnd(i);
+            int endQ = matrix.rowEnd(j);
+            while (p < endP && q < endQ) {
+                if (users[p] == users[q]) {
+                    double x = scores[p++];
+                    double y = scores[q++];
+                    scratch.common[j]++;
+                    scratch.dot[j] += x * y;
+                    scratch.sum1[j] += x;
+                    scratch.sum2[j] += y;
+                    scratch.squares1[j] += x * x;
+                    scratch.squares2[j] += y * y;
+                } else if (users[p] < users[q]) {
+                    p++;
+                } else {
+                    q++;
+                }
+            }
+        }
+
+        private double statisticsSimilarity(int i, int j, Scratch scratch) {
+            scratch.current = j;
+            // Clamp rounding noise; scores must stay within (0, 1]
+            return Math.min(1.0, statsStrategy.compute(itemStats[i], itemStats[j], scratch));
+        }
+
+        private double rowSimilarity(int i, int j) {
+            if (norms != null) {
+                return CosineSimilarityStrategy.INSTANCE.compute(
+                        users, scores, matrix.rowStart(i), matrix.rowEnd(i), norms[i],
+                        users, scores, matrix.rowStart(j), matrix.rowEnd(j), norms[j]);
+            }
+            return strategy.compute(
+                    userIds, scores, matrix.rowStart(i), matrix.rowEnd(i),
+                    userIds, scores, matrix.rowStart(j), matrix.rowEnd(j));
+        }
+
+        /** Offers a qualifying score to row i's heap and, in a triangular pass, owes it to row j. */
+        private void offer(int i, int j, double sim, Scratch scratch) {
+            if (sim >= threshold && sim > 0.0) {
+                scratch.heap.offer(j, sim);
+                if (triangular) {
+                    if (scratch.reverseCount == REVERSE_BUFFER_SIZE) {
+                        flushReverse(scratch);
+                    }
+                    int k = scratch.reverseCount++;
+                    scratch.reverseRows[k] = j;
+                    scratch.reverseNeighbours[k] = i;
+                    scratch.reverseScores[k] = sim;
+                }
+            }
+        }
+
+        /** Moves row i's neighbours from the block's heap into the row's shared heap. */
+        private void mergeRow(int i, Scratch scratch) {
+            int count = scratch.heap.drainDescending(scratch.neighbours, scratch.neighbourScores);
+            if (count == 0) {
+                return;
+            }
+            TopKHeap heap = rowHeap(i);
+            synchronized (heap) {
+                for (int k = 0; k < count; k++) {
+                    heap.offer(scratch.neighbours[k], scratch.neighbourScores[k]);
+                }
+            }
+        }
+
+        /** Offers the scores the block owes later rows to their shared heaps. */
+        private void flushReverse(Scratch scratch) {
+            for (int k = 0; k < scratch.reverseCount; k++) {
+                TopKHeap heap = rowHeap(scratch.reverseRows[k]);
+                synchronized (heap) {
+                    heap.offer(scratch.reverseNeighbours[k], scratch.reverseScores[k]);
+                }
+            }
+            scratch.reverseCount = 0;
+        }
+
+        private TopKHeap rowHeap(int i) {
+            TopKHeap heap = rowHeaps.get(i);
+            if (heap == null) {
+                TopKHeap created = new TopKHeap(heapCapacity);
+                heap = rowHeaps.compareAndSet(i, null, created) ? created : rowHeaps.get(i);
+            }
+            return heap;
+        }
+
+        /**
+         * Marks {@code block} as finished and emits every block whose
+         * predecessors have all finished: later rows never offer scores to
+         * earlier ones, so those rows are final.
+         */
+        private void emitFinishedBlocks(int[] bounds, int block, IntFunction<SimilaritySink> blockSinks,
+                Scratch scratch) {
+            int from;
+            int to;
+            synchronized (this) {
+                blockDone[block] = true;
+                from = emitFrontier;
+                while (emitFrontier < blockDone.length && blockDone[emitFrontier]) {
+                    emitFrontier++;
+                }
+                to = emitFrontier;
+            }
+            // The monitor above orders every merge into these rows before the reads below
+            for (int b = from; b < to; b++) {
+                SimilaritySink sink = blockSinks.apply(b);
+                for (int i = bounds[b]; i < bounds[b + 1]; i++) {
+                    TopKHeap heap = rowHeaps.getAndSet(i, null);
+                    if (heap != null) {
+                        emit(i, heap, scratch, sink);
+                    }
+                }
+            }
+        }
+
+        /** Drains row i's heap into {@code i → j} results, best first. */
+        private void emit(int i, TopKHeap heap, Scratch scratch, SimilaritySink sink) {
+            int count = heap.drainDescending(scratch.neighbours, scratch.neighbourScores);
+            if (count == 0) {
+                return;
+            }
+            int itemId = matrix.itemId(i);
+            List<SimilarityResult> neighbours = new ArrayList<>(count);
+            for (int k = 0; k < count; k++) {
+                neighbours.add(new SimilarityResult(
+                        itemId, matrix.itemId(scratch.neighbours[k]), scratch.neighbourScores[k]));
+            }
+            sink.accept(neighbours);
+        }
+
+        /** Merges two sorted user slices, stopping once {@code minCommonUsers} is met. */
+        private int countCommonUsers(int from1, int to1, int from2, int to2) {
+            int count = 0;
+            int p = from1;
+            int q = from2;
+            while (p < to1 && q < to2) {
+                if (users[p] == users[q]) {
+                    count++;
+                    if (count >= minCommonUsers) {
+                        return count; // early exit once threshold is met
+                    }
+                    p++;
+                    q++;
+                } else if (users[p] < users[q]) {
+                    p++;
+                } else {
+                    q++;
+                }
+            }
+            return count;
+        }
     }
 
-    private int countCommonUsers(Map<Integer, Double> v1, Map<Integer, Double> v2) {
-        Map<Integer, Double> smaller = v1.size() <= v2.size() ? v1 : v2;
-        Map<Integer, Double> larger = v1.size() <= v2.size() ? v2 : v1;
+    /**
+     * Per-thread working memory: dense accumulators indexed by item position
+     * (reset after each row) and the bounded neighbour heap. Doubles as the
+     * {@link PairStatistics} view of slot {@link #current}, so aggregate
+     * strategies read the accumulators without a copy.
+     */
+    private static final class Scratch implements PairStatistics {
+
+        final double[] dot;
+        final int[] common;
+        final int[] touched;
+        final TopKHeap heap;
+        final int[] neighbours;
+        final double[] neighbourScores;
 
-        int count = 0;
-        for (Integer userId : smaller.keySet()) {
-            if (larger.containsKey(userId)) {
-                count++;
-                if (count >= minCommonUsers) {
-                    return count; // early exit once threshold is met
+        /** LSH candidate flags; empty unless computing approximately */
+        final boolean[] marks;
+
+        /** Scores owed to later rows in a triangular pass: row, neighbour, score */
+        final int[] reverseRows;
+        final int[] reverseNeighbours;
+        final double[] reverseScores;
+        int reverseCount;
+
+        /** Whether the sums and squares below are accumulated */
+        final boolean moments;
+        final double[] sum1;
+        final double[] sum2;
+        final double[] squares1;
+        final double[] squares2;
+        int current;
+
+        Scratch(int itemCount, int heapCapacity, boolean moments, boolean approximate, boolean triangular) {
+            this.dot = new double[itemCount];
+            this.common = new int[itemCount];
+            this.touched = new int[itemCount];
+            this.heap = new TopKHeap(heapCapacity);
+            this.neighbours = new int[heapCapacity];
+            this.neighbourScores = new double[heapCapacity];
+            this.marks = new boolean[approximate ? itemCount : 0];
+            int reverseSlots = triangular ? REVERSE_BUFFER_SIZE : 0;
+            this.reverseRows = new int[reverseSlots];
+            this.reverseNeighbours = new int[reverseSlots];
+            this.reverseScores = new double[reverseSlots];
+            int momentSlots = moments ? itemCount : 0;
+            this.moments = moments;
+            this.sum1 = new double[momentSlots];
+            this.sum2 = new double[momentSlots];
+            this.squares1 = new double[momentSlots];
+            this.squares2 = new double[momentSlots];
+        }
+
+        void reset(int j) {
+            dot[j] = 0.0;
+            common[j] = 0;
+            if (moments) {
+                sum1[j] = 0.0;
+                sum2[j] = 0.0;
+                squares1[j] = 0.0;
+                squares2[j] = 0.0;
+            }
+        }
+
+        @Override
+        public int commonUsers() {
+            return common[current];
+        }
+
+        @Override
+        public double dotProduct() {
+            return dot[current];
+        }
+
+        @Override
+        public double sum1() {
+            return sum1[current];
+        }
+
+        @Override
+        public double sum2() {
+            return sum2[current];
+        }
+
+        @Override
+        public double sumOfSquares1() {
+            return squares1[current];
+        }
+
+        @Override
+        public double sumOfSquares2() {
+            return squares2[current];
+        }
+    }
+
+    /** Recursively halves the block range so idle workers can steal the other half. */
+    private static final class BlockTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Pass pass;
+        private final int[] bounds;
+        private final IntFunction<SimilaritySink> blockSinks;
+        private final int fromBlock;
+        private final int toBlock;
+
+        BlockTask(Pass pass, int[] bounds, IntFunction<SimilaritySink> blockSinks, int fromBlock, int toBlock) {
+            this.pass = pass;
+            this.bounds = bounds;
+            this.blockSinks = blockSinks;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock == 1) {
+                try {
+                    pass.computeBlock(bounds, fromBlock, blockSinks);
+                } catch (RuntimeException | Error e) {
+                    pass.cancel();
+                    throw e;
                 }
+                return;
+            }
+            int mid = (fromBlock + toBlock) >>> 1;
+            BlockTask right = new BlockTask(pass, bounds, blockSinks, mid, toBlock);
+            right.fork();
+            try {
+                new BlockTask(pass, bounds, blockSinks, fromBlock, mid).compute();
+            } catch (RuntimeException | Error e) {
+                // invokeAll would only cancel the other half; wait for it so no block outlives the call
+                right.quietlyJoin();
+                throw e;
             }
+            right.join();
         }
-        return count;
     }
 }
@@ -0,0 +1,23 @@
+package io.github.thacbao.itemcf.core;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+
+import java.util.List;
+
+/**
+ * Receives similarity results from {@link SimilarityCalculator} as soon as
+ * each item's neighbour list is final, instead of after the whole calculation.
+ * <p>
+ * Implementations must be thread-safe when the calculator runs with
+ * {@code parallelism > 1}; calls for different items may then arrive
+ * concurrently and in any order.
+ */
+@FunctionalInterface
+public interface SimilaritySink {
+
+    /**
+     * @param neighbours the retained neighbours of one item, all sharing the
+     *                   same {@code itemId1}, best first; never empty
+     */
+    void accept(List<SimilarityResult> neighbours);
+}
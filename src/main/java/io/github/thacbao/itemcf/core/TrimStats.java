@@ -0,0 +1,27 @@
+package io.github.thacbao.itemcf.core;
+
+/**
+ * What {@link InteractionMatrix#downsample(int, int)} removed.
+ *
+ * @param usersCapped         users that had more interactions than the per-user cap
+ * @param itemsCapped         items that had more interactions than the per-item cap
+ *                            after the per-user cap was applied
+ * @param entriesBefore       stored (item, user) entries before sampling
+ * @param entriesAfter        stored (item, user) entries after sampling
+ * @param cooccurrencesBefore sum over users of the squared interaction count
+ *                            before sampling, i.e. the work of the co-occurrence pass
+ * @param cooccurrencesAfter  the same sum after sampling
+ */
+public record TrimStats(
+        int usersCapped,
+        int itemsCapped,
+        int entriesBefore,
+        int entriesAfter,
+        long cooccurrencesBefore,
+        long cooccurrencesAfter) {
+
+    /** Whether any entry was removed. */
+    public boolean trimmed() {
+        return entriesAfter < entriesBefore;
+    }
+}
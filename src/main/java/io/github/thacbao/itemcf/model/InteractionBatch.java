@@ -0,0 +1,32 @@
+package io.github.thacbao.itemcf.model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of interactions returned by a
+ * {@link io.github.thacbao.itemcf.port.CursorInteractionLoader}.
+ *
+ * @param interactions the interactions of this page; may be empty
+ * @param cursor       opaque position just after the last interaction of this
+ *                     page, passed back to the loader to fetch the next page;
+ *                     may be null only if no interaction has been read yet
+ * @param last         {@code true} if the loader knows no further page exists,
+ *                     which saves the final empty round-trip
+ */
+public record InteractionBatch(List<Interaction> interactions, String cursor, boolean last) {
+
+    public InteractionBatch {
+        Objects.requireNonNull(interactions, "interactions must not be null");
+    }
+
+    /** A page that may be followed by more data. */
+    public static InteractionBatch of(List<Interaction> interactions, String cursor) {
+        return new InteractionBatch(interactions, cursor, false);
+    }
+
+    /** The final page of the data currently available. */
+    public static InteractionBatch last(List<Interaction> interactions, String cursor) {
+        return new InteractionBatch(interactions, cursor, true);
+    }
+}
@@ -2,6 +2,8 @@ package io.github.thacbao.itemcf.port;
 
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Optional port for plugging in a caching layer
@@ -25,10 +27,51 @@ public interface CachePort {
      */
     void put(String key, Object value, Duration ttl);
 
+    /**
+     * Asynchronous variant of {@link #get(String)}. The default
+     * implementation runs the blocking lookup on {@code executor}; caches
+     * with a non-blocking client should override it, and in-process caches
+     * may return a completed future.
+     *
+     * @param key      cache key
+     * @param executor where a blocking implementation runs the lookup
+     * @return a future of the cached value, or of {@link Optional#empty()}
+     *         on cache miss
+     */
+    default CompletableFuture<Optional<Object>> getAsync(String key, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> get(key), executor);
+    }
+
+    /**
+     * Asynchronous variant of {@link #put(String, Object, Duration)}. The
+     * default implementation runs the blocking write on {@code executor}.
+     *
+     * @param key      cache key
+     * @param value    value to cache
+     * @param ttl      time-to-live; must not be null or negative
+     * @param executor where a blocking implementation runs the write
+     * @return a future completed once the value is stored
+     */
+    default CompletableFuture<Void> putAsync(String key, Object value, Duration ttl, Executor executor) {
+        return CompletableFuture.runAsync(() -> put(key, value, ttl), executor);
+    }
+
     /**
      * Evicts all cache entries whose keys match the given glob-style pattern
      * 
      * @param pattern glob pattern
      */
     void evictByPattern(String pattern);
+
+    /**
+     * Evicts a single cache entry. The default delegates to
+     * {@link #evictByPattern(String)}, since a key without wildcards only
+     * matches itself; implementations with a cheaper direct delete should
+     * override it.
+     *
+     * @param key cache key
+     */
+    default void evict(String key) {
+        evictByPattern(key);
+    }
 }
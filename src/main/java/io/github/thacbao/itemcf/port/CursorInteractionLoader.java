@@ -0,0 +1,38 @@
+package io.github.thacbao.itemcf.port;
+
+import io.github.thacbao.itemcf.model.InteractionBatch;
+import io.github.thacbao.itemcf.port.impl.OffsetCursorInteractionLoader;
+
+/**
+ * Port for loading user–item interactions by keyset (cursor) pagination.
+ * <p>
+ * Unlike {@link InteractionLoader}, each call resumes from an opaque cursor
+ * returned by the previous call, so a relational source can answer with
+ * {@code WHERE id > :cursor ORDER BY id LIMIT :limit} and every page costs the
+ * same regardless of how deep into the table it is.
+ * <p>
+ * The cursor of the last page is kept as the matrix watermark: a later load
+ * that starts from it reads only interactions added since.
+ */
+public interface CursorInteractionLoader {
+
+    /**
+     * Loads the page of interactions that follows {@code cursor}.
+     *
+     * @param cursor position returned by the previous call, or {@code null} to
+     *               start from the beginning
+     * @param limit  maximum number of interactions to return
+     * @return the next page; an empty page, or one marked
+     *         {@link InteractionBatch#last() last}, signals end of data
+     */
+    InteractionBatch loadBatch(String cursor, int limit);
+
+    /**
+     * Adapts an offset-paginated loader. The cursor is the decimal row offset,
+     * and a page shorter than {@code limit} ends the data, as with
+     * {@link InteractionLoader}.
+     */
+    static CursorInteractionLoader fromOffsetLoader(InteractionLoader loader) {
+        return new OffsetCursorInteractionLoader(loader);
+    }
+}
@@ -2,7 +2,13 @@ package io.github.thacbao.itemcf.port;
 
 import io.github.thacbao.itemcf.model.SimilarityResult;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Port for persisting and retrieving pre-computed item-similarity scores
@@ -25,9 +31,170 @@ public interface SimilarityStore {
      */
     List<SimilarityResult> findSimilar(int itemId, int topK);
 
+    /**
+     * Retrieves the top-{@code topK} most similar items for each of several
+     * items, as used by batch recommendations.
+     * <p>
+     * The default implementation calls {@link #findSimilar(int, int)} once per
+     * item. Stores backed by a remote system should override it to answer in
+     * one round trip (a multi-get, an {@code IN} query, a pipeline, ...).
+     *
+     * @param itemIds the reference items, without duplicates
+     * @param topK    maximum number of similar items to return per item
+     * @return neighbour lists ordered by score descending, keyed by item ID;
+     *         items without neighbours may be absent
+     */
+    default Map<Integer, List<SimilarityResult>> findSimilar(Collection<Integer> itemIds, int topK) {
+        Map<Integer, List<SimilarityResult>> results = new HashMap<>(itemIds.size() * 4 / 3 + 1);
+        for (int itemId : itemIds) {
+            List<SimilarityResult> neighbours = findSimilar(itemId, topK);
+            if (!neighbours.isEmpty()) {
+                results.put(itemId, neighbours);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Asynchronous variant of {@link #findSimilar(int, int)}.
+     * <p>
+     * The default implementation runs the blocking lookup on
+     * {@code executor}. Stores with a non-blocking client should override it
+     * and complete the future from the client's callback; in-memory stores
+     * may return a completed future.
+     *
+     * @param itemId   the reference item
+     * @param topK     maximum number of similar items to return
+     * @param executor where a blocking implementation runs the lookup
+     * @return a future of the results ordered by score descending
+     */
+    default CompletableFuture<List<SimilarityResult>> findSimilarAsync(int itemId, int topK, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> findSimilar(itemId, topK), executor);
+    }
+
+    /**
+     * Asynchronous variant of {@link #findSimilar(Collection, int)}.
+     * <p>
+     * The default implementation issues one
+     * {@link #findSimilarAsync(int, int, Executor)} per item at once and
+     * combines them when all have completed, so the lookups overlap instead
+     * of running one after another. Stores that answer a multi-item request
+     * in one round trip should override it.
+     *
+     * @param itemIds  the reference items, without duplicates
+     * @param topK     maximum number of similar items to return per item
+     * @param executor where a blocking implementation runs the lookups
+     * @return a future of the neighbour lists keyed by item ID; items
+     *         without neighbours may be absent
+     */
+    default CompletableFuture<Map<Integer, List<SimilarityResult>>> findSimilarAsync(
+            Collection<Integer> itemIds, int topK, Executor executor) {
+        int[] ids = new int[itemIds.size()];
+        List<CompletableFuture<List<SimilarityResult>>> lookups = new ArrayList<>(ids.length);
+        int n = 0;
+        for (int itemId : itemIds) {
+            ids[n++] = itemId;
+            lookups.add(findSimilarAsync(itemId, topK, executor));
+        }
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            Map<Integer, List<SimilarityResult>> results = new HashMap<>(ids.length * 4 / 3 + 1);
+            for (int k = 0; k < ids.length; k++) {
+                List<SimilarityResult> neighbours = lookups.get(k).join();
+                if (!neighbours.isEmpty()) {
+                    results.put(ids[k], neighbours);
+                }
+            }
+            return results;
+        });
+    }
+
     /**
      * Removes all previously computed similarity data
-     * Called at the beginning of a full recalculation
      */
     void deleteAll();
+
+    /**
+     * Whether {@link #replaceSimilar} is implemented. The engine checks this
+     * when it is created with incremental updates enabled, so an unsupported
+     * store is rejected before any update is applied.
+     * <p>
+     * The default implementation returns {@code false}; stores overriding
+     * {@code replaceSimilar} must override it to return {@code true}.
+     *
+     * @return {@code true} if per-item updates are supported
+     */
+    default boolean supportsReplace() {
+        return false;
+    }
+
+    /**
+     * Replaces the stored neighbours of one item, as done by incremental
+     * updates. Writes go to the data currently being served.
+     * <p>
+     * The default implementation throws {@link UnsupportedOperationException};
+     * stores used with incremental updates must override it together with
+     * {@link #supportsReplace()}.
+     *
+     * @param itemId     the item whose neighbour list is rewritten
+     * @param neighbours the new neighbours, all with {@code itemId1 == itemId};
+     *                   an empty list removes the item's neighbours
+     */
+    default void replaceSimilar(int itemId, List<SimilarityResult> neighbours) {
+        throw new UnsupportedOperationException(
+                getClass().getSimpleName() + " does not support per-item updates");
+    }
+
+    /**
+     * Opens a new, empty generation of similarity data for a full rebuild.
+     * Results are written into the generation while {@link #findSimilar}
+     * keeps serving the current data; {@link Generation#commit()} then
+     * replaces the current data atomically.
+     * <p>
+     * The default implementation cannot stage writes: it calls
+     * {@link #deleteAll()} and returns a generation that writes straight into
+     * this store, so readers see partial data until the rebuild finishes.
+     * Stores that can keep two versions side by side (a versioned table, a
+     * key prefix per generation, ...) should override it.
+     *
+     * @return a writable generation; exactly one of {@code commit} or
+     *         {@code abort} must be called on it
+     */
+    default Generation beginGeneration() {
+        deleteAll();
+        return new Generation() {
+            @Override
+            public void saveAll(List<SimilarityResult> results) {
+                SimilarityStore.this.saveAll(results);
+            }
+
+            @Override
+            public void commit() {
+                // already visible
+            }
+
+            @Override
+            public void abort() {
+                // nothing staged to discard
+            }
+        };
+    }
+
+    /**
+     * A version of the similarity data being written during a rebuild.
+     */
+    interface Generation {
+
+        /**
+         * Adds a batch of results to this generation.
+         *
+         * @param results non-null, non-empty list of similarity results to save
+         */
+        void saveAll(List<SimilarityResult> results);
+
+        /** Atomically makes this generation the one served by {@code findSimilar}. */
+        void commit();
+
+        /** Discards this generation; the current data stays in place. */
+        void abort();
+    }
 }
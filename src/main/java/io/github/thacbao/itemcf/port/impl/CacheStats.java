@@ -0,0 +1,37 @@
+package io.github.thacbao.itemcf.port.impl;
+
+/**
+ * Point-in-time counters of an {@link InMemoryCachePort}. All counts are
+ * cumulative since the cache was created.
+ *
+ * @param hitCount        lookups that found a live entry
+ * @param missCount       lookups that found no entry or an expired one
+ * @param evictionCount   entries removed to stay within the weight bound
+ * @param rejectionCount  new entries not admitted because they were used less
+ *                        often than the entry they would have replaced
+ * @param expirationCount entries removed because their TTL had passed
+ */
+public record CacheStats(
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long rejectionCount,
+        long expirationCount) {
+
+    /** Total number of lookups. */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /** Fraction of lookups that were hits; 0 if there were none. */
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 0.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hit rate %.4f (%d of %d), %d evicted, %d rejected, %d expired",
+                hitRate(), hitCount, requestCount(), evictionCount, rejectionCount, expirationCount);
+    }
+}
@@ -0,0 +1,276 @@
+package io.github.thacbao.itemcf.port.impl;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable, read-optimised neighbour index. Item IDs are kept in a sorted
+ * array; the neighbours of the item at position {@code r} occupy
+ * {@code [offsets[r], offsets[r + 1])} of the flat neighbour and score arrays,
+ * already ordered by score descending (ties by ascending neighbour ID). A
+ * top-K lookup is a binary search plus a K-element slice, with no sorting.
+ * <p>
+ * Scores are stored as {@code float}, so each neighbour costs 8 bytes instead
+ * of a boxed {@link SimilarityResult} and its list slot. Safe to share between
+ * threads.
+ */
+public final class CompactSimilarityIndex {
+
+    /** An index without any neighbours. */
+    public static final CompactSimilarityIndex EMPTY =
+            new CompactSimilarityIndex(new int[0], new int[] {0}, new int[0], new float[0]);
+
+    // Largest array length every JVM accepts
+    private static final int MAX_ENTRIES = Integer.MAX_VALUE - 8;
+
+    private final int[] itemIds;
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final float[] scores;
+
+    private CompactSimilarityIndex(int[] itemIds, int[] offsets, int[] neighbours, float[] scores) {
+        this.itemIds = itemIds;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.scores = scores;
+    }
+
+    /**
+     * Builds an index from batches of results in any order.
+     *
+     * @param batches results grouped in arbitrary batches; every pair is
+     *                indexed under its {@code itemId1}
+     * @throws IllegalStateException if the batches hold more pairs than an
+     *                               array can index
+     */
+    public static CompactSimilarityIndex of(Collection<? extends List<SimilarityResult>> batches) {
+        // Checked up front, so an oversized input fails before anything is copied
+        long total = 0;
+        for (List<SimilarityResult> batch : batches) {
+            total += batch.size();
+        }
+        checkCapacity(total);
+        Builder builder = builder();
+        for (List<SimilarityResult> batch : batches) {
+            builder.add(batch);
+        }
+        return builder.build();
+    }
+
+    /** Returns a builder that accepts batches from several threads. */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns up to {@code topK} neighbours of {@code itemId}, best first.
+     *
+     * @return a new list; empty if the item has no neighbours
+     */
+    public List<SimilarityResult> findSimilar(int itemId, int topK) {
+        int row = Arrays.binarySearch(itemIds, itemId);
+        if (row < 0 || topK <= 0) {
+            return Collections.emptyList();
+        }
+        int from = offsets[row];
+        int to = from + Math.min(topK, offsets[row + 1] - from);
+        List<SimilarityResult> results = new ArrayList<>(to - from);
+        for (int p = from; p < to; p++) {
+            results.add(new SimilarityResult(itemId, neighbours[p], scores[p]));
+        }
+        return results;
+    }
+
+    /**
+     * Returns up to {@code topK} neighbours of each of {@code itemIds}.
+     *
+     * @return a new map by item ID; items without neighbours are absent
+     */
+    public Map<Integer, List<SimilarityResult>> findSimilar(Collection<Integer> itemIds, int topK) {
+        Map<Integer, List<SimilarityResult>> results = new HashMap<>(itemIds.size() * 4 / 3 + 1);
+        if (topK <= 0 || this.itemIds.length == 0) {
+            return results;
+        }
+        for (int itemId : itemIds) {
+            List<SimilarityResult> neighbours = findSimilar(itemId, topK);
+            if (!neighbours.isEmpty()) {
+                results.put(itemId, neighbours);
+            }
+        }
+        return results;
+    }
+
+    /** Number of neighbours stored for {@code itemId}. */
+    public int neighbourCount(int itemId) {
+        int row = Arrays.binarySearch(itemIds, itemId);
+        return row < 0 ? 0 : offsets[row + 1] - offsets[row];
+    }
+
+    /** Number of items with at least one neighbour. */
+    public int itemCount() {
+        return itemIds.length;
+    }
+
+    /** Total number of stored neighbour entries. */
+    public int size() {
+        return neighbours.length;
+    }
+
+    /** Approximate heap footprint of the arrays, in bytes. */
+    public long memoryBytes() {
+        return 4L * itemIds.length + 4L * offsets.length + 4L * neighbours.length + 4L * scores.length;
+    }
+
+    private static void checkCapacity(long total) {
+        if (total > MAX_ENTRIES) {
+            throw new IllegalStateException("Cannot index " + total
+                    + " similarity pairs; the maximum is " + MAX_ENTRIES);
+        }
+    }
+
+    /** Rounds a score to float, keeping it within (0, 1]. */
+    static float toFloat(double score) {
+        return Math.max(Float.MIN_VALUE, (float) score);
+    }
+
+    /**
+     * Positive floats order like their raw bits, so inverting the bits sorts
+     * by score descending; the neighbour ID, sign-flipped to sort as unsigned,
+     * breaks ties in ascending order.
+     */
+    private static long sortKey(float score, int neighbour) {
+        long inverted = Integer.MAX_VALUE - Float.floatToRawIntBits(score);
+        return inverted << 32 | ((neighbour ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    private static int neighbourOf(long key) {
+        return (int) key ^ Integer.MIN_VALUE;
+    }
+
+    private static float scoreOf(long key) {
+        return Float.intBitsToFloat(Integer.MAX_VALUE - (int) (key >>> 32));
+    }
+
+    private static int[] distinctSorted(int[] values) {
+        int[] copy = values.clone();
+        Arrays.sort(copy);
+        int distinct = 0;
+        for (int k = 0; k < copy.length; k++) {
+            if (k == 0 || copy[k] != copy[k - 1]) {
+                copy[distinct++] = copy[k];
+            }
+        }
+        return Arrays.copyOf(copy, distinct);
+    }
+
+    /**
+     * Collects batches for an index. Each batch is copied into primitive
+     * arrays as it is added, so a large rebuild never holds its pairs as
+     * boxed results; they are sorted once, by {@link #build()}. {@link #add}
+     * is thread-safe; {@code build} and {@code clear} must not run
+     * concurrently with it.
+     */
+    public static final class Builder {
+
+        private final Queue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+        private final AtomicLong total = new AtomicLong();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a batch of results in any order.
+         *
+         * @throws IllegalStateException if the index would hold more pairs
+         *                               than an array can index
+         */
+        public Builder add(List<SimilarityResult> batch) {
+            int size = batch.size();
+            if (size == 0) {
+                return this;
+            }
+            long reserved = total.addAndGet(size);
+            if (reserved > MAX_ENTRIES) {
+                total.addAndGet(-size);
+                checkCapacity(reserved);
+            }
+            int[] sources = new int[size];
+            int[] targets = new int[size];
+            float[] scores = new float[size];
+            int k = 0;
+            for (SimilarityResult result : batch) {
+                sources[k] = result.itemId1();
+                targets[k] = result.itemId2();
+                scores[k++] = toFloat(result.score());
+            }
+            chunks.add(new Chunk(sources, targets, scores));
+            return this;
+        }
+
+        /** Sorts everything added so far into an index and empties the builder. */
+        public CompactSimilarityIndex build() {
+            int count = (int) total.get();
+            if (count == 0) {
+                return EMPTY;
+            }
+
+            int[] sources = new int[count];
+            int k = 0;
+            for (Chunk chunk : chunks) {
+                System.arraycopy(chunk.sources, 0, sources, k, chunk.sources.length);
+                k += chunk.sources.length;
+            }
+            int[] itemIds = distinctSorted(sources);
+
+            int[] offsets = new int[itemIds.length + 1];
+            for (int source : sources) {
+                offsets[Arrays.binarySearch(itemIds, source) + 1]++;
+            }
+            for (int r = 0; r < itemIds.length; r++) {
+                offsets[r + 1] += offsets[r];
+            }
+
+            // Bucket every pair into its row as a sortable (score desc, neighbour asc) key
+            long[] keys = new long[count];
+            int[] cursor = Arrays.copyOf(offsets, itemIds.length);
+            for (Chunk chunk = chunks.poll(); chunk != null; chunk = chunks.poll()) {
+                for (int p = 0; p < chunk.sources.length; p++) {
+                    int row = Arrays.binarySearch(itemIds, chunk.sources[p]);
+                    keys[cursor[row]++] = sortKey(chunk.scores[p], chunk.targets[p]);
+                }
+            }
+            total.set(0);
+
+            int[] neighbours = new int[count];
+            float[] scores = new float[count];
+            for (int r = 0; r < itemIds.length; r++) {
+                Arrays.sort(keys, offsets[r], offsets[r + 1]);
+                for (int p = offsets[r]; p < offsets[r + 1]; p++) {
+                    neighbours[p] = neighbourOf(keys[p]);
+                    scores[p] = scoreOf(keys[p]);
+                }
+            }
+            return new CompactSimilarityIndex(itemIds, offsets, neighbours, scores);
+        }
+
+        /** Discards everything added so far. */
+        public void clear() {
+            chunks.clear();
+            total.set(0);
+        }
+    }
+
+    /** One added batch, frozen into parallel arrays. */
+    private record Chunk(int[] sources, int[] targets, float[] scores) {
+    }
+}
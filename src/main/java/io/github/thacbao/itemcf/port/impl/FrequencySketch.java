@@ -0,0 +1,76 @@
+package io.github.thacbao.itemcf.port.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Count-min sketch of recent access frequencies, as used by TinyLFU
+ * admission: four rows of 4-bit saturating counters, an estimate being the
+ * minimum over the rows. After {@code 10 * width} increments every counter is
+ * halved, so old popularity fades and new keys can compete.
+ * <p>
+ * Counters are updated without locking; a racing increment may be lost, which
+ * only makes an estimate slightly low.
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97CB3127, 0x0BA7C2E1, 0x5B1D6F8B, 0xC2B2AE35};
+
+    private final byte[][] rows;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * @param expectedEntries number of entries the cache holds when full;
+     *                        sizes the rows
+     */
+    FrequencySketch(long expectedEntries) {
+        // Two counters per entry and row keep collisions rare; at most 4 MB per row
+        int width = Integer.highestOneBit((int) Math.max(16, Math.min(1 << 21, expectedEntries)) * 2 - 1) * 2;
+        this.rows = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /** Records one access of the key with the given hash. */
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            byte[] counters = rows[row];
+            int index = index(hash, row);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+        if (added && additions.incrementAndGet() == sampleSize) {
+            age();
+        }
+    }
+
+    /** Estimated number of recent accesses of the key with the given hash, at most 15. */
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, rows[row][index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    /** Halves every counter; only the thread that reached the sample size calls it. */
+    private void age() {
+        for (byte[] counters : rows) {
+            for (int k = 0; k < counters.length; k++) {
+                counters[k] = (byte) (counters[k] >>> 1);
+            }
+        }
+        additions.set(0);
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,490 @@
+package io.github.thacbao.itemcf.port.impl;
+
+import io.github.thacbao.itemcf.port.CachePort;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded, in-process {@link CachePort} with frequency-aware admission.
+ * <p>
+ * Entries are weighed (1 each by default) and the total weight is kept
+ * within {@code maximumWeight}. New entries enter a small window holding
+ * about 1% of the weight; when the window overflows, its oldest entry must
+ * beat the eviction victim of the main area on estimated access frequency to
+ * stay (W-TinyLFU). Frequencies come from a count-min sketch over recent
+ * lookups, so one-off keys cannot flush popular ones. The main area picks its
+ * victim with CLOCK: a read marks an entry, and a marked entry is skipped
+ * once. Putting a key that is already cached replaces its value, weight and
+ * TTL in place, so an update never sends a resident entry through admission
+ * again.
+ * <p>
+ * TTLs are honoured per entry; expired entries are dropped when read or when
+ * the eviction scan reaches them. Keys are also indexed in sorted order, so
+ * {@link #evictByPattern} only visits keys sharing the pattern's literal
+ * prefix: {@code "itemcf:similar:*"} costs O(log n + matches), and other
+ * Redis-style globs ({@code ?}, {@code [abc]}, {@code \} escapes) are matched
+ * against that range.
+ * <p>
+ * Reads are lock-free; writes and evictions take a single lock. Thread-safe.
+ */
+public class InMemoryCachePort implements CachePort {
+
+    /** Default maximum total weight; with the default weigher, the maximum number of entries. */
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 10_000;
+
+    private static final int WINDOW_PERCENT = 1;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final ToIntFunction<Object> weigher;
+    private final LongSupplier ticker;
+    private final FrequencySketch sketch;
+
+    private final ConcurrentHashMap<String, Node> entries = new ConcurrentHashMap<>();
+
+    // Guarded by writeLock
+    private final Object writeLock = new Object();
+    private final NavigableSet<String> sortedKeys = new TreeSet<>();
+    private final Queue window = new Queue();
+    private final Queue main = new Queue();
+    private long windowWeight;
+    private long totalWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private InMemoryCachePort(Builder builder) {
+        this.maximumWeight = builder.maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight * WINDOW_PERCENT / 100);
+        this.weigher = builder.weigher;
+        this.ticker = builder.ticker;
+        this.sketch = new FrequencySketch(maximumWeight);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Weighs collections by their size and anything else as 1, so that
+     * {@code maximumWeight} bounds the number of cached neighbours and
+     * recommendations rather than the number of lists.
+     */
+    public static int weighBySize(Object value) {
+        return value instanceof Collection<?> collection ? Math.max(1, collection.size()) : 1;
+    }
+
+    @Override
+    public Optional<Object> get(String key) {
+        int hash = spread(key.hashCode());
+        sketch.increment(hash);
+        Node node = entries.get(key);
+        if (node == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (node.expiresAt - ticker.getAsLong() <= 0) {
+            synchronized (writeLock) {
+                if (entries.get(key) == node) {
+                    remove(node);
+                    expirations.increment();
+                }
+            }
+            misses.increment();
+            return Optional.empty();
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        hits.increment();
+        return Optional.of(node.value);
+    }
+
+    @Override
+    public void put(String key, Object value, Duration ttl) {
+        Objects.requireNonNull(key, "key must not be null");
+        Objects.requireNonNull(value, "value must not be null");
+        Objects.requireNonNull(ttl, "ttl must not be null");
+        if (ttl.isNegative()) throw new IllegalArgumentException("ttl must not be negative");
+        int weight = weigher.applyAsInt(value);
+        if (weight < 0) throw new IllegalArgumentException("weigher returned a negative weight for " + key);
+
+        int hash = spread(key.hashCode());
+        sketch.increment(hash);
+        synchronized (writeLock) {
+            Node existing = entries.get(key);
+            if (ttl.isZero() || weight > maximumWeight) {
+                if (existing != null) {
+                    remove(existing);
+                }
+                return;
+            }
+            if (existing != null) {
+                // Update in place: a resident entry keeps its position and does not face admission again
+                int growth = weight - existing.weight;
+                existing.value = value;
+                existing.expiresAt = ticker.getAsLong() + saturatedNanos(ttl);
+                existing.weight = weight;
+                if (existing.inWindow) {
+                    windowWeight += growth;
+                }
+                totalWeight += growth;
+                if (growth > 0) {
+                    evictIfNeeded();
+                }
+                return;
+            }
+            Node node = new Node(key, hash, value, weight, ticker.getAsLong() + saturatedNanos(ttl));
+            entries.put(key, node);
+            sortedKeys.add(key);
+            window.addLast(node);
+            node.inWindow = true;
+            windowWeight += weight;
+            totalWeight += weight;
+            evictIfNeeded();
+        }
+    }
+
+    /** Answers on the calling thread; {@code executor} is not used. */
+    @Override
+    public CompletableFuture<Optional<Object>> getAsync(String key, Executor executor) {
+        return CompletableFuture.completedFuture(get(key));
+    }
+
+    /** Stores on the calling thread; {@code executor} is not used. */
+    @Override
+    public CompletableFuture<Void> putAsync(String key, Object value, Duration ttl, Executor executor) {
+        put(key, value, ttl);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void evict(String key) {
+        synchronized (writeLock) {
+            Node node = entries.get(key);
+            if (node != null) {
+                remove(node);
+            }
+        }
+    }
+
+    @Override
+    public void evictByPattern(String pattern) {
+        Objects.requireNonNull(pattern, "pattern must not be null");
+        String prefix = literalPrefix(pattern);
+        if (prefix.length() == pattern.length()) {
+            evict(pattern);
+            return;
+        }
+        // "prefix*" matches the whole range; anything else is checked key by key
+        Pattern glob = pattern.length() == prefix.length() + 1 && pattern.endsWith("*") ? null : compileGlob(pattern);
+        synchronized (writeLock) {
+            Iterator<String> keys = sortedKeys.tailSet(prefix, true).iterator();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!key.startsWith(prefix)) {
+                    break;
+                }
+                if (glob == null || glob.matcher(key).matches()) {
+                    keys.remove();
+                    unlink(entries.remove(key));
+                }
+            }
+        }
+    }
+
+    /** Number of cached entries, including expired ones not yet removed. */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Total weight of the cached entries. */
+    public long weightedSize() {
+        synchronized (writeLock) {
+            return totalWeight;
+        }
+    }
+
+    /** Current hit, miss and eviction counters. */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), expirations.sum());
+    }
+
+    /** Moves window overflow into the main area, letting TinyLFU decide who stays. */
+    private void evictIfNeeded() {
+        while (windowWeight > windowMaximum) {
+            Node candidate = window.first();
+            boolean admitted = true;
+            while (totalWeight > maximumWeight) {
+                Node victim = mainVictim();
+                if (victim == null) {
+                    // Either expired entries made room, or the main area is empty
+                    admitted = totalWeight <= maximumWeight;
+                    break;
+                }
+                if (sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) {
+                    admitted = false;
+                    break;
+                }
+                remove(victim);
+                evictions.increment();
+            }
+            if (admitted) {
+                window.remove(candidate);
+                candidate.inWindow = false;
+                windowWeight -= candidate.weight;
+                main.addLast(candidate);
+            } else {
+                remove(candidate);
+                rejections.increment();
+            }
+        }
+        // The window is within its share, but admissions may have filled the main area
+        while (totalWeight > maximumWeight) {
+            Node victim = mainVictim();
+            if (victim == null) {
+                victim = window.first();
+                if (victim == null) {
+                    break;
+                }
+            }
+            remove(victim);
+            evictions.increment();
+        }
+    }
+
+    /**
+     * CLOCK scan of the main area: returns the first unmarked entry, clearing
+     * and requeueing marked ones, or an expired entry found on the way (which
+     * is removed and counted as expired, after which the scan continues).
+     */
+    private Node mainVictim() {
+        long now = ticker.getAsLong();
+        Node node;
+        while ((node = main.first()) != null) {
+            if (node.expiresAt - now <= 0) {
+                remove(node);
+                expirations.increment();
+                if (totalWeight <= maximumWeight) {
+                    return null;
+                }
+            } else if (node.referenced) {
+                node.referenced = false;
+                main.moveToLast(node);
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private void remove(Node node) {
+        entries.remove(node.key);
+        sortedKeys.remove(node.key);
+        unlink(node);
+    }
+
+    private void unlink(Node node) {
+        if (node == null) {
+            return;
+        }
+        if (node.inWindow) {
+            window.remove(node);
+            windowWeight -= node.weight;
+        } else {
+            main.remove(node);
+        }
+        totalWeight -= node.weight;
+    }
+
+    private static long saturatedNanos(Duration ttl) {
+        try {
+            return ttl.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE / 2;
+        }
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /** Characters up to the first glob metacharacter. */
+    static String literalPrefix(String pattern) {
+        for (int k = 0; k < pattern.length(); k++) {
+            char c = pattern.charAt(k);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                return pattern.substring(0, k);
+            }
+        }
+        return pattern;
+    }
+
+    /** Translates a Redis-style glob into an equivalent regular expression. */
+    static Pattern compileGlob(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        for (int k = 0; k < glob.length(); k++) {
+            char c = glob.charAt(k);
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '\\' && k + 1 < glob.length()) {
+                appendLiteral(regex, glob.charAt(++k));
+            } else if (c == '[' && glob.indexOf(']', k + 1) > k + 1) {
+                int end = glob.indexOf(']', k + 1);
+                regex.append('[');
+                int from = k + 1;
+                if (glob.charAt(from) == '^') {
+                    regex.append('^');
+                    from++;
+                }
+                for (int p = from; p < end; p++) {
+                    char member = glob.charAt(p);
+                    if (member == '-' && p > from && p + 1 < end) {
+                        regex.append('-');
+                    } else {
+                        appendLiteral(regex, member);
+                    }
+                }
+                regex.append(']');
+                k = end;
+            } else {
+                appendLiteral(regex, c);
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static void appendLiteral(StringBuilder regex, char c) {
+        if (!Character.isLetterOrDigit(c)) {
+            regex.append('\\');
+        }
+        regex.append(c);
+    }
+
+    /** A cached value and its place in one of the eviction queues. */
+    private static final class Node {
+        final String key;
+        final int hash;
+        // Replaced under writeLock when the key is put again; read without it
+        volatile Object value;
+        volatile long expiresAt;
+        volatile boolean referenced;
+
+        // Guarded by writeLock
+        int weight;
+        boolean inWindow;
+        Node prev;
+        Node next;
+
+        Node(String key, int hash, Object value, int weight, long expiresAt) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** Intrusive doubly-linked list of nodes, so any node is removed in O(1). */
+    private static final class Queue {
+        private Node head;
+        private Node tail;
+
+        Node first() {
+            return head;
+        }
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void moveToLast(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    /**
+     * Builder for {@link InMemoryCachePort}.
+     */
+    public static class Builder {
+
+        private long maximumWeight = DEFAULT_MAXIMUM_WEIGHT;
+        private ToIntFunction<Object> weigher = value -> 1;
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        /**
+         * Upper bound on the total weight of cached entries. Default:
+         * {@value DEFAULT_MAXIMUM_WEIGHT}.
+         */
+        public Builder maximumWeight(long maximumWeight) {
+            if (maximumWeight < 1) throw new IllegalArgumentException("maximumWeight must be >= 1");
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        /**
+         * Computes the weight of a value when it is put; must not be negative.
+         * Default: every entry weighs 1. See {@link #weighBySize(Object)}.
+         */
+        public Builder weigher(ToIntFunction<Object> weigher) {
+            this.weigher = Objects.requireNonNull(weigher, "weigher must not be null");
+            return this;
+        }
+
+        /** Time source in nanoseconds, for tests. */
+        Builder ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "ticker must not be null");
+            return this;
+        }
+
+        public InMemoryCachePort build() {
+            return new InMemoryCachePort(this);
+        }
+    }
+}
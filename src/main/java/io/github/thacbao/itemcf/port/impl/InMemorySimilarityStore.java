@@ -4,40 +4,173 @@ import io.github.thacbao.itemcf.model.SimilarityResult;
 import io.github.thacbao.itemcf.port.SimilarityStore;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
 
 /**
  * Thread-safe, in-memory implementation of {@link SimilarityStore}.
+ * <p>
+ * Committed generations are frozen into a {@link CompactSimilarityIndex}, so
+ * lookups are an O(K) slice of pre-sorted arrays. Writes made outside a
+ * generation ({@link #saveAll}, {@link #replaceSimilar}) land in a small
+ * per-item overlay that shadows the frozen index until the next commit.
+ * Scores are served with {@code float} precision.
  */
 public class InMemorySimilarityStore implements SimilarityStore {
 
-    // itemId → list of SimilarityResult sorted by score desc
-    private final Map<Integer, List<SimilarityResult>> store = new ConcurrentHashMap<>();
+    private static final Comparator<SimilarityResult> BEST_FIRST =
+            Comparator.comparingDouble(SimilarityResult::score).reversed()
+                    .thenComparingInt(SimilarityResult::itemId2);
+
+    private final Object writeLock = new Object();
+
+    // Frozen neighbours of the last committed generation; replaced wholesale on commit
+    private volatile CompactSimilarityIndex index = CompactSimilarityIndex.EMPTY;
+    // itemId → neighbours written since, best first; an empty list hides the item
+    private volatile Map<Integer, List<SimilarityResult>> overlay = new ConcurrentHashMap<>();
 
     @Override
     public void saveAll(List<SimilarityResult> results) {
-        for (SimilarityResult r : results) {
-            store.computeIfAbsent(r.itemId1(), k -> new ArrayList<>()).add(r);
+        synchronized (writeLock) {
+            Map<Integer, List<SimilarityResult>> grouped = new HashMap<>();
+            for (SimilarityResult r : results) {
+                grouped.computeIfAbsent(r.itemId1(), k -> new ArrayList<>()).add(r);
+            }
+            grouped.forEach((itemId, added) -> {
+                List<SimilarityResult> merged = new ArrayList<>(current(itemId));
+                merged.addAll(added);
+                put(itemId, merged);
+            });
         }
     }
 
     @Override
     public List<SimilarityResult> findSimilar(int itemId, int topK) {
-        return store.getOrDefault(itemId, Collections.emptyList())
-                .stream()
-                .sorted(Comparator.comparingDouble(SimilarityResult::score).reversed())
-                .limit(topK)
-                .collect(Collectors.toList());
+        List<SimilarityResult> overridden = overlay.get(itemId);
+        if (overridden == null) {
+            return index.findSimilar(itemId, topK);
+        }
+        return new ArrayList<>(overridden.subList(0, Math.min(topK, overridden.size())));
+    }
+
+    /**
+     * Looks up all items against one view of the store, so a concurrent
+     * commit never mixes neighbours of two generations within a request.
+     */
+    @Override
+    public Map<Integer, List<SimilarityResult>> findSimilar(Collection<Integer> itemIds, int topK) {
+        CompactSimilarityIndex frozen = index;
+        Map<Integer, List<SimilarityResult>> overridden = overlay;
+        if (overridden.isEmpty()) {
+            return frozen.findSimilar(itemIds, topK);
+        }
+        Map<Integer, List<SimilarityResult>> results = new HashMap<>(itemIds.size() * 4 / 3 + 1);
+        for (int itemId : itemIds) {
+            List<SimilarityResult> neighbours = overridden.get(itemId);
+            neighbours = neighbours == null
+                    ? frozen.findSimilar(itemId, topK)
+                    : new ArrayList<>(neighbours.subList(0, Math.min(Math.max(topK, 0), neighbours.size())));
+            if (!neighbours.isEmpty()) {
+                results.put(itemId, neighbours);
+            }
+        }
+        return results;
+    }
+
+    /** Answers from memory on the calling thread; {@code executor} is not used. */
+    @Override
+    public CompletableFuture<List<SimilarityResult>> findSimilarAsync(int itemId, int topK, Executor executor) {
+        return CompletableFuture.completedFuture(findSimilar(itemId, topK));
+    }
+
+    /** Answers from memory on the calling thread, against one view of the store. */
+    @Override
+    public CompletableFuture<Map<Integer, List<SimilarityResult>>> findSimilarAsync(
+            Collection<Integer> itemIds, int topK, Executor executor) {
+        return CompletableFuture.completedFuture(findSimilar(itemIds, topK));
     }
 
     @Override
     public void deleteAll() {
-        store.clear();
+        synchronized (writeLock) {
+            overlay = new ConcurrentHashMap<>();
+            index = CompactSimilarityIndex.EMPTY;
+        }
+    }
+
+    @Override
+    public boolean supportsReplace() {
+        return true;
+    }
+
+    @Override
+    public void replaceSimilar(int itemId, List<SimilarityResult> neighbours) {
+        synchronized (writeLock) {
+            put(itemId, neighbours);
+        }
+    }
+
+    @Override
+    public Generation beginGeneration() {
+        // Batches may be saved from several threads; each is frozen into primitive
+        // arrays on arrival and all are sorted once, on commit
+        CompactSimilarityIndex.Builder staging = CompactSimilarityIndex.builder();
+        return new Generation() {
+            private volatile boolean finished;
+
+            @Override
+            public void saveAll(List<SimilarityResult> results) {
+                if (finished) {
+                    throw new IllegalStateException("generation already committed or aborted");
+                }
+                staging.add(results);
+            }
+
+            @Override
+            public void commit() {
+                if (finished) {
+                    throw new IllegalStateException("generation already committed or aborted");
+                }
+                finished = true;
+                CompactSimilarityIndex frozen = staging.build();
+                synchronized (writeLock) {
+                    index = frozen;
+                    overlay = new ConcurrentHashMap<>();
+                }
+            }
+
+            @Override
+            public void abort() {
+                finished = true;
+                staging.clear();
+            }
+        };
     }
 
     /** Returns total number of stored similarity pairs (for testing/debugging). */
     public int size() {
-        return store.values().stream().mapToInt(List::size).sum();
+        synchronized (writeLock) {
+            int size = index.size();
+            for (Map.Entry<Integer, List<SimilarityResult>> entry : overlay.entrySet()) {
+                size += entry.getValue().size() - index.neighbourCount(entry.getKey());
+            }
+            return size;
+        }
+    }
+
+    private List<SimilarityResult> current(int itemId) {
+        List<SimilarityResult> overridden = overlay.get(itemId);
+        return overridden != null ? overridden : index.findSimilar(itemId, Integer.MAX_VALUE);
+    }
+
+    private void put(int itemId, List<SimilarityResult> neighbours) {
+        List<SimilarityResult> sorted = new ArrayList<>(neighbours.size());
+        for (SimilarityResult r : neighbours) {
+            // Same precision as the frozen index, so results do not depend on where they live
+            sorted.add(new SimilarityResult(r.itemId1(), r.itemId2(), CompactSimilarityIndex.toFloat(r.score())));
+        }
+        sorted.sort(BEST_FIRST);
+        overlay.put(itemId, Collections.unmodifiableList(sorted));
     }
 }
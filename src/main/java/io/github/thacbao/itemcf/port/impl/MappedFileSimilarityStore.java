@@ -0,0 +1,557 @@
+package io.github.thacbao.itemcf.port.impl;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import io.github.thacbao.itemcf.port.SimilarityStore;
+import io.github.thacbao.itemcf.util.IntDoubleHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link SimilarityStore} backed by a memory-mapped binary file, so a freshly
+ * started JVM serves {@link #findSimilar} as soon as the file is mapped, with
+ * the OS page cache holding the hot parts.
+ * <p>
+ * File layout (version 1, big-endian):
+ *
+ * <pre>
+ * header      magic "ICFS", version, itemCount, entryCount   4 x int
+ * itemIds     itemCount x int, ascending
+ * offsets     (itemCount + 1) x int; item r spans [offsets[r], offsets[r + 1])
+ * neighbours  entryCount x int, best first within each item
+ * scores      entryCount x unsigned short, score * 65535 rounded, at least 1
+ * </pre>
+ *
+ * Each section is mapped in chunks of at most 1 GB, since a single
+ * {@link FileChannel#map} call cannot exceed 2 GB; offsets are ints, so a
+ * file holds at most {@link Integer#MAX_VALUE} neighbours. Scores are
+ * quantised to 16 bits (error below 1e-5), so a neighbour costs 6 bytes on
+ * disk.
+ * <p>
+ * A generation streams every batch to a spill file next to the store file
+ * and only counts each item's neighbours in memory. On commit the spilled
+ * neighbours are placed into a temporary file, which then atomically
+ * replaces the current one; readers keep the old mapping until the new one
+ * is installed. {@link #saveAll} outside a generation rewrites the whole file
+ * on every call, so loading data as {@code deleteAll} followed by many
+ * {@code saveAll} batches costs I/O proportional to batches times total size;
+ * use {@link #beginGeneration()} for bulk loads. {@link #replaceSimilar} is
+ * not supported, so this store suits full recalculations rather than
+ * incremental updates.
+ */
+public class MappedFileSimilarityStore implements SimilarityStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedFileSimilarityStore.class);
+
+    static final int MAGIC = 0x49434653; // "ICFS"
+    static final int VERSION = 1;
+    private static final int HEADER_INTS = 4;
+    private static final int SCORE_SCALE = 0xFFFF;
+
+    /** Sections are mapped in chunks of {@code 1 << 30} bytes. */
+    private static final int DEFAULT_CHUNK_SHIFT = 30;
+
+    private final Path path;
+    private final int chunkShift;
+    private final Object writeLock = new Object();
+    private volatile Mapping mapping;
+
+    /**
+     * Opens the store at {@code path}, mapping the file if it exists.
+     *
+     * @param path similarity file; its directory must be writable for commits
+     * @throws UncheckedIOException  if the file cannot be read
+     * @throws IllegalStateException if the file is not a supported similarity file
+     */
+    public MappedFileSimilarityStore(Path path) {
+        this(path, DEFAULT_CHUNK_SHIFT);
+    }
+
+    /** Maps sections in chunks of {@code 1 << chunkShift} bytes, for tests. */
+    MappedFileSimilarityStore(Path path, int chunkShift) {
+        this.path = Objects.requireNonNull(path, "path must not be null");
+        this.chunkShift = chunkShift;
+        this.mapping = Files.exists(path) ? Mapping.open(path, chunkShift) : Mapping.EMPTY;
+        if (mapping.itemCount > 0) {
+            log.info("ItemCF: mapped {} items and {} neighbours from {}", mapping.itemCount, mapping.entryCount, path);
+        }
+    }
+
+    /**
+     * Adds {@code results} to the stored neighbours by rewriting the whole
+     * file. The current neighbours are copied through a spill file, not the
+     * heap, but every call still costs I/O proportional to the file size.
+     */
+    @Override
+    public void saveAll(List<SimilarityResult> results) {
+        synchronized (writeLock) {
+            Staging staging = new Staging();
+            try {
+                Mapping current = mapping;
+                for (int row = 0; row < current.itemCount; row++) {
+                    int itemId = current.itemIds.getInt(row);
+                    for (int p = current.offsets.getInt(row); p < current.offsets.getInt(row + 1); p++) {
+                        staging.append(itemId, current.neighbours.getInt(p), current.scores.getShort(p) & 0xFFFF);
+                    }
+                }
+                staging.append(results);
+                install(staging);
+            } finally {
+                staging.discard();
+            }
+        }
+    }
+
+    @Override
+    public List<SimilarityResult> findSimilar(int itemId, int topK) {
+        Mapping current = mapping;
+        int row = current.row(itemId);
+        if (row < 0 || topK <= 0) {
+            return Collections.emptyList();
+        }
+        return current.slice(row, topK);
+    }
+
+    /** Reads every item from the same mapping, even if a commit swaps files meanwhile. */
+    @Override
+    public Map<Integer, List<SimilarityResult>> findSimilar(Collection<Integer> itemIds, int topK) {
+        Mapping current = mapping;
+        Map<Integer, List<SimilarityResult>> results = new HashMap<>(itemIds.size() * 4 / 3 + 1);
+        if (topK <= 0) {
+            return results;
+        }
+        for (int itemId : itemIds) {
+            int row = current.row(itemId);
+            if (row >= 0) {
+                results.put(itemId, current.slice(row, topK));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs the bulk lookup as one task on {@code executor}, since reading the
+     * mapping may fault pages in from disk, and keeps every item on the same
+     * mapping.
+     */
+    @Override
+    public CompletableFuture<Map<Integer, List<SimilarityResult>>> findSimilarAsync(
+            Collection<Integer> itemIds, int topK, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> findSimilar(itemIds, topK), executor);
+    }
+
+    @Override
+    public void deleteAll() {
+        synchronized (writeLock) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete " + path, e);
+            }
+            mapping = Mapping.EMPTY;
+        }
+    }
+
+    /**
+     * Opens a generation that spills each batch to disk as it arrives, so
+     * heap use stays proportional to the number of items rather than the
+     * number of neighbours.
+     */
+    @Override
+    public Generation beginGeneration() {
+        Staging staging = new Staging();
+        return new Generation() {
+            private volatile boolean finished;
+
+            @Override
+            public void saveAll(List<SimilarityResult> results) {
+                if (finished) {
+                    throw new IllegalStateException("generation already committed or aborted");
+                }
+                staging.append(results);
+            }
+
+            @Override
+            public void commit() {
+                if (finished) {
+                    throw new IllegalStateException("generation already committed or aborted");
+                }
+                finished = true;
+                try {
+                    synchronized (writeLock) {
+                        install(staging);
+                    }
+                } finally {
+                    staging.discard();
+                }
+            }
+
+            @Override
+            public void abort() {
+                finished = true;
+                staging.discard();
+            }
+        };
+    }
+
+    /** Number of stored similarity pairs. */
+    public int size() {
+        return mapping.entryCount;
+    }
+
+    /** Writes the staged neighbours next to the current file, swaps them in and maps them. */
+    private void install(Staging staging) {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            staging.writeTo(temp);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("Could not write similarity file " + path, e);
+        }
+        mapping = Mapping.open(path, chunkShift);
+        log.info("ItemCF: wrote {} items and {} neighbours to {}", mapping.itemCount, mapping.entryCount, path);
+    }
+
+    static int quantise(double score) {
+        return (int) Math.max(1, Math.min(SCORE_SCALE, Math.round(score * SCORE_SCALE)));
+    }
+
+    static double dequantise(int quantised) {
+        return (double) quantised / SCORE_SCALE;
+    }
+
+    /**
+     * Neighbours of a generation being written: spilled to a file next to the
+     * store as {@code (itemId1, itemId2, quantised score)} records of 10 bytes,
+     * with only a neighbour count per item kept in memory. Thread-safe.
+     */
+    private final class Staging {
+
+        private static final int RECORD_BYTES = 2 * Integer.BYTES + Short.BYTES;
+
+        private final Path spill;
+        private final DataOutputStream out;
+        /** itemId → number of spilled neighbours; exact as a double far beyond any int */
+        private final IntDoubleHashMap counts = new IntDoubleHashMap();
+        private long entries;
+        private boolean closed;
+
+        Staging() {
+            Path directory = path.toAbsolutePath().getParent();
+            try {
+                this.spill = Files.createTempFile(directory, path.getFileName() + ".", ".gen");
+                this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spill), 1 << 16));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create a spill file in " + directory, e);
+            }
+        }
+
+        synchronized void append(List<SimilarityResult> results) {
+            for (SimilarityResult result : results) {
+                append(result.itemId1(), result.itemId2(), quantise(result.score()));
+            }
+        }
+
+        synchronized void append(int itemId1, int itemId2, int quantised) {
+            if (closed) {
+                throw new IllegalStateException("generation already committed or aborted");
+            }
+            try {
+                out.writeInt(itemId1);
+                out.writeInt(itemId2);
+                out.writeShort(quantised);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not spill similarity results to " + spill, e);
+            }
+            counts.addTo(itemId1, 1);
+            entries++;
+        }
+
+        /**
+         * Writes the staged neighbours to {@code target} in file order: the
+         * spill is read once and every neighbour written to its item's slot,
+         * then each item's neighbours are sorted best first in place, which
+         * is a check only when they arrived in order.
+         */
+        synchronized void writeTo(Path target) throws IOException {
+            closed = true;
+            out.close();
+            if (entries > Integer.MAX_VALUE) {
+                throw new IllegalStateException("A similarity file holds at most " + Integer.MAX_VALUE
+                        + " neighbours, got " + entries);
+            }
+            int[] itemIds = new int[counts.size()];
+            int n = 0;
+            for (int slot = 0; slot < counts.capacity(); slot++) {
+                if (counts.isUsed(slot)) {
+                    itemIds[n++] = counts.keyAt(slot);
+                }
+            }
+            Arrays.sort(itemIds);
+            int[] cursor = new int[itemIds.length + 1];
+            for (int r = 0; r < itemIds.length; r++) {
+                cursor[r + 1] = cursor[r] + (int) counts.get(itemIds[r], 0);
+            }
+            int entryCount = (int) entries;
+
+            long neighboursAt = 4L * (HEADER_INTS + itemIds.length + itemIds.length + 1);
+            long scoresAt = neighboursAt + 4L * entryCount;
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                Section head = Section.map(channel, FileChannel.MapMode.READ_WRITE, 0, neighboursAt, chunkShift);
+                Section neighbours = Section.map(channel, FileChannel.MapMode.READ_WRITE,
+                        neighboursAt, 4L * entryCount, chunkShift);
+                Section scores = Section.map(channel, FileChannel.MapMode.READ_WRITE,
+                        scoresAt, 2L * entryCount, chunkShift);
+
+                head.putInt(0, MAGIC);
+                head.putInt(1, VERSION);
+                head.putInt(2, itemIds.length);
+                head.putInt(3, entryCount);
+                for (int r = 0; r < itemIds.length; r++) {
+                    head.putInt(HEADER_INTS + r, itemIds[r]);
+                }
+                for (int r = 0; r <= itemIds.length; r++) {
+                    head.putInt(HEADER_INTS + itemIds.length + r, cursor[r]);
+                }
+
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(Files.newInputStream(spill), 1 << 16))) {
+                    for (long k = 0; k < entries; k++) {
+                        int row = Arrays.binarySearch(itemIds, in.readInt());
+                        int p = cursor[row]++;
+                        neighbours.putInt(p, in.readInt());
+                        scores.putShort(p, in.readShort());
+                    }
+                }
+                // cursor[r] now ends row r, i.e. starts row r + 1
+                for (int r = 0; r < itemIds.length; r++) {
+                    sortRow(neighbours, scores, r == 0 ? 0 : cursor[r - 1], cursor[r]);
+                }
+
+                head.force();
+                neighbours.force();
+                scores.force();
+                channel.force(true);
+            }
+        }
+
+        synchronized void discard() {
+            closed = true;
+            try {
+                out.close();
+                Files.deleteIfExists(spill);
+            } catch (IOException e) {
+                log.warn("ItemCF: could not delete spill file {}", spill, e);
+            }
+        }
+
+        /** Orders {@code [from, to)} by score descending, ties by ascending neighbour ID. */
+        private static void sortRow(Section neighbours, Section scores, int from, int to) {
+            boolean sorted = true;
+            for (int p = from + 1; p < to && sorted; p++) {
+                sorted = sortKey(scores.getShort(p - 1), neighbours.getInt(p - 1))
+                        <= sortKey(scores.getShort(p), neighbours.getInt(p));
+            }
+            if (sorted) {
+                return;
+            }
+            long[] keys = new long[to - from];
+            for (int p = from; p < to; p++) {
+                keys[p - from] = sortKey(scores.getShort(p), neighbours.getInt(p));
+            }
+            Arrays.sort(keys);
+            for (int p = from; p < to; p++) {
+                long key = keys[p - from];
+                neighbours.putInt(p, (int) key ^ Integer.MIN_VALUE);
+                scores.putShort(p, (short) (SCORE_SCALE - (int) (key >>> 32)));
+            }
+        }
+
+        /** Ascending keys order by quantised score descending, then neighbour ID ascending. */
+        private static long sortKey(short quantised, int neighbour) {
+            long inverted = SCORE_SCALE - (quantised & 0xFFFF);
+            return inverted << 32 | ((neighbour ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * A file region mapped in chunks of {@code 1 << chunkShift} bytes, so
+     * regions beyond the 2 GB limit of one mapping can be addressed. Chunks
+     * are a multiple of 4 bytes, so no value straddles two of them.
+     */
+    private static final class Section {
+
+        static final Section EMPTY = new Section(new ByteBuffer[0], DEFAULT_CHUNK_SHIFT);
+
+        private final ByteBuffer[] chunks;
+        private final int chunkShift;
+        private final long chunkMask;
+
+        private Section(ByteBuffer[] chunks, int chunkShift) {
+            this.chunks = chunks;
+            this.chunkShift = chunkShift;
+            this.chunkMask = (1L << chunkShift) - 1;
+        }
+
+        static Section map(FileChannel channel, FileChannel.MapMode mode, long at, long bytes, int chunkShift)
+                throws IOException {
+            long chunkBytes = 1L << chunkShift;
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((bytes + chunkBytes - 1) >>> chunkShift)];
+            for (int c = 0; c < chunks.length; c++) {
+                long from = (long) c << chunkShift;
+                chunks[c] = channel.map(mode, at + from, Math.min(chunkBytes, bytes - from));
+            }
+            return new Section(chunks, chunkShift);
+        }
+
+        int getInt(long index) {
+            long position = index << 2;
+            return chunks[(int) (position >>> chunkShift)].getInt((int) (position & chunkMask));
+        }
+
+        void putInt(long index, int value) {
+            long position = index << 2;
+            chunks[(int) (position >>> chunkShift)].putInt((int) (position & chunkMask), value);
+        }
+
+        short getShort(long index) {
+            long position = index << 1;
+            return chunks[(int) (position >>> chunkShift)].getShort((int) (position & chunkMask));
+        }
+
+        void putShort(long index, short value) {
+            long position = index << 1;
+            chunks[(int) (position >>> chunkShift)].putShort((int) (position & chunkMask), value);
+        }
+
+        void force() {
+            for (ByteBuffer chunk : chunks) {
+                ((MappedByteBuffer) chunk).force();
+            }
+        }
+    }
+
+    /** Read-only views of one mapped file; safe to share between threads. */
+    private static final class Mapping {
+
+        static final Mapping EMPTY = new Mapping(Section.EMPTY, Section.EMPTY, Section.EMPTY, Section.EMPTY, 0, 0);
+
+        final Section itemIds;
+        final Section offsets;
+        final Section neighbours;
+        final Section scores;
+        final int itemCount;
+        final int entryCount;
+
+        private Mapping(Section itemIds, Section offsets, Section neighbours, Section scores,
+                int itemCount, int entryCount) {
+            this.itemIds = itemIds;
+            this.offsets = offsets;
+            this.neighbours = neighbours;
+            this.scores = scores;
+            this.itemCount = itemCount;
+            this.entryCount = entryCount;
+        }
+
+        static Mapping open(Path path, int chunkShift) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long fileSize = channel.size();
+                if (fileSize < 4L * HEADER_INTS) {
+                    throw new IllegalStateException(path + " is too short to be a similarity file");
+                }
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 4L * HEADER_INTS);
+                if (header.getInt(0) != MAGIC) {
+                    throw new IllegalStateException(path + " is not a similarity file");
+                }
+                if (header.getInt(4) != VERSION) {
+                    throw new IllegalStateException("Unsupported similarity file version " + header.getInt(4));
+                }
+                int itemCount = header.getInt(8);
+                int entryCount = header.getInt(12);
+                if (itemCount < 0 || entryCount < 0) {
+                    throw new IllegalStateException(path + " is corrupt: negative section size");
+                }
+
+                long itemIdsAt = 4L * HEADER_INTS;
+                long offsetsAt = itemIdsAt + 4L * itemCount;
+                long neighboursAt = offsetsAt + 4L * (itemCount + 1);
+                long scoresAt = neighboursAt + 4L * entryCount;
+                long end = scoresAt + 2L * entryCount;
+                if (end != fileSize) {
+                    throw new IllegalStateException(path + " is truncated or corrupt: expected " + end
+                            + " bytes, found " + fileSize);
+                }
+
+                // The mappings stay valid after the channel is closed
+                FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+                return new Mapping(
+                        Section.map(channel, mode, itemIdsAt, 4L * itemCount, chunkShift),
+                        Section.map(channel, mode, offsetsAt, 4L * (itemCount + 1), chunkShift),
+                        Section.map(channel, mode, neighboursAt, 4L * entryCount, chunkShift),
+                        Section.map(channel, mode, scoresAt, 2L * entryCount, chunkShift),
+                        itemCount, entryCount);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map similarity file " + path, e);
+            }
+        }
+
+        /** Binary search over the mapped, ascending item IDs. */
+        int row(int itemId) {
+            int low = 0;
+            int high = itemCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midId = itemIds.getInt(mid);
+                if (midId < itemId) {
+                    low = mid + 1;
+                } else if (midId > itemId) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        List<SimilarityResult> slice(int row, int topK) {
+            int itemId = itemIds.getInt(row);
+            int from = offsets.getInt(row);
+            int to = from + Math.min(topK, offsets.getInt(row + 1) - from);
+            List<SimilarityResult> results = new ArrayList<>(to - from);
+            for (int p = from; p < to; p++) {
+                double score = dequantise(scores.getShort(p) & 0xFFFF);
+                results.add(new SimilarityResult(itemId, neighbours.getInt(p), score));
+            }
+            return results;
+        }
+    }
+}
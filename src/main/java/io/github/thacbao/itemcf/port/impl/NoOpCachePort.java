@@ -4,6 +4,8 @@ import io.github.thacbao.itemcf.port.CachePort;
 
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class NoOpCachePort implements CachePort {
 
@@ -22,6 +24,16 @@ public class NoOpCachePort implements CachePort {
         // intentional no-op
     }
 
+    @Override
+    public CompletableFuture<Optional<Object>> getAsync(String key, Executor executor) {
+        return CompletableFuture.completedFuture(Optional.empty());
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(String key, Object value, Duration ttl, Executor executor) {
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override
     public void evictByPattern(String pattern) {
         // intentional no-op
@@ -0,0 +1,45 @@
+package io.github.thacbao.itemcf.port.impl;
+
+import io.github.thacbao.itemcf.model.Interaction;
+import io.github.thacbao.itemcf.model.InteractionBatch;
+import io.github.thacbao.itemcf.port.CursorInteractionLoader;
+import io.github.thacbao.itemcf.port.InteractionLoader;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Exposes an offset-paginated {@link InteractionLoader} as a
+ * {@link CursorInteractionLoader}; the cursor is the decimal offset of the
+ * next row, which after the final short page is the first row not yet
+ * written. Obtain it through {@link CursorInteractionLoader#fromOffsetLoader}.
+ */
+public final class OffsetCursorInteractionLoader implements CursorInteractionLoader {
+
+    private final InteractionLoader delegate;
+
+    public OffsetCursorInteractionLoader(InteractionLoader delegate) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+    }
+
+    /** The wrapped offset loader, which can also be paged concurrently. */
+    public InteractionLoader delegate() {
+        return delegate;
+    }
+
+    @Override
+    public InteractionBatch loadBatch(String cursor, int limit) {
+        int offset = cursor == null ? 0 : Integer.parseInt(cursor);
+        List<Interaction> batch = delegate.loadBatch(offset, limit);
+        if (batch == null) {
+            batch = Collections.emptyList();
+        }
+        if (batch.size() < limit) {
+            // Past the rows just read, so resuming reads only rows appended
+            // since and never counts this page twice
+            return InteractionBatch.last(batch, Integer.toString(offset + batch.size()));
+        }
+        return InteractionBatch.of(batch, Integer.toString(offset + limit));
+    }
+}
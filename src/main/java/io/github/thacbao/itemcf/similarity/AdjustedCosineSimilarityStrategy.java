@@ -0,0 +1,27 @@
+package io.github.thacbao.itemcf.similarity;
+
+/**
+ * Adjusted cosine (Sarwar et al.): cosine over the common users of scores
+ * from which each user's mean has been subtracted, which removes differences
+ * in how generously users rate. The centering needs every user's scores, so
+ * it is done by the calculation when
+ * {@code RecommendationConfig.Builder.centerOnUserMean(true)} is set; this
+ * strategy only computes the cosine over the common users of whatever scores
+ * it is given. Called directly on two vectors, it therefore expects them to
+ * be centered already.
+ */
+public class AdjustedCosineSimilarityStrategy implements CooccurrenceSimilarityStrategy {
+
+    public static final AdjustedCosineSimilarityStrategy INSTANCE = new AdjustedCosineSimilarityStrategy();
+
+    @Override
+    public double compute(ItemStatistics item1, ItemStatistics item2, PairStatistics pair) {
+        double denominator = Math.sqrt(pair.sumOfSquares1() * pair.sumOfSquares2());
+        return denominator == 0.0 ? 0.0 : pair.dotProduct() / denominator;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+}
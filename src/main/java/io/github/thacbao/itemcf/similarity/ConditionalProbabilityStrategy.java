@@ -0,0 +1,37 @@
+package io.github.thacbao.itemcf.similarity;
+
+/**
+ * Conditional-probability similarity (Deshpande &amp; Karypis):
+ * {@code |U1 ∩ U2| / (|U1| · |U2|^alpha)}. With {@code alpha = 0} this is the
+ * probability that a user of item 1 also interacted with item 2; larger values
+ * damp very popular neighbours, and {@code alpha = 1} ranks neighbours exactly
+ * like lift ({@code P(1 ∧ 2) / (P(1) · P(2))}) while staying within (0, 1].
+ * <p>
+ * The score is asymmetric: the neighbours of item 1 are ranked by the
+ * likelihood of item 2 given item 1.
+ */
+public class ConditionalProbabilityStrategy implements CooccurrenceSimilarityStrategy {
+
+    /** Plain conditional probability, {@code alpha = 0}. */
+    public static final ConditionalProbabilityStrategy INSTANCE = new ConditionalProbabilityStrategy(0.0);
+
+    private final double alpha;
+
+    /**
+     * @param alpha popularity damping exponent in [0, 1]
+     */
+    public ConditionalProbabilityStrategy(double alpha) {
+        if (alpha < 0 || alpha > 1)
+            throw new IllegalArgumentException("alpha must be in [0,1]");
+        this.alpha = alpha;
+    }
+
+    @Override
+    public double compute(ItemStatistics item1, ItemStatistics item2, PairStatistics pair) {
+        if (pair.commonUsers() == 0) {
+            return 0.0;
+        }
+        double popularity = alpha == 0.0 ? 1.0 : Math.pow(item2.count(), alpha);
+        return pair.commonUsers() / (item1.count() * popularity);
+    }
+}
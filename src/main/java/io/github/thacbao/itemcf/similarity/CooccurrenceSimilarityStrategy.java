@@ -0,0 +1,106 @@
+package io.github.thacbao.itemcf.similarity;
+
+import java.util.Map;
+
+/**
+ * Similarity strategy computed from precomputed aggregates instead of the two
+ * raw vectors. The calculator derives every item's {@link ItemStatistics} once
+ * and accumulates the {@link PairStatistics} of each pair during the sparse
+ * co-occurrence pass, so a metric built on this interface runs at the speed
+ * of the built-in cosine path and never walks boxed maps.
+ * <p>
+ * The map and sorted-row overloads inherited from {@link SimilarityStrategy}
+ * derive the same statistics from the two vectors and delegate to
+ * {@link #compute(ItemStatistics, ItemStatistics, PairStatistics)}.
+ * Implementations must be thread-safe when the calculation is parallel.
+ */
+public interface CooccurrenceSimilarityStrategy extends SimilarityStrategy {
+
+    /**
+     * Computes the similarity of item 1 to item 2.
+     *
+     * @param item1 aggregates of item 1 over all of its users
+     * @param item2 aggregates of item 2 over all of its users
+     * @param pair  sums over the users common to both items; only valid
+     *              during this call
+     * @return similarity score; pairs scoring at or below 0 are discarded
+     */
+    double compute(ItemStatistics item1, ItemStatistics item2, PairStatistics pair);
+
+    @Override
+    default double compute(Map<Integer, Double> v1, Map<Integer, Double> v2) {
+        int common = 0;
+        double dot = 0.0;
+        double sum1 = 0.0;
+        double sum2 = 0.0;
+        double squares1 = 0.0;
+        double squares2 = 0.0;
+        for (Map.Entry<Integer, Double> entry : v1.entrySet()) {
+            Double y = v2.get(entry.getKey());
+            if (y != null) {
+                double x = entry.getValue();
+                common++;
+                dot += x * y;
+                sum1 += x;
+                sum2 += y;
+                squares1 += x * x;
+                squares2 += y * y;
+            }
+        }
+        return compute(statistics(v1.values()), statistics(v2.values()),
+                new SimplePairStatistics(common, dot, sum1, sum2, squares1, squares2));
+    }
+
+    @Override
+    default double compute(int[] users1, double[] scores1, int from1, int to1,
+            int[] users2, double[] scores2, int from2, int to2) {
+        int common = 0;
+        double dot = 0.0;
+        double sum1 = 0.0;
+        double sum2 = 0.0;
+        double squares1 = 0.0;
+        double squares2 = 0.0;
+        int p = from1;
+        int q = from2;
+        while (p < to1 && q < to2) {
+            if (users1[p] == users2[q]) {
+                double x = scores1[p++];
+                double y = scores2[q++];
+                common++;
+                dot += x * y;
+                sum1 += x;
+                sum2 += y;
+                squares1 += x * x;
+                squares2 += y * y;
+            } else if (users1[p] < users2[q]) {
+                p++;
+            } else {
+                q++;
+            }
+        }
+        return compute(statistics(scores1, from1, to1), statistics(scores2, from2, to2),
+                new SimplePairStatistics(common, dot, sum1, sum2, squares1, squares2));
+    }
+
+    private static ItemStatistics statistics(double[] scores, int from, int to) {
+        double sum = 0.0;
+        double sumOfSquares = 0.0;
+        for (int p = from; p < to; p++) {
+            sum += scores[p];
+            sumOfSquares += scores[p] * scores[p];
+        }
+        return new ItemStatistics(to - from, sum, sumOfSquares);
+    }
+
+    private static ItemStatistics statistics(Iterable<Double> scores) {
+        int count = 0;
+        double sum = 0.0;
+        double sumOfSquares = 0.0;
+        for (double score : scores) {
+            count++;
+            sum += score;
+            sumOfSquares += score * score;
+        }
+        return new ItemStatistics(count, sum, sumOfSquares);
+    }
+}
@@ -1,8 +1,6 @@
 package io.github.thacbao.itemcf.similarity;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class CosineSimilarityStrategy implements SimilarityStrategy {
 
@@ -10,31 +8,86 @@ public class CosineSimilarityStrategy implements SimilarityStrategy {
 
     @Override
     public double compute(Map<Integer, Double> v1, Map<Integer, Double> v2) {
-        // Find users who rated both items
-        Set<Integer> commonUsers = new HashSet<>(v1.keySet());
-        commonUsers.retainAll(v2.keySet());
+        // Probe the larger vector with the users of the smaller one: the
+        // common users are found without copying either key set
+        Map<Integer, Double> small = v1.size() <= v2.size() ? v1 : v2;
+        Map<Integer, Double> large = small == v1 ? v2 : v1;
 
-        if (commonUsers.isEmpty()) {
+        // Dot product — only over common users
+        double dotProduct = 0.0;
+        boolean anyCommon = false;
+        for (Map.Entry<Integer, Double> entry : small.entrySet()) {
+            Double other = large.get(entry.getKey());
+            if (other != null) {
+                dotProduct += entry.getValue() * other;
+                anyCommon = true;
+            }
+        }
+
+        if (!anyCommon) {
             return 0.0;
         }
 
-        // Dot product — only over common users
+        // L2 norms — over ALL users who rated each item
+        return cosine(dotProduct, l2Norm(v1), l2Norm(v2));
+    }
+
+    /**
+     * Sorted-row variant: the common users are found by merging the two user
+     * slices, so no set is allocated and no map lookup is performed.
+     */
+    @Override
+    public double compute(int[] users1, double[] scores1, int from1, int to1,
+            int[] users2, double[] scores2, int from2, int to2) {
+        return compute(users1, scores1, from1, to1, l2Norm(scores1, from1, to1),
+                users2, scores2, from2, to2, l2Norm(scores2, from2, to2));
+    }
+
+    /**
+     * Sorted-row variant with precomputed L2 norms, such as
+     * {@code InteractionMatrix.norm}. Performs a single merge of the two
+     * slices and allocates nothing, so each row's norm is computed once per
+     * calculation instead of once per pair.
+     *
+     * @param norm1 L2 norm of all scores of item 1, not only the common ones
+     * @param norm2 L2 norm of all scores of item 2
+     */
+    public double compute(int[] users1, double[] scores1, int from1, int to1, double norm1,
+            int[] users2, double[] scores2, int from2, int to2, double norm2) {
         double dotProduct = 0.0;
-        for (Integer userId : commonUsers) {
-            dotProduct += v1.get(userId) * v2.get(userId);
+        boolean anyCommon = false;
+        int p = from1;
+        int q = from2;
+        while (p < to1 && q < to2) {
+            int u1 = users1[p];
+            int u2 = users2[q];
+            if (u1 == u2) {
+                dotProduct += scores1[p++] * scores2[q++];
+                anyCommon = true;
+            } else if (u1 < u2) {
+                p++;
+            } else {
+                q++;
+            }
         }
 
-        // L2 norm of v1 — over ALL users who rated item 1
-        double norm1 = l2Norm(v1);
-
-        // L2 norm of v2 — over ALL users who rated item 2
-        double norm2 = l2Norm(v2);
+        return anyCommon ? cosine(dotProduct, norm1, norm2) : 0.0;
+    }
 
+    private static double cosine(double dotProduct, double norm1, double norm2) {
         if (norm1 == 0.0 || norm2 == 0.0) {
             return 0.0;
         }
+        // Rounding can push identical rows just above 1, e.g. sqrt(3) * sqrt(3) < 3
+        return Math.min(1.0, dotProduct / (norm1 * norm2));
+    }
 
-        return dotProduct / (norm1 * norm2);
+    private double l2Norm(double[] scores, int from, int to) {
+        double sumOfSquares = 0.0;
+        for (int p = from; p < to; p++) {
+            sumOfSquares += scores[p] * scores[p];
+        }
+        return Math.sqrt(sumOfSquares);
     }
 
     private double l2Norm(Map<Integer, Double> vector) {
@@ -44,4 +97,9 @@ public class CosineSimilarityStrategy implements SimilarityStrategy {
         }
         return Math.sqrt(sumOfSquares);
     }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
 }
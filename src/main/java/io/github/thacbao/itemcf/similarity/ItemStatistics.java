@@ -0,0 +1,25 @@
+package io.github.thacbao.itemcf.similarity;
+
+/**
+ * Aggregates of one item's full score vector, computed once per calculation
+ * and passed to {@link CooccurrenceSimilarityStrategy}.
+ * <p>
+ * When the calculation centers scores on each user's mean, the aggregates
+ * are taken over the centered scores.
+ *
+ * @param count        number of users who interacted with the item
+ * @param sum          sum of their scores
+ * @param sumOfSquares sum of their squared scores
+ */
+public record ItemStatistics(int count, double sum, double sumOfSquares) {
+
+    /** Mean score, or 0 for an item without users. */
+    public double mean() {
+        return count == 0 ? 0.0 : sum / count;
+    }
+
+    /** L2 norm of the score vector. */
+    public double norm() {
+        return Math.sqrt(sumOfSquares);
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.thacbao.itemcf.similarity;
+
+/**
+ * Jaccard index of the two items' user sets:
+ * {@code |U1 ∩ U2| / |U1 ∪ U2|}. Scores are ignored, which suits implicit
+ * feedback such as views or purchases.
+ */
+public class JaccardSimilarityStrategy implements CooccurrenceSimilarityStrategy {
+
+    public static final JaccardSimilarityStrategy INSTANCE = new JaccardSimilarityStrategy();
+
+    @Override
+    public double compute(ItemStatistics item1, ItemStatistics item2, PairStatistics pair) {
+        int union = item1.count() + item2.count() - pair.commonUsers();
+        return union == 0 ? 0.0 : (double) pair.commonUsers() / union;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.thacbao.itemcf.similarity;
+
+/**
+ * Co-occurrence sums of two items over the users they have in common, i.e.
+ * the users who interacted with both. With {@code x} the scores of the first
+ * item and {@code y} those of the second, all sums run over common users only.
+ * <p>
+ * The calculator passes a reusable view over its accumulators; it is only
+ * valid for the duration of the call and must not be retained.
+ */
+public interface PairStatistics {
+
+    /** Number of users who interacted with both items. */
+    int commonUsers();
+
+    /** {@code Σ x·y} */
+    double dotProduct();
+
+    /** {@code Σ x} */
+    double sum1();
+
+    /** {@code Σ y} */
+    double sum2();
+
+    /** {@code Σ x²} */
+    double sumOfSquares1();
+
+    /** {@code Σ y²} */
+    double sumOfSquares2();
+}
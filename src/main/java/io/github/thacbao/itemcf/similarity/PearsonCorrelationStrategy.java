@@ -0,0 +1,30 @@
+package io.github.thacbao.itemcf.similarity;
+
+/**
+ * Pearson correlation of the two items' scores over their common users.
+ * Negatively correlated pairs score below 0 and are therefore discarded.
+ */
+public class PearsonCorrelationStrategy implements CooccurrenceSimilarityStrategy {
+
+    public static final PearsonCorrelationStrategy INSTANCE = new PearsonCorrelationStrategy();
+
+    @Override
+    public double compute(ItemStatistics item1, ItemStatistics item2, PairStatistics pair) {
+        int n = pair.commonUsers();
+        if (n < 2) {
+            return 0.0;
+        }
+        double covariance = n * pair.dotProduct() - pair.sum1() * pair.sum2();
+        double variance1 = n * pair.sumOfSquares1() - pair.sum1() * pair.sum1();
+        double variance2 = n * pair.sumOfSquares2() - pair.sum2() * pair.sum2();
+        if (variance1 <= 0.0 || variance2 <= 0.0) {
+            return 0.0;
+        }
+        return covariance / Math.sqrt(variance1 * variance2);
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+}
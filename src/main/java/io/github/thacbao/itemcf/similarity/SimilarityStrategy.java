@@ -17,4 +17,35 @@ public interface SimilarityStrategy {
      *         A value of 0 means no similarity; 1 means identical.
      */
     double compute(Map<Integer, Double> v1, Map<Integer, Double> v2);
+
+    /**
+     * Computes similarity between two item rows given as slices of primitive
+     * arrays sorted by ascending user ID, as stored by the CSR interaction
+     * matrix. Common users can be found by merging the two slices.
+     * <p>
+     * The default implementation wraps both slices in read-only map views
+     * (keyed by the user IDs in the slices) and delegates to
+     * {@link #compute(Map, Map)}. Strategies on the hot path should override it.
+     *
+     * @param users1  user IDs of item 1, ascending within {@code [from1, to1)}
+     * @param scores1 scores of item 1, parallel to {@code users1}
+     * @param users2  user IDs of item 2, ascending within {@code [from2, to2)}
+     * @param scores2 scores of item 2, parallel to {@code users2}
+     * @return similarity score, as for {@link #compute(Map, Map)}
+     */
+    default double compute(int[] users1, double[] scores1, int from1, int to1,
+            int[] users2, double[] scores2, int from2, int to2) {
+        return compute(new SortedRowMap(users1, scores1, from1, to1),
+                new SortedRowMap(users2, scores2, from2, to2));
+    }
+
+    /**
+     * Whether the score of item 1 to item 2 always equals the score of item 2
+     * to item 1. The calculator then scores each pair once and keeps the
+     * score for both items, halving the work. Defaults to {@code false},
+     * which is always correct.
+     */
+    default boolean isSymmetric() {
+        return false;
+    }
 }
@@ -0,0 +1,6 @@
+package io.github.thacbao.itemcf.similarity;
+
+/** Immutable {@link PairStatistics} for the vector-based overloads. */
+record SimplePairStatistics(int commonUsers, double dotProduct, double sum1, double sum2,
+        double sumOfSquares1, double sumOfSquares2) implements PairStatistics {
+}
@@ -0,0 +1,79 @@
+package io.github.thacbao.itemcf.similarity;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only {@code Map<Integer, Double>} view over a slice of parallel
+ * key/score arrays sorted by key. Lookups are binary searches; nothing is
+ * copied.
+ */
+final class SortedRowMap extends AbstractMap<Integer, Double> {
+
+    private final int[] keys;
+    private final double[] values;
+    private final int from;
+    private final int to;
+
+    SortedRowMap(int[] keys, double[] values, int from, int to) {
+        this.keys = keys;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer k && Arrays.binarySearch(keys, from, to, k) >= 0;
+    }
+
+    @Override
+    public Double get(Object key) {
+        if (!(key instanceof Integer k)) {
+            return null;
+        }
+        int p = Arrays.binarySearch(keys, from, to, k);
+        return p >= 0 ? values[p] : null;
+    }
+
+    @Override
+    public Set<Entry<Integer, Double>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return to - from;
+            }
+
+            @Override
+            public Iterator<Entry<Integer, Double>> iterator() {
+                return new Iterator<>() {
+                    private int p = from;
+
+                    @Override
+                    public boolean hasNext() {
+                        return p < to;
+                    }
+
+                    @Override
+                    public Entry<Integer, Double> next() {
+                        if (p >= to) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<Integer, Double> entry = new SimpleImmutableEntry<>(keys[p], values[p]);
+                        p++;
+                        return entry;
+                    }
+                };
+            }
+        };
+    }
+}
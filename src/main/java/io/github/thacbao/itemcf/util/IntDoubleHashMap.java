@@ -0,0 +1,157 @@
+package io.github.thacbao.itemcf.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing {@code int → double} hash map with linear probing and no
+ * boxing. Entries cannot be removed individually; {@link #clear()} resets the
+ * map for reuse without shrinking it.
+ * <p>
+ * Iterate with the slot accessors:
+ *
+ * <pre>
+ * for (int slot = 0; slot &lt; map.capacity(); slot++) {
+ *     if (map.isUsed(slot)) {
+ *         use(map.keyAt(slot), map.valueAt(slot));
+ *     }
+ * }
+ * </pre>
+ *
+ * Not thread-safe.
+ */
+public final class IntDoubleHashMap {
+
+    private int[] keys;
+    private double[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    public IntDoubleHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of entries the map should hold without resizing
+     */
+    public IntDoubleHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return used[find(key)];
+    }
+
+    /** Returns the value for {@code key}, or {@code defaultValue} if absent. */
+    public double get(int key, double defaultValue) {
+        int slot = find(key);
+        return used[slot] ? values[slot] : defaultValue;
+    }
+
+    public void put(int key, double value) {
+        int slot = find(key);
+        if (!used[slot]) {
+            insert(slot, key, value);
+            return;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Adds {@code delta} to the value for {@code key}, treating an absent key
+     * as 0.
+     *
+     * @return the new value
+     */
+    public double addTo(int key, double delta) {
+        int slot = find(key);
+        if (!used[slot]) {
+            insert(slot, key, delta);
+            return delta;
+        }
+        return values[slot] += delta;
+    }
+
+    /** Removes all entries, keeping the current capacity. */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(used, false);
+            size = 0;
+        }
+    }
+
+    /** Number of slots, for iteration. */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public boolean isUsed(int slot) {
+        return used[slot];
+    }
+
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public double valueAt(int slot) {
+        return values[slot];
+    }
+
+    private int find(int key) {
+        int slot = mix(key) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insert(int slot, int key, double value) {
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        // Keep the load factor at or below 1/2
+        if (++size > (mask + 1) >>> 1) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length * 2);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldUsed[slot]) {
+                int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+                used[target] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        return Math.max(8, capacity);
+    }
+
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.thacbao.itemcf.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of {@code int} values with linear probing and no
+ * boxing. Values cannot be removed individually; {@link #clear()} resets the
+ * set for reuse without shrinking it.
+ * <p>
+ * Not thread-safe.
+ */
+public final class IntHashSet {
+
+    private int[] keys;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    public IntHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of values the set should hold without resizing
+     */
+    public IntHashSet(int expectedSize) {
+        allocate(IntDoubleHashMap.tableSizeFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int key) {
+        return used[find(key)];
+    }
+
+    /**
+     * Adds {@code key} to the set.
+     *
+     * @return {@code true} if it was not already present
+     */
+    public boolean add(int key) {
+        int slot = find(key);
+        if (used[slot]) {
+            return false;
+        }
+        keys[slot] = key;
+        used[slot] = true;
+        // Keep the load factor at or below 1/2
+        if (++size > (mask + 1) >>> 1) {
+            rehash();
+        }
+        return true;
+    }
+
+    /** Removes all values, keeping the current capacity. */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(used, false);
+            size = 0;
+        }
+    }
+
+    /** Number of slots; the memory held is proportional to it. */
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int find(int key) {
+        int slot = IntDoubleHashMap.mix(key) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length * 2);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldUsed[slot]) {
+                int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                used[target] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+}
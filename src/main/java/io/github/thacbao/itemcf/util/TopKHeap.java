@@ -0,0 +1,137 @@
+package io.github.thacbao.itemcf.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity min-heap of {@code (id, score)} pairs backed by primitive
+ * arrays, used to keep the K best entries of a stream without boxing.
+ * <p>
+ * An entry is better than another if its score is higher, or, on equal
+ * scores, if its id is lower; the retained set is therefore independent of
+ * insertion order. The arrays grow on demand up to the capacity, so a large
+ * capacity costs nothing until entries arrive. Not thread-safe; intended to
+ * be reused via {@link #clear()}.
+ */
+public final class TopKHeap {
+
+    private static final int INITIAL_SLOTS = 16;
+
+    private final int capacity;
+    private int[] ids;
+    private double[] scores;
+    private int size;
+
+    /**
+     * @param capacity maximum number of entries retained; must be &gt;= 1
+     */
+    public TopKHeap(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        this.capacity = capacity;
+        this.ids = new int[Math.min(capacity, INITIAL_SLOTS)];
+        this.scores = new double[ids.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Offers an entry, evicting the current worst one if the heap is full.
+     *
+     * @return {@code true} if the entry was retained
+     */
+    public boolean offer(int id, double score) {
+        if (size < capacity) {
+            if (size == ids.length) {
+                int slots = (int) Math.min(capacity, 2L * size);
+                ids = Arrays.copyOf(ids, slots);
+                scores = Arrays.copyOf(scores, slots);
+            }
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (!worse(ids[0], scores[0], id, score)) {
+            return false;
+        }
+        ids[0] = id;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Moves all entries into the given arrays, best first, and empties the heap.
+     *
+     * @return number of entries written
+     */
+    public int drainDescending(int[] idsOut, double[] scoresOut) {
+        int count = size;
+        // Repeatedly pop the worst entry into the tail of the output
+        for (int k = count - 1; k >= 0; k--) {
+            idsOut[k] = ids[0];
+            scoresOut[k] = scores[0];
+            size--;
+            if (size > 0) {
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return count;
+    }
+
+    /** Whether {@code (id1, score1)} ranks below {@code (id2, score2)}. */
+    private static boolean worse(int id1, double score1, int id2, double score2) {
+        int cmp = Double.compare(score1, score2);
+        return cmp < 0 || (cmp == 0 && id1 > id2);
+    }
+
+    private void siftUp(int k) {
+        int id = ids[k];
+        double score = scores[k];
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (!worse(id, score, ids[parent], scores[parent])) {
+                break;
+            }
+            ids[k] = ids[parent];
+            scores[k] = scores[parent];
+            k = parent;
+        }
+        ids[k] = id;
+        scores[k] = score;
+    }
+
+    private void siftDown(int k) {
+        int id = ids[k];
+        double score = scores[k];
+        int half = size >>> 1;
+        while (k < half) {
+            int child = 2 * k + 1;
+            int right = child + 1;
+            if (right < size && worse(ids[right], scores[right], ids[child], scores[child])) {
+                child = right;
+            }
+            if (!worse(ids[child], scores[child], id, score)) {
+                break;
+            }
+            ids[k] = ids[child];
+            scores[k] = scores[child];
+            k = child;
+        }
+        ids[k] = id;
+        scores[k] = score;
+    }
+}
@@ -2,17 +2,40 @@ package io.github.thacbao.itemcf.api;
 
 import io.github.thacbao.itemcf.config.RecommendationConfig;
 import io.github.thacbao.itemcf.model.Interaction;
+import io.github.thacbao.itemcf.model.InteractionBatch;
 import io.github.thacbao.itemcf.model.RecommendationResult;
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import io.github.thacbao.itemcf.port.CachePort;
+import io.github.thacbao.itemcf.port.CursorInteractionLoader;
 import io.github.thacbao.itemcf.port.InteractionLoader;
+import io.github.thacbao.itemcf.port.SimilarityStore;
+import io.github.thacbao.itemcf.port.impl.InMemoryCachePort;
 import io.github.thacbao.itemcf.port.impl.InMemorySimilarityStore;
+import io.github.thacbao.itemcf.similarity.AdjustedCosineSimilarityStrategy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
 
 /**
  * Integration test for the full ItemCF pipeline using in-memory adapters.
@@ -51,16 +74,7 @@ class RecommendationEngineTest {
     void setUp() {
         store = new InMemorySimilarityStore();
 
-        InteractionLoader loader = (offset, limit) -> offset == 0 ? TEST_INTERACTIONS : Collections.emptyList();
-
-        RecommendationConfig config = RecommendationConfig.builder()
-                .similarityThreshold(0.10)
-                .minCommonUsers(2)
-                .topKSimilar(20)
-                .batchSize(100)
-                .build();
-
-        engine = new RecommendationEngine(loader, store, config);
+        engine = new RecommendationEngine(loader(), store, config());
         engine.calculateAndStoreSimilarities();
     }
 
@@ -94,6 +108,29 @@ class RecommendationEngineTest {
         }
     }
 
+    @Test
+    void getSimilarItems_shouldReturnUnmodifiableViewsOfOneCachedList() {
+        InMemoryCachePort cache = InMemoryCachePort.builder().build();
+        SimilarityStore unsorted = new DelegatingStore(store) {
+            @Override
+            public List<SimilarityResult> findSimilar(int itemId, int topK) {
+                List<SimilarityResult> reversed = new ArrayList<>(super.findSimilar(itemId, topK));
+                Collections.reverse(reversed);
+                return reversed;
+            }
+        };
+        RecommendationEngine cached = new RecommendationEngine(loader(), unsorted, RecommendationConfig.builder()
+                .topKSimilar(20).cachePort(cache).build());
+
+        List<RecommendationResult> all = cached.getSimilarItems(10, 20);
+        List<RecommendationResult> top = cached.getSimilarItems(10, 1);
+
+        assertThat(all).hasSizeGreaterThan(1).isEqualTo(engine.getSimilarItems(10, 20));
+        assertThat(top).containsExactly(all.get(0));
+        assertThatThrownBy(() -> top.add(all.get(1))).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> cached.getSimilarItems(10, -1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     void getRecommendationsForUser_givenInteractionHistory_shouldFilterOutAlreadySeen() {
         // user 6 (new) has only seen item10 → recommend from similar items, not item10
@@ -105,6 +142,65 @@ class RecommendationEngineTest {
         assertThat(recommendedIds).doesNotContain(10); // already interacted
     }
 
+    @Test
+    void getRecommendationsForUser_shouldSumNeighbourScoresAndKeepTheBestLimit() {
+        InMemorySimilarityStore fixed = new InMemorySimilarityStore();
+        fixed.saveAll(List.of(
+                new SimilarityResult(1, 2, 0.5),
+                new SimilarityResult(1, 3, 0.5),
+                new SimilarityResult(1, 4, 0.25),
+                new SimilarityResult(5, 4, 0.5),
+                new SimilarityResult(5, 1, 0.75))); // already seen
+        RecommendationEngine scoring = new RecommendationEngine(loader(), fixed, config());
+
+        List<RecommendationResult> recs = scoring.getRecommendationsForUser(7, Set.of(1, 5), 2);
+
+        // Item 4 sums to 0.75; items 2 and 3 tie at 0.5 and the lower ID wins
+        assertThat(recs).containsExactly(new RecommendationResult(4, 0.75), new RecommendationResult(2, 0.5));
+        assertThat(scoring.getRecommendationsForUser(8, Set.of(1, 5), 0)).isEmpty();
+    }
+
+    @Test
+    void getRecommendationsForUser_afterSmallerLimit_shouldServeTheFullListFromCache() {
+        InMemoryCachePort cache = InMemoryCachePort.builder().build();
+        RecommendationEngine cached = new RecommendationEngine(loader(), store, RecommendationConfig.builder()
+                .topKSimilar(20).cachePort(cache).build());
+        Set<Integer> history = Set.of(10);
+        List<RecommendationResult> expected = engine.getRecommendationsForUser(6, history, 5);
+
+        assertThat(cached.getRecommendationsForUser(6, history, 1)).isEqualTo(expected.subList(0, 1));
+        assertThat(cached.getRecommendationsForUser(6, history, 5)).isEqualTo(expected);
+        assertThat(cached.getRecommendationsForUsers(Map.of(7, history), 1).get(7))
+                .isEqualTo(expected.subList(0, 1));
+        assertThat(cached.getRecommendationsForUser(7, history, 5)).isEqualTo(expected);
+        assertThat(cache.stats().hitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void getRecommendationsForUser_withLimitAboveTopKSimilar_shouldNotBeCapped() throws Exception {
+        InMemorySimilarityStore fixed = new InMemorySimilarityStore();
+        fixed.saveAll(List.of(
+                new SimilarityResult(1, 2, 0.75),
+                new SimilarityResult(5, 4, 0.5),
+                new SimilarityResult(6, 3, 0.25)));
+        InMemoryCachePort cache = InMemoryCachePort.builder().build();
+        RecommendationEngine cached = new RecommendationEngine(loader(), fixed, RecommendationConfig.builder()
+                .topKSimilar(1).cachePort(cache).build());
+        Set<Integer> history = Set.of(1, 5, 6);
+        List<RecommendationResult> all = List.of(new RecommendationResult(2, 0.75),
+                new RecommendationResult(4, 0.5), new RecommendationResult(3, 0.25));
+
+        assertThat(cached.getRecommendationsForUser(7, history, 1)).isEqualTo(all.subList(0, 1));
+        // The cached list was cut at topKSimilar, so a larger limit scores again
+        assertThat(cached.getRecommendationsForUser(7, history, 3)).isEqualTo(all);
+        assertThat(cached.getRecommendationsForUserAsync(7, history, 2).get(10, TimeUnit.SECONDS))
+                .isEqualTo(all.subList(0, 2));
+        assertThat(cached.getRecommendationsForUsers(Map.of(7, history, 8, history), 3))
+                .containsEntry(7, all).containsEntry(8, all);
+        // The cut list found by the second call counts as a cache hit as well
+        assertThat(cache.stats().hitCount()).isEqualTo(3);
+    }
+
     @Test
     void getRecommendationsForUser_withEmptyHistory_shouldReturnEmpty() {
         List<RecommendationResult> recs = engine.getRecommendationsForUser(99, Set.of(), 10);
@@ -121,4 +217,456 @@ class RecommendationEngineTest {
         // first)
         assertThat(sizeAfterSecondRun).isEqualTo(sizeAfterFirstRun);
     }
+
+    @Test
+    void calculateAndStoreSimilarities_whileRebuilding_shouldKeepServingPreviousData() {
+        List<Integer> servedDuringRebuild = new ArrayList<>();
+        SimilarityStore observed = new DelegatingStore(store) {
+            @Override
+            public Generation beginGeneration() {
+                Generation generation = store.beginGeneration();
+                return new Generation() {
+                    @Override
+                    public void saveAll(List<SimilarityResult> results) {
+                        generation.saveAll(results);
+                        servedDuringRebuild.add(store.findSimilar(10, 10).size());
+                    }
+
+                    @Override
+                    public void commit() {
+                        generation.commit();
+                    }
+
+                    @Override
+                    public void abort() {
+                        generation.abort();
+                    }
+                };
+            }
+        };
+        int sizeBefore = store.size();
+
+        new RecommendationEngine(loader(), observed, config()).calculateAndStoreSimilarities();
+
+        assertThat(servedDuringRebuild).isNotEmpty().allSatisfy(size -> assertThat(size).isGreaterThan(0));
+        assertThat(store.size()).isEqualTo(sizeBefore);
+    }
+
+    @Test
+    void calculateAndStoreSimilarities_whenWritingFails_shouldKeepPreviousData() {
+        SimilarityStore failing = new DelegatingStore(store) {
+            @Override
+            public Generation beginGeneration() {
+                Generation generation = store.beginGeneration();
+                return new Generation() {
+                    @Override
+                    public void saveAll(List<SimilarityResult> results) {
+                        throw new IllegalStateException("disk full");
+                    }
+
+                    @Override
+                    public void commit() {
+                        generation.commit();
+                    }
+
+                    @Override
+                    public void abort() {
+                        generation.abort();
+                    }
+                };
+            }
+        };
+        int sizeBefore = store.size();
+
+        assertThatThrownBy(() -> new RecommendationEngine(loader(), failing, config()).calculateAndStoreSimilarities())
+                .isInstanceOf(RuntimeException.class);
+
+        assertThat(store.size()).isEqualTo(sizeBefore);
+        assertThat(engine.getSimilarItems(10, 5)).isNotEmpty();
+    }
+
+    @Test
+    void withCursorLoader_shouldMatchOffsetLoader() {
+        InMemorySimilarityStore cursorStore = new InMemorySimilarityStore();
+        CursorInteractionLoader loader = (cursor, limit) -> InteractionBatch.last(TEST_INTERACTIONS, "end");
+
+        RecommendationEngine.withCursorLoader(loader, cursorStore, config()).calculateAndStoreSimilarities();
+
+        assertThat(cursorStore.size()).isEqualTo(store.size());
+        assertThat(cursorStore.findSimilar(10, 20)).isEqualTo(store.findSimilar(10, 20));
+    }
+
+    @Test
+    void applyInteractions_shouldMatchFullRecalculation() {
+        List<Interaction> delta = List.of(
+                new Interaction(4, 10, 2.0),
+                new Interaction(5, 20, 3.0),
+                new Interaction(6, 50, 4.0),
+                new Interaction(1, 50, 5.0));
+        List<Interaction> all = new ArrayList<>(TEST_INTERACTIONS);
+        all.addAll(delta);
+
+        InMemorySimilarityStore incremental = new InMemorySimilarityStore();
+        RecommendationEngine updated = new RecommendationEngine(loader(TEST_INTERACTIONS), incremental,
+                incrementalConfig());
+        updated.calculateAndStoreSimilarities();
+        updated.applyInteractions(delta);
+
+        InMemorySimilarityStore full = new InMemorySimilarityStore();
+        new RecommendationEngine(loader(all), full, incrementalConfig()).calculateAndStoreSimilarities();
+
+        for (int itemId : List.of(10, 20, 30, 40, 50)) {
+            List<SimilarityResult> expected = full.findSimilar(itemId, 20);
+            List<SimilarityResult> actual = incremental.findSimilar(itemId, 20);
+            assertThat(actual).hasSameSizeAs(expected);
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.get(i).itemId2()).isEqualTo(expected.get(i).itemId2());
+                // The store serves float precision
+                assertThat(actual.get(i).score()).isCloseTo(expected.get(i).score(), within(1e-6));
+            }
+        }
+    }
+
+    @Test
+    void getRecommendationsForUsers_shouldMatchPerUserResultsWithOneBulkLookup() {
+        List<Collection<Integer>> bulkLookups = new ArrayList<>();
+        SimilarityStore counting = new DelegatingStore(store) {
+            @Override
+            public Map<Integer, List<SimilarityResult>> findSimilar(Collection<Integer> itemIds, int topK) {
+                bulkLookups.add(List.copyOf(itemIds));
+                return super.findSimilar(itemIds, topK);
+            }
+        };
+        RecommendationEngine batch = new RecommendationEngine(loader(), counting,
+                RecommendationConfig.builder().topKSimilar(20).parallelism(3).build());
+        Map<Integer, Set<Integer>> histories = new LinkedHashMap<>();
+        histories.put(6, Set.of(10));
+        histories.put(7, Set.of(10, 20));
+        histories.put(8, Set.of(20, 40, 30));
+        histories.put(9, Set.of());
+
+        Map<Integer, List<RecommendationResult>> recs = batch.getRecommendationsForUsers(histories, 5);
+
+        assertThat(recs.keySet()).containsExactly(6, 7, 8, 9);
+        for (Map.Entry<Integer, Set<Integer>> entry : histories.entrySet()) {
+            assertThat(recs.get(entry.getKey()))
+                    .isEqualTo(engine.getRecommendationsForUser(entry.getKey(), entry.getValue(), 5));
+        }
+        assertThat(bulkLookups).hasSize(1);
+        assertThat(bulkLookups.get(0)).containsExactlyInAnyOrder(10, 20, 30, 40);
+    }
+
+    @Test
+    void getSimilarItems_withConcurrentMisses_shouldLoadOnceAndJitterTheTtl() throws Exception {
+        int callers = 6;
+        CountDownLatch missed = new CountDownLatch(callers);
+        AtomicInteger storeCalls = new AtomicInteger();
+        List<Duration> ttls = new CopyOnWriteArrayList<>();
+        CachePort cache = new CachePort() {
+            @Override
+            public Optional<Object> get(String key) {
+                missed.countDown();
+                return Optional.empty();
+            }
+
+            @Override
+            public void put(String key, Object value, Duration ttl) {
+                ttls.add(ttl);
+            }
+
+            @Override
+            public void evictByPattern(String pattern) {
+            }
+        };
+        SimilarityStore slow = new DelegatingStore(store) {
+            @Override
+            public List<SimilarityResult> findSimilar(int itemId, int topK) {
+                storeCalls.incrementAndGet();
+                try {
+                    // Hold the load until every caller has missed the cache and queued up behind it
+                    missed.await();
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.findSimilar(itemId, topK);
+            }
+        };
+        RecommendationEngine coalescing = new RecommendationEngine(loader(), slow, RecommendationConfig.builder()
+                .topKSimilar(20).cachePort(cache).cacheTtlJitter(0.5).build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<List<RecommendationResult>>> results = new ArrayList<>();
+            for (int k = 0; k < callers; k++) {
+                results.add(executor.submit(() -> coalescing.getSimilarItems(10, 5)));
+            }
+            for (Future<List<RecommendationResult>> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(engine.getSimilarItems(10, 5));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(storeCalls).hasValue(1);
+        assertThat(ttls).hasSize(1);
+        assertThat(ttls.get(0)).isBetween(Duration.ofHours(12), Duration.ofHours(24));
+    }
+
+    @Test
+    void getRecommendationsForUserAsync_shouldMatchBlockingResultsWithConcurrentLookups() throws Exception {
+        Set<Integer> history = Set.of(10, 20, 30);
+        CountDownLatch started = new CountDownLatch(history.size());
+        List<Boolean> overlapped = new CopyOnWriteArrayList<>();
+        SimilarityStore slow = new DelegatingStore(store) {
+            @Override
+            public List<SimilarityResult> findSimilar(int itemId, int topK) {
+                // Each lookup only proceeds once all of them have started
+                started.countDown();
+                try {
+                    overlapped.add(started.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.findSimilar(itemId, topK);
+            }
+        };
+        InMemoryCachePort cache = InMemoryCachePort.builder().build();
+        RecommendationEngine async = new RecommendationEngine(loader(), slow, RecommendationConfig.builder()
+                .topKSimilar(20).cachePort(cache).build());
+
+        CompletableFuture<List<RecommendationResult>> recs = async.getRecommendationsForUserAsync(6, history, 5);
+
+        assertThat(recs.get(10, TimeUnit.SECONDS)).isEqualTo(engine.getRecommendationsForUser(6, history, 5));
+        assertThat(overlapped).containsExactly(true, true, true);
+        assertThat(async.getRecommendationsForUserAsync(6, history, 1).get(10, TimeUnit.SECONDS))
+                .isEqualTo(recs.get().subList(0, 1));
+        assertThat(async.getRecommendationsForUserAsync(7, Set.of(), 5).get(10, TimeUnit.SECONDS)).isEmpty();
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getSimilarItemsAsync_shouldMatchBlockingResultsAndReportFailures() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RecommendationEngine async = new RecommendationEngine(loader(), store, RecommendationConfig.builder()
+                    .topKSimilar(20).asyncExecutor(executor).build());
+            assertThat(async.getSimilarItemsAsync(10, 5).get(10, TimeUnit.SECONDS))
+                    .isEqualTo(engine.getSimilarItems(10, 5));
+
+            SimilarityStore failing = new DelegatingStore(store) {
+                @Override
+                public List<SimilarityResult> findSimilar(int itemId, int topK) {
+                    throw new IllegalStateException("store down");
+                }
+            };
+            RecommendationEngine broken = new RecommendationEngine(loader(), failing, RecommendationConfig.builder()
+                    .asyncExecutor(executor).build());
+            assertThatThrownBy(() -> broken.getSimilarItemsAsync(10, 5).join())
+                    .hasRootCauseInstanceOf(IllegalStateException.class);
+            // The failed load is not left in flight
+            assertThatThrownBy(() -> broken.getSimilarItems(10, 5)).isInstanceOf(IllegalStateException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void calculateAndStoreSimilarities_withWarmUp_shouldReplacePopularEntriesInPlace() {
+        InMemoryCachePort cache = InMemoryCachePort.builder().build();
+        RecommendationEngine warming = new RecommendationEngine(loader(), store, RecommendationConfig.builder()
+                .similarityThreshold(0.10)
+                .topKSimilar(20)
+                .cachePort(cache)
+                .cacheWarmUpItems(2)
+                .cacheWarmUpParallelism(2)
+                .build());
+
+        warming.calculateAndStoreSimilarities();
+        // Item 10 has the most users; 20 and 40 tie and the lower ID wins
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(warming.getSimilarItems(10, 5)).isEqualTo(engine.getSimilarItems(10, 5));
+        assertThat(warming.getSimilarItems(20, 5)).isNotEmpty();
+        assertThat(cache.stats().hitCount()).isEqualTo(2);
+
+        warming.getSimilarItems(40, 5); // loaded on demand, then stale after the next run
+        assertThat(cache.size()).isEqualTo(3);
+        warming.calculateAndStoreSimilarities();
+
+        assertThat(cache.size()).isEqualTo(2);
+        warming.getSimilarItems(10, 5);
+        assertThat(cache.stats().hitCount()).isEqualTo(3);
+    }
+
+    @Test
+    void calculateAndStoreSimilarities_withWarmUpIntoFullCache_shouldOverwritePopularEntriesInPlace() {
+        InMemoryCachePort cache = InMemoryCachePort.builder().maximumWeight(100).build();
+        List<Boolean> cachedDuringWarmUp = new CopyOnWriteArrayList<>();
+        SimilarityStore observing = new DelegatingStore(store) {
+            @Override
+            public Map<Integer, List<SimilarityResult>> findSimilar(Collection<Integer> itemIds, int topK) {
+                cachedDuringWarmUp.add(cache.get("itemcf:similar:10").isPresent());
+                return super.findSimilar(itemIds, topK);
+            }
+        };
+        RecommendationEngine warming = new RecommendationEngine(loader(), observing, RecommendationConfig.builder()
+                .similarityThreshold(0.10)
+                .topKSimilar(20)
+                .cachePort(cache)
+                .cacheWarmUpItems(2)
+                .build());
+        warming.calculateAndStoreSimilarities();
+        warming.getSimilarItems(30, 5);
+        warming.getRecommendationsForUser(6, Set.of(10), 5);
+
+        // Fill the cache with entries read far more often than a freshly written key
+        for (int k = 0; cache.weightedSize() < 100; k++) {
+            cache.put("other:" + k, k, Duration.ofHours(1));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int k = 0; k < 100; k++) {
+                cache.get("other:" + k);
+            }
+        }
+        warming.calculateAndStoreSimilarities();
+
+        assertThat(cachedDuringWarmUp).startsWith(false).endsWith(true);
+        long misses = cache.stats().missCount();
+        assertThat(warming.getSimilarItems(10, 5)).isEqualTo(engine.getSimilarItems(10, 5));
+        assertThat(warming.getSimilarItems(20, 5)).isNotEmpty();
+        assertThat(cache.stats().missCount()).isEqualTo(misses);
+        assertThat(cache.stats().rejectionCount()).isZero();
+        // Stale entries are gone: the on-demand item and every user
+        assertThat(cache.get("itemcf:similar:30")).isEmpty();
+        assertThat(cache.get("itemcf:user:6")).isEmpty();
+    }
+
+    @Test
+    void incrementalUpdates_withStoreWithoutReplace_shouldBeRejectedUpFront() {
+        SimilarityStore saveOnly = new DelegatingStore(store) {
+            @Override
+            public boolean supportsReplace() {
+                return false;
+            }
+        };
+
+        assertThatThrownBy(() -> new RecommendationEngine(loader(), saveOnly, incrementalConfig()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("replaceSimilar");
+    }
+
+    @Test
+    void applyInteractions_whenStoreWriteFails_shouldRequireFullRecalculation() {
+        AtomicInteger failures = new AtomicInteger(1);
+        SimilarityStore flaky = new DelegatingStore(new InMemorySimilarityStore()) {
+            @Override
+            public void replaceSimilar(int itemId, List<SimilarityResult> neighbours) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("store unavailable");
+                }
+                super.replaceSimilar(itemId, neighbours);
+            }
+        };
+        RecommendationEngine updating = new RecommendationEngine(loader(), flaky, incrementalConfig());
+        updating.calculateAndStoreSimilarities();
+        List<Interaction> delta = List.of(new Interaction(4, 10, 2.0));
+
+        assertThatThrownBy(() -> updating.applyInteractions(delta)).hasMessage("store unavailable");
+        // The statistics already took the delta in, so they must not be reused
+        assertThatThrownBy(() -> updating.applyInteractions(delta)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("incremental update failure");
+
+        updating.calculateAndStoreSimilarities();
+        updating.applyInteractions(delta);
+    }
+
+    @Test
+    void adjustedCosine_shouldRequireUserMeanCentering() {
+        assertThatThrownBy(() -> RecommendationConfig.builder()
+                .strategy(AdjustedCosineSimilarityStrategy.INSTANCE).build())
+                .isInstanceOf(IllegalArgumentException.class);
+
+        InMemorySimilarityStore adjusted = new InMemorySimilarityStore();
+        new RecommendationEngine(loader(), adjusted, RecommendationConfig.builder()
+                .strategy(AdjustedCosineSimilarityStrategy.INSTANCE)
+                .centerOnUserMean(true)
+                .similarityThreshold(0.10)
+                .build()).calculateAndStoreSimilarities();
+
+        // Users 1 and 2 both rate item 10 above their own mean and item 20 likewise
+        assertThat(adjusted.findSimilar(10, 5)).extracting(SimilarityResult::itemId2).contains(20);
+    }
+
+    @Test
+    void applyInteractions_withoutIncrementalUpdates_shouldThrow() {
+        assertThatThrownBy(() -> engine.applyInteractions(List.of(new Interaction(1, 30, 1.0))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static InteractionLoader loader() {
+        return loader(TEST_INTERACTIONS);
+    }
+
+    private static InteractionLoader loader(List<Interaction> interactions) {
+        return (offset, limit) -> offset == 0 ? interactions : Collections.emptyList();
+    }
+
+    private static RecommendationConfig incrementalConfig() {
+        return RecommendationConfig.builder()
+                .similarityThreshold(0.10)
+                .minCommonUsers(2)
+                .topKSimilar(20)
+                .batchSize(100)
+                .incrementalUpdates(true)
+                .build();
+    }
+
+    private static RecommendationConfig config() {
+        return RecommendationConfig.builder()
+                .similarityThreshold(0.10)
+                .minCommonUsers(2)
+                .topKSimilar(20)
+                .batchSize(100)
+                .build();
+    }
+
+    /** Forwards every call to the wrapped store; tests override single methods. */
+    private static class DelegatingStore implements SimilarityStore {
+
+        private final SimilarityStore delegate;
+
+        DelegatingStore(SimilarityStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void saveAll(List<SimilarityResult> results) {
+            delegate.saveAll(results);
+        }
+
+        @Override
+        public List<SimilarityResult> findSimilar(int itemId, int topK) {
+            return delegate.findSimilar(itemId, topK);
+        }
+
+        @Override
+        public void deleteAll() {
+            delegate.deleteAll();
+        }
+
+        @Override
+        public boolean supportsReplace() {
+            return delegate.supportsReplace();
+        }
+
+        @Override
+        public void replaceSimilar(int itemId, List<SimilarityResult> neighbours) {
+            delegate.replaceSimilar(itemId, neighbours);
+        }
+
+        @Override
+        public Generation beginGeneration() {
+            return delegate.beginGeneration();
+        }
+    }
 }
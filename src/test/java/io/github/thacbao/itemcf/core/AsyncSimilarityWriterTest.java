@@ -0,0 +1,133 @@
+package io.github.thacbao.itemcf.core;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncSimilarityWriterTest {
+
+    @Test
+    void close_shouldWriteEverythingInBatchesOfConfiguredSize() {
+        List<List<SimilarityResult>> batches = new CopyOnWriteArrayList<>();
+        AsyncSimilarityWriter writer = new AsyncSimilarityWriter(batches::add, 4, 2);
+
+        for (int item = 1; item <= 5; item++) {
+            writer.accept(neighboursOf(item, 2)); // 10 results in total
+        }
+        writer.close();
+
+        assertThat(batches).extracting(List::size).containsExactly(4, 4, 2);
+        assertThat(writer.writtenCount()).isEqualTo(10);
+    }
+
+    @Test
+    void writerFailure_shouldSurfaceOnClose() {
+        AsyncSimilarityWriter writer = new AsyncSimilarityWriter(batch -> {
+            throw new IllegalStateException("store unavailable");
+        }, 1, 1);
+
+        assertThatThrownBy(() -> {
+            for (int item = 1; item <= 20; item++) {
+                writer.accept(neighboursOf(item, 1));
+            }
+            writer.close();
+        }).isInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("store unavailable");
+    }
+
+    @Test
+    void abort_shouldDiscardQueuedAndPartialBatches() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<SimilarityResult>> batches = new CopyOnWriteArrayList<>();
+        AsyncSimilarityWriter writer = new AsyncSimilarityWriter(batch -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batches.add(batch);
+        }, 2, 4);
+
+        for (int item = 1; item <= 3; item++) {
+            writer.accept(neighboursOf(item, 2)); // the first batch blocks the writer, two more queue up
+        }
+        writer.accept(neighboursOf(4, 1));
+        writing.await();
+
+        Thread aborting = new Thread(writer::abort);
+        aborting.start();
+        // abort() has cleared the queue once it waits for the writer thread
+        while (aborting.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        aborting.join(5_000);
+
+        assertThat(aborting.isAlive()).isFalse();
+        assertThat(batches).hasSize(1);
+        assertThat(writer.writtenCount()).isEqualTo(2);
+        writer.close(); // no-op after abort
+        assertThatThrownBy(() -> writer.accept(neighboursOf(5, 1))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void abort_shouldFailProducersBlockedOnAFullQueue() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<SimilarityResult>> batches = new CopyOnWriteArrayList<>();
+        AsyncSimilarityWriter writer = new AsyncSimilarityWriter(batch -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batches.add(batch);
+        }, 1, 1);
+        writer.accept(neighboursOf(1, 1)); // taken by the writer, which blocks
+        writing.await();
+        writer.accept(neighboursOf(2, 1)); // fills the queue
+
+        AtomicReference<Throwable> producerError = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                writer.accept(neighboursOf(3, 1));
+            } catch (Throwable t) {
+                producerError.set(t);
+            }
+        });
+        producer.start();
+        while (producer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        Thread aborting = new Thread(writer::abort);
+        aborting.start();
+        producer.join(5_000);
+
+        assertThat(producer.isAlive()).isFalse();
+        assertThat(producerError.get()).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("aborted");
+        release.countDown();
+        aborting.join(5_000);
+        assertThat(aborting.isAlive()).isFalse();
+        assertThat(batches).hasSize(1);
+    }
+
+    private static List<SimilarityResult> neighboursOf(int itemId, int count) {
+        List<SimilarityResult> neighbours = new ArrayList<>();
+        for (int k = 1; k <= count; k++) {
+            neighbours.add(new SimilarityResult(itemId, 1000 + k, 0.5));
+        }
+        return neighbours;
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.thacbao.itemcf.core;
+
+import io.github.thacbao.itemcf.model.Interaction;
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import io.github.thacbao.itemcf.similarity.CosineSimilarityStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class IncrementalCosineStateTest {
+
+    @Test
+    void apply_shouldMatchFullRecalculation() {
+        Map<Integer, Map<Integer, Double>> matrix = SimilarityCalculatorTest.randomMatrix(5, 60, 40, 400);
+        IncrementalCosineState state = IncrementalCosineState.build(InteractionMatrix.fromMap(matrix));
+
+        // Mix of score upgrades, new pairs, new users and new items
+        Random random = new Random(9);
+        List<Interaction> delta = new ArrayList<>();
+        for (int k = 0; k < 80; k++) {
+            delta.add(new Interaction(1 + random.nextInt(50), 100 + random.nextInt(70), 1 + random.nextInt(5)));
+        }
+        Set<Integer> affected = state.apply(delta);
+        for (Interaction interaction : delta) {
+            matrix.computeIfAbsent(interaction.itemId(), i -> new HashMap<>())
+                    .merge(interaction.userId(), interaction.score(), Double::max);
+        }
+
+        Map<Integer, List<SimilarityResult>> expected = new SimilarityCalculator(
+                CosineSimilarityStrategy.INSTANCE, 0.1, 2, ComputationMode.INVERTED_INDEX).compute(matrix).stream()
+                .collect(Collectors.groupingBy(SimilarityResult::itemId1));
+
+        assertThat(affected).containsAll(delta.stream().map(Interaction::itemId).collect(Collectors.toSet()));
+        for (int itemId : matrix.keySet()) {
+            Map<Integer, Double> actual = scores(state.neighbours(itemId, 0.1, 2, Integer.MAX_VALUE));
+            Map<Integer, Double> wanted = scores(expected.getOrDefault(itemId, List.of()));
+
+            assertThat(actual.keySet()).as("neighbours of %d", itemId).isEqualTo(wanted.keySet());
+            wanted.forEach((other, score) -> assertThat(actual.get(other)).isCloseTo(score, within(1e-9)));
+        }
+    }
+
+    @Test
+    void apply_shouldIgnoreLowerScores() {
+        IncrementalCosineState state = IncrementalCosineState.build(InteractionMatrix.fromMap(Map.of(
+                10, Map.of(1, 5.0, 2, 4.0),
+                20, Map.of(1, 5.0, 2, 4.0))));
+
+        assertThat(state.apply(List.of(new Interaction(1, 10, 2.0)))).isEmpty();
+        assertThat(state.neighbours(10, 0.1, 2, 10))
+                .singleElement()
+                .satisfies(r -> assertThat(r.score()).isCloseTo(1.0, within(1e-12)));
+    }
+
+    private static Map<Integer, Double> scores(List<SimilarityResult> results) {
+        return results.stream().collect(Collectors.toMap(SimilarityResult::itemId2, SimilarityResult::score));
+    }
+}
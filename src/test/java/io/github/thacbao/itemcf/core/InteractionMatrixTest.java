@@ -1,14 +1,25 @@
 package io.github.thacbao.itemcf.core;
 
 import io.github.thacbao.itemcf.model.Interaction;
+import io.github.thacbao.itemcf.model.InteractionBatch;
+import io.github.thacbao.itemcf.port.CursorInteractionLoader;
 import io.github.thacbao.itemcf.port.InteractionLoader;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class InteractionMatrixTest {
 
@@ -84,4 +95,294 @@ class InteractionMatrixTest {
         assertThat(matrix.itemCount()).isEqualTo(3); // items: 10, 20, 30
         assertThat(matrix.totalInteractions()).isEqualTo(6);
     }
+
+    @Test
+    void load_shouldBuildSortedCsrRowsWithDenseIndices() {
+        InteractionLoader loader = (offset, limit) -> offset == 0
+                ? List.of(
+                        new Interaction(7, 30, 2.0),
+                        new Interaction(3, 30, 4.0),
+                        new Interaction(5, 10, 1.0),
+                        new Interaction(3, 30, 5.0), // duplicate, higher score
+                        new Interaction(5, 30, 3.0))
+                : Collections.emptyList();
+
+        InteractionMatrix matrix = new InteractionMatrix();
+        matrix.load(loader, 1000);
+
+        // Dense indices follow ascending IDs
+        assertThat(matrix.itemIndex(10)).isEqualTo(0);
+        assertThat(matrix.itemIndex(30)).isEqualTo(1);
+        assertThat(matrix.itemIndex(20)).isEqualTo(-1);
+        assertThat(matrix.userCount()).isEqualTo(3);
+        assertThat(matrix.entryCount()).isEqualTo(4);
+        assertThat(matrix.totalInteractions()).isEqualTo(5);
+
+        // item30's row: users 3, 5, 7 in ascending order, duplicate merged by max
+        int row = matrix.itemIndex(30);
+        assertThat(matrix.rowLength(row)).isEqualTo(3);
+        int[] users = matrix.userIndices();
+        double[] scores = matrix.scores();
+        int start = matrix.rowStart(row);
+        assertThat(matrix.userId(users[start])).isEqualTo(3);
+        assertThat(matrix.userId(users[start + 1])).isEqualTo(5);
+        assertThat(matrix.userId(users[start + 2])).isEqualTo(7);
+        assertThat(scores[start]).isEqualTo(5.0);
+
+        // Norms are precomputed over the merged row: sqrt(5² + 3² + 2²)
+        assertThat(matrix.norm(row)).isEqualTo(Math.sqrt(38));
+        assertThat(matrix.norm(matrix.itemIndex(10))).isEqualTo(1.0);
+    }
+
+    @Test
+    void load_calledTwice_shouldMergeWithExistingEntries() {
+        InteractionMatrix matrix = new InteractionMatrix();
+        matrix.load((offset, limit) -> offset == 0 ? List.of(new Interaction(1, 10, 2.0)) : List.of(), 1000);
+        matrix.load((offset, limit) -> offset == 0
+                ? List.of(new Interaction(1, 10, 4.0), new Interaction(2, 20, 1.0))
+                : List.of(), 1000);
+
+        assertThat(matrix.itemCount()).isEqualTo(2);
+        assertThat(matrix.getMatrix().get(10)).containsEntry(1, 4.0);
+        assertThat(matrix.totalInteractions()).isEqualTo(3);
+    }
+
+    @Test
+    void loadFrom_shouldPageByCursorAndResumeFromWatermark() {
+        List<Interaction> table = new ArrayList<>(List.of(
+                new Interaction(1, 10, 4.0),
+                new Interaction(1, 20, 3.0),
+                new Interaction(2, 10, 5.0)));
+        List<String> requested = new ArrayList<>();
+        // Keyset over the list position: WHERE row > :cursor LIMIT :limit
+        CursorInteractionLoader loader = (cursor, limit) -> {
+            requested.add(cursor);
+            int from = cursor == null ? 0 : Integer.parseInt(cursor) + 1;
+            int to = Math.min(table.size(), from + limit);
+            return InteractionBatch.of(table.subList(from, to), to == from ? cursor : Integer.toString(to - 1));
+        };
+
+        InteractionMatrix matrix = new InteractionMatrix();
+        matrix.loadFrom(loader, 2);
+
+        assertThat(requested).containsExactly(null, "1", "2");
+        assertThat(matrix.watermark()).isEqualTo("2");
+        assertThat(matrix.totalInteractions()).isEqualTo(3);
+
+        table.add(new Interaction(3, 30, 1.0));
+        matrix.loadFrom(loader, 2);
+
+        assertThat(requested).endsWith("2", "3");
+        assertThat(matrix.itemCount()).isEqualTo(3);
+        assertThat(matrix.totalInteractions()).isEqualTo(4);
+    }
+
+    @Test
+    void fromOffsetLoader_shouldStopOnShortPageAndMovePastIt() {
+        InteractionLoader offsetLoader = (offset, limit) -> offset == 0
+                ? List.of(new Interaction(1, 10, 4.0), new Interaction(2, 10, 5.0))
+                : List.of(new Interaction(3, 20, 1.0));
+        CursorInteractionLoader loader = CursorInteractionLoader.fromOffsetLoader(offsetLoader);
+
+        InteractionBatch first = loader.loadBatch(null, 2);
+        InteractionBatch second = loader.loadBatch(first.cursor(), 2);
+
+        assertThat(first.last()).isFalse();
+        assertThat(first.cursor()).isEqualTo("2");
+        assertThat(second.last()).isTrue();
+        assertThat(second.cursor()).isEqualTo("3");
+    }
+
+    @Test
+    void loadFrom_resumingOffsetLoader_shouldNotRereadTheShortPage() {
+        for (int parallelism : new int[] {1, 3}) {
+            List<Interaction> table = new ArrayList<>(List.of(
+                    new Interaction(1, 10, 4.0),
+                    new Interaction(2, 10, 5.0),
+                    new Interaction(1, 20, 3.0)));
+            List<Integer> requested = new CopyOnWriteArrayList<>();
+            CursorInteractionLoader loader = CursorInteractionLoader.fromOffsetLoader((offset, limit) -> {
+                requested.add(offset);
+                return List.copyOf(table.subList(Math.min(offset, table.size()),
+                        Math.min(offset + limit, table.size())));
+            });
+            InteractionMatrix matrix = new InteractionMatrix();
+            matrix.loadFrom(loader, 2, 0, parallelism);
+            assertThat(matrix.watermark()).isEqualTo("3");
+
+            table.add(new Interaction(3, 30, 2.0));
+            requested.clear();
+            matrix.loadFrom(loader, 2, 0, parallelism);
+
+            assertThat(requested).contains(3).allMatch(offset -> offset >= 3);
+            assertThat(matrix.watermark()).isEqualTo("4");
+            assertThat(matrix.totalInteractions()).isEqualTo(4);
+            assertThat(matrix.getMatrix()).containsOnlyKeys(10, 20, 30);
+        }
+    }
+
+    @Test
+    void loadFrom_withParallelOffsetPages_shouldMatchSequentialLoad() {
+        // Pages 0..6 are full, page 7 is short and ends the data; page 8 must
+        // be ignored even though a worker may fetch it
+        InteractionLoader loader = (offset, limit) -> {
+            int page = offset / limit;
+            int size = page < 7 ? limit : page == 7 ? limit / 2 : limit;
+            List<Interaction> batch = new ArrayList<>(size);
+            for (int k = 0; k < size; k++) {
+                batch.add(new Interaction(offset + k, 10 + (offset + k) % 7, 1 + k % 5));
+            }
+            return batch;
+        };
+
+        InteractionMatrix sequential = new InteractionMatrix();
+        sequential.load(loader, 10);
+        InteractionMatrix parallel = new InteractionMatrix();
+        parallel.loadFrom(CursorInteractionLoader.fromOffsetLoader(loader), 10, 0, 4);
+
+        assertThat(parallel.getMatrix()).isEqualTo(sequential.getMatrix());
+        assertThat(parallel.totalInteractions()).isEqualTo(75);
+        assertThat(parallel.watermark()).isEqualTo(sequential.watermark()).isEqualTo("75");
+    }
+
+    @Test
+    void loadFrom_withPrefetchedCursorPages_shouldMatchSequentialLoad() {
+        CursorInteractionLoader loader = (cursor, limit) -> {
+            int from = cursor == null ? 0 : Integer.parseInt(cursor);
+            List<Interaction> page = new ArrayList<>();
+            for (int k = from; k < Math.min(95, from + limit); k++) {
+                page.add(new Interaction(k % 13, k % 11, 1 + k % 3));
+            }
+            return InteractionBatch.of(page, Integer.toString(from + page.size()));
+        };
+
+        InteractionMatrix sequential = new InteractionMatrix();
+        sequential.loadFrom(loader, 10);
+        InteractionMatrix prefetched = new InteractionMatrix();
+        prefetched.loadFrom(loader, 10, 3, 2);
+
+        assertThat(prefetched.getMatrix()).isEqualTo(sequential.getMatrix());
+        assertThat(prefetched.totalInteractions()).isEqualTo(95);
+        assertThat(prefetched.watermark()).isEqualTo("95");
+    }
+
+    @Test
+    void loadFrom_whenLoaderFails_shouldRethrow() {
+        CursorInteractionLoader loader = (cursor, limit) -> {
+            if (cursor != null) {
+                throw new IllegalStateException("connection reset");
+            }
+            return InteractionBatch.of(List.of(new Interaction(1, 10, 1.0)), "1");
+        };
+
+        assertThatThrownBy(() -> new InteractionMatrix().loadFrom(loader, 1, 2, 2))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("connection reset");
+    }
+
+    @Test
+    void downsample_shouldCapHeavyUsersDeterministically() {
+        Map<Integer, Map<Integer, Double>> items = new HashMap<>();
+        for (int item = 1; item <= 50; item++) {
+            items.computeIfAbsent(item, k -> new HashMap<>()).put(1, 1.0); // bot user 1 touches everything
+            items.get(item).put(100 + item % 5, 2.0);
+        }
+        InteractionMatrix matrix = InteractionMatrix.fromMap(items);
+        InteractionMatrix again = InteractionMatrix.fromMap(new TreeMap<>(items));
+
+        TrimStats stats = matrix.downsample(10, 0);
+        again.downsample(10, 0);
+
+        assertThat(stats.usersCapped()).isEqualTo(1);
+        assertThat(stats.entriesBefore()).isEqualTo(100);
+        assertThat(stats.entriesAfter()).isEqualTo(60);
+        assertThat(stats.cooccurrencesAfter()).isLessThan(stats.cooccurrencesBefore());
+        long botEntries = matrix.getMatrix().values().stream().filter(row -> row.containsKey(1)).count();
+        assertThat(botEntries).isEqualTo(10);
+        assertThat(again.getMatrix()).isEqualTo(matrix.getMatrix());
+        assertThat(matrix.itemCount()).isEqualTo(50); // every item keeps its regular user
+    }
+
+    @Test
+    void downsample_shouldCapPopularItemsAndDropEmptyRows() {
+        Map<Integer, Map<Integer, Double>> items = new HashMap<>();
+        for (int user = 1; user <= 30; user++) {
+            items.computeIfAbsent(10, k -> new HashMap<>()).put(user, 1.0);
+        }
+        items.put(20, new HashMap<>(Map.of(1, 1.0, 2, 1.0)));
+        InteractionMatrix matrix = InteractionMatrix.fromMap(items);
+
+        TrimStats stats = matrix.downsample(0, 5);
+
+        assertThat(stats.itemsCapped()).isEqualTo(1);
+        assertThat(matrix.getMatrix().get(10)).hasSize(5);
+        assertThat(matrix.getMatrix().get(20)).hasSize(2);
+        assertThat(matrix.entryCount()).isEqualTo(7);
+        assertThat(matrix.userCount()).isLessThanOrEqualTo(7);
+        assertThat(matrix.totalInteractions()).isEqualTo(32);
+    }
+
+    @Test
+    void snapshot_shouldRoundTripWithAndWithoutCompression(@TempDir Path dir) {
+        Map<Integer, Map<Integer, Double>> items = new HashMap<>();
+        for (int item = -5; item < 200; item++) {
+            for (int user = -3; user < 60; user += 1 + Math.floorMod(item, 4)) {
+                items.computeIfAbsent(item, k -> new HashMap<>()).put(user, 1.0 + Math.floorMod(item + user, 5));
+            }
+        }
+        items.get(7).put(1_000_000, 0.25); // fractional and sparse entries take the slow path
+        items.get(8).put(-2_000_000, 3.0e9);
+        InteractionMatrix matrix = InteractionMatrix.fromMap(items);
+
+        for (boolean compress : new boolean[] {false, true}) {
+            Path file = dir.resolve("matrix-" + compress + ".bin");
+            matrix.saveSnapshot(file, compress);
+            InteractionMatrix restored = InteractionMatrix.fromSnapshot(file);
+
+            assertThat(restored.getMatrix()).isEqualTo(items);
+            assertThat(restored.totalInteractions()).isEqualTo(matrix.totalInteractions());
+            assertThat(restored.watermark()).isNull();
+            assertThat(restored.norm(restored.itemIndex(7))).isEqualTo(matrix.norm(matrix.itemIndex(7)));
+        }
+        assertThat(dir.resolve("matrix-true.bin").toFile().length())
+                .isLessThan(dir.resolve("matrix-false.bin").toFile().length());
+    }
+
+    @Test
+    void snapshot_shouldResumeLoadingAfterItsWatermark(@TempDir Path dir) {
+        List<Interaction> table = new ArrayList<>(List.of(
+                new Interaction(1, 10, 4.0),
+                new Interaction(2, 10, 5.0),
+                new Interaction(1, 20, 3.0)));
+        List<String> requested = new ArrayList<>();
+        CursorInteractionLoader loader = (cursor, limit) -> {
+            requested.add(cursor);
+            int from = cursor == null ? 0 : Integer.parseInt(cursor);
+            int to = Math.min(table.size(), from + limit);
+            return InteractionBatch.of(table.subList(from, to), Integer.toString(to));
+        };
+        InteractionMatrix first = new InteractionMatrix();
+        first.loadFrom(loader, 10);
+        first.saveSnapshot(dir.resolve("matrix.bin"), true);
+
+        table.add(new Interaction(3, 30, 2.0));
+        requested.clear();
+        InteractionMatrix resumed = InteractionMatrix.fromSnapshot(dir.resolve("matrix.bin"));
+        resumed.loadFrom(loader, 10);
+
+        assertThat(requested).containsExactly("3", "4"); // the new row, then the empty page that ends the load
+        assertThat(resumed.watermark()).isEqualTo("4");
+        assertThat(resumed.totalInteractions()).isEqualTo(4);
+        assertThat(resumed.getMatrix()).containsOnlyKeys(10, 20, 30);
+        assertThat(resumed.getMatrix().get(10)).containsEntry(1, 4.0).containsEntry(2, 5.0);
+    }
+
+    @Test
+    void fromSnapshot_withForeignFile_shouldFail(@TempDir Path dir) throws IOException {
+        Path file = Files.write(dir.resolve("matrix.bin"), new byte[32]);
+
+        assertThatThrownBy(() -> InteractionMatrix.fromSnapshot(file))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("snapshot");
+    }
 }
@@ -0,0 +1,390 @@
+package io.github.thacbao.itemcf.core;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import io.github.thacbao.itemcf.similarity.AdjustedCosineSimilarityStrategy;
+import io.github.thacbao.itemcf.similarity.ConditionalProbabilityStrategy;
+import io.github.thacbao.itemcf.similarity.CooccurrenceSimilarityStrategy;
+import io.github.thacbao.itemcf.similarity.CosineSimilarityStrategy;
+import io.github.thacbao.itemcf.similarity.JaccardSimilarityStrategy;
+import io.github.thacbao.itemcf.similarity.PearsonCorrelationStrategy;
+import io.github.thacbao.itemcf.similarity.SimilarityStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
+
+class SimilarityCalculatorTest {
+
+    @Test
+    void invertedIndex_shouldMatchAllPairsForCosine() {
+        Map<Integer, Map<Integer, Double>> matrix = randomMatrix(42, 60, 40, 300);
+
+        List<SimilarityResult> expected = calculator(CosineSimilarityStrategy.INSTANCE, ComputationMode.ALL_PAIRS)
+                .compute(matrix);
+        List<SimilarityResult> actual = calculator(CosineSimilarityStrategy.INSTANCE, ComputationMode.INVERTED_INDEX)
+                .compute(matrix);
+
+        assertSameResults(actual, expected);
+    }
+
+    @Test
+    void invertedIndex_shouldMatchAllPairsForCustomStrategy() {
+        // Fraction of the smaller item's users that are shared
+        SimilarityStrategy overlap = (v1, v2) -> {
+            long common = v1.keySet().stream().filter(v2::containsKey).count();
+            return (double) common / Math.min(v1.size(), v2.size());
+        };
+        Map<Integer, Map<Integer, Double>> matrix = randomMatrix(7, 50, 30, 250);
+
+        assertSameResults(
+                calculator(overlap, ComputationMode.INVERTED_INDEX).compute(matrix),
+                calculator(overlap, ComputationMode.ALL_PAIRS).compute(matrix));
+    }
+
+    @Test
+    void customStrategy_shouldReceiveOriginalUserIds() {
+        // Only users 1000 and 2000 count, so the strategy must see real IDs, not dense indices
+        Map<Integer, Double> weights = Map.of(1000, 1.0, 2000, 1.0);
+        SimilarityStrategy vip = (v1, v2) -> v1.keySet().stream()
+                .filter(v2::containsKey)
+                .mapToDouble(user -> weights.getOrDefault(user, 0.0))
+                .sum() / 2;
+        Map<Integer, Map<Integer, Double>> matrix = Map.of(
+                10, Map.of(1000, 1.0, 2000, 1.0, 7, 1.0),
+                20, Map.of(1000, 1.0, 2000, 1.0),
+                30, Map.of(7, 1.0, 8, 1.0));
+
+        for (ComputationMode mode : List.of(ComputationMode.ALL_PAIRS, ComputationMode.INVERTED_INDEX)) {
+            List<SimilarityResult> results = new SimilarityCalculator(vip, 0.5, 1, mode).compute(matrix);
+
+            assertThat(results).extracting(SimilarityResult::itemId1, SimilarityResult::itemId2)
+                    .containsExactly(tuple(10, 20), tuple(20, 10));
+            assertThat(results).allSatisfy(r -> assertThat(r.score()).isEqualTo(1.0));
+        }
+    }
+
+    @Test
+    void invertedIndex_shouldSkipItemsWithoutCommonUsers() {
+        Map<Integer, Map<Integer, Double>> matrix = Map.of(
+                10, Map.of(1, 5.0, 2, 4.0),
+                20, Map.of(1, 5.0, 2, 4.0),
+                30, Map.of(3, 5.0, 4, 4.0));
+
+        List<SimilarityResult> results = calculator(CosineSimilarityStrategy.INSTANCE, ComputationMode.INVERTED_INDEX)
+                .compute(matrix);
+
+        assertThat(results).hasSize(2);
+        assertThat(results).allSatisfy(r -> {
+            assertThat(r.itemId1()).isNotEqualTo(30);
+            assertThat(r.itemId2()).isNotEqualTo(30);
+            assertThat(r.score()).isCloseTo(1.0, within(1e-9));
+        });
+    }
+
+    @Test
+    void parallelCompute_shouldBeIdenticalToSequential() {
+        InteractionMatrix matrix = InteractionMatrix.fromMap(randomMatrix(3, 400, 120, 4000));
+
+        for (ComputationMode mode : ComputationMode.values()) {
+            List<SimilarityResult> sequential = new SimilarityCalculator(
+                    CosineSimilarityStrategy.INSTANCE, 0.1, 2, 5, mode, 1).compute(matrix);
+            List<SimilarityResult> parallel = new SimilarityCalculator(
+                    CosineSimilarityStrategy.INSTANCE, 0.1, 2, 5, mode, 4).compute(matrix);
+
+            assertThat(parallel).isEqualTo(sequential);
+        }
+    }
+
+    @Test
+    void parallelCompute_shouldRunOnTheGivenPoolAndLeaveItOpen() {
+        InteractionMatrix matrix = InteractionMatrix.fromMap(randomMatrix(3, 400, 120, 4000));
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (ComputationMode mode : ComputationMode.values()) {
+                SimilarityCalculator calculator = new SimilarityCalculator(CosineSimilarityStrategy.INSTANCE,
+                        0.1, 2, 5, mode, 3, SimilarityCalculator.DEFAULT_LSH_BANDS,
+                        SimilarityCalculator.DEFAULT_LSH_ROWS, false, pool);
+                List<SimilarityResult> first = calculator.compute(matrix);
+
+                assertThat(calculator.compute(matrix)).isEqualTo(first);
+                assertThat(first).isEqualTo(new SimilarityCalculator(
+                        CosineSimilarityStrategy.INSTANCE, 0.1, 2, 5, mode, 1).compute(matrix));
+            }
+            assertThat(pool.isShutdown()).isFalse();
+            assertThat(pool.getStealCount() + pool.getPoolSize()).isGreaterThan(0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void streamingCompute_whenSinkFails_shouldStopEveryBlockBeforeThrowing() throws Exception {
+        InteractionMatrix matrix = InteractionMatrix.fromMap(randomMatrix(3, 400, 120, 4000));
+        AtomicBoolean returned = new AtomicBoolean();
+        AtomicLong lateCalls = new AtomicLong();
+        // The first row fails, while the blocks forked to its right are still running
+        int firstItem = matrix.itemId(0);
+        SimilaritySink sink = neighbours -> {
+            if (returned.get()) {
+                lateCalls.incrementAndGet();
+            }
+            if (neighbours.get(0).itemId1() == firstItem) {
+                throw new IllegalStateException("store unavailable");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertThatThrownBy(() -> new SimilarityCalculator(countingOverlap(new AtomicLong(), false),
+                0.1, 1, 5, ComputationMode.INVERTED_INDEX, 4).compute(matrix, sink))
+                .hasMessageContaining("store unavailable");
+        returned.set(true);
+        Thread.sleep(100);
+
+        assertThat(lateCalls.get()).isZero();
+    }
+
+    @Test
+    void cosine_forIdenticalRows_shouldNotExceedOne() {
+        // 3 / (sqrt(3) * sqrt(3)) evaluates to 1.0000000000000002
+        Map<Integer, Double> row = Map.of(1, 1.0, 2, 1.0, 3, 1.0);
+        Map<Integer, Map<Integer, Double>> matrix = Map.of(100, row, 200, row);
+
+        for (ComputationMode mode : ComputationMode.values()) {
+            List<SimilarityResult> results = calculator(CosineSimilarityStrategy.INSTANCE, mode).compute(matrix);
+
+            assertThat(results).extracting(SimilarityResult::itemId1, SimilarityResult::itemId2,
+                    SimilarityResult::score).containsExactlyInAnyOrder(tuple(100, 200, 1.0), tuple(200, 100, 1.0));
+        }
+    }
+
+    @Test
+    void symmetricStrategy_shouldScorePairsOnceWithTheSameResults() {
+        InteractionMatrix matrix = InteractionMatrix.fromMap(randomMatrix(9, 120, 40, 1200));
+
+        for (ComputationMode mode : List.of(ComputationMode.ALL_PAIRS, ComputationMode.INVERTED_INDEX)) {
+            AtomicLong fullRowCalls = new AtomicLong();
+            AtomicLong triangularCalls = new AtomicLong();
+            List<SimilarityResult> fullRows = new SimilarityCalculator(
+                    countingOverlap(fullRowCalls, false), 0.1, 1, 5, mode, 1).compute(matrix);
+            List<SimilarityResult> triangular = new SimilarityCalculator(
+                    countingOverlap(triangularCalls, true), 0.1, 1, 5, mode, 4).compute(matrix);
+
+            assertThat(triangular).isNotEmpty().isEqualTo(fullRows);
+            assertThat(triangularCalls.get() * 2).isEqualTo(fullRowCalls.get());
+        }
+    }
+
+    @Test
+    void compute_shouldKeepOnlyTopKNeighboursPerItem() {
+        Map<Integer, Map<Integer, Double>> matrix = randomMatrix(11, 80, 30, 900);
+        List<SimilarityResult> all = calculator(CosineSimilarityStrategy.INSTANCE, ComputationMode.INVERTED_INDEX)
+                .compute(matrix);
+        List<SimilarityResult> top3 = new SimilarityCalculator(
+                CosineSimilarityStrategy.INSTANCE, 0.1, 2, 3, ComputationMode.INVERTED_INDEX, 1).compute(matrix);
+
+        Map<Integer, List<SimilarityResult>> allByItem = all.stream()
+                .collect(Collectors.groupingBy(SimilarityResult::itemId1));
+        Map<Integer, List<SimilarityResult>> topByItem = top3.stream()
+                .collect(Collectors.groupingBy(SimilarityResult::itemId1));
+
+        assertThat(topByItem.keySet()).isEqualTo(allByItem.keySet());
+        allByItem.forEach((itemId, neighbours) -> {
+            // Unbounded results are already sorted best first within each item
+            List<SimilarityResult> expected = neighbours.subList(0, Math.min(3, neighbours.size()));
+            assertThat(topByItem.get(itemId)).isEqualTo(expected);
+        });
+    }
+
+    @Test
+    void streamingCompute_shouldDeliverSameNeighboursAsListCompute() {
+        InteractionMatrix matrix = InteractionMatrix.fromMap(randomMatrix(5, 200, 80, 2000));
+        SimilarityCalculator calculator = new SimilarityCalculator(
+                CosineSimilarityStrategy.INSTANCE, 0.1, 2, 10, ComputationMode.INVERTED_INDEX, 3);
+
+        List<SimilarityResult> streamed = new CopyOnWriteArrayList<>();
+        calculator.compute(matrix, neighbours -> {
+            assertThat(neighbours).extracting(SimilarityResult::itemId1).containsOnly(neighbours.get(0).itemId1());
+            streamed.addAll(neighbours);
+        });
+
+        assertThat(streamed).containsExactlyInAnyOrderElementsOf(calculator.compute(matrix));
+    }
+
+    @Test
+    void cooccurrenceStrategies_shouldMatchVectorComputationInBothModes() {
+        Map<Integer, Map<Integer, Double>> matrix = randomMatrix(13, 60, 40, 500);
+
+        for (CooccurrenceSimilarityStrategy strategy : List.of(JaccardSimilarityStrategy.INSTANCE,
+                PearsonCorrelationStrategy.INSTANCE, new ConditionalProbabilityStrategy(0.5))) {
+            // A plain lambda hides the SPI and forces the per-pair vector path
+            SimilarityStrategy viaVectors = strategy::compute;
+            List<SimilarityResult> expected = calculator(viaVectors, ComputationMode.ALL_PAIRS).compute(matrix);
+
+            assertSameResults(calculator(strategy, ComputationMode.INVERTED_INDEX).compute(matrix), expected);
+            assertSameResults(calculator(strategy, ComputationMode.ALL_PAIRS).compute(matrix), expected);
+        }
+    }
+
+    @Test
+    void adjustedCosine_shouldCenterOnUserMeans() {
+        Map<Integer, Map<Integer, Double>> matrix = randomMatrix(17, 40, 30, 400);
+
+        // Brute force: subtract every user's mean, then cosine over common users
+        Map<Integer, Double> userSums = new HashMap<>();
+        Map<Integer, Integer> userCounts = new HashMap<>();
+        matrix.values().forEach(row -> row.forEach((user, score) -> {
+            userSums.merge(user, score, Double::sum);
+            userCounts.merge(user, 1, Integer::sum);
+        }));
+        List<SimilarityResult> expected = new ArrayList<>();
+        for (int item1 : new TreeSet<>(matrix.keySet())) {
+            List<SimilarityResult> row = new ArrayList<>();
+            for (int item2 : matrix.keySet()) {
+                if (item1 == item2) {
+                    continue;
+                }
+                int common = 0;
+                double dot = 0, squares1 = 0, squares2 = 0;
+                for (Map.Entry<Integer, Double> e : matrix.get(item1).entrySet()) {
+                    Double y = matrix.get(item2).get(e.getKey());
+                    if (y != null) {
+                        double mean = userSums.get(e.getKey()) / userCounts.get(e.getKey());
+                        double x = e.getValue() - mean;
+                        common++;
+                        dot += x * (y - mean);
+                        squares1 += x * x;
+                        squares2 += (y - mean) * (y - mean);
+                    }
+                }
+                double sim = squares1 == 0 || squares2 == 0 ? 0.0 : Math.min(1.0, dot / Math.sqrt(squares1 * squares2));
+                if (common >= 2 && sim >= 0.1) {
+                    row.add(new SimilarityResult(item1, item2, sim));
+                }
+            }
+            row.sort(Comparator.comparingDouble(SimilarityResult::score).reversed()
+                    .thenComparingInt(SimilarityResult::itemId2));
+            expected.addAll(row);
+        }
+
+        assertThat(expected).isNotEmpty();
+        for (ComputationMode mode : new ComputationMode[]{ComputationMode.INVERTED_INDEX, ComputationMode.ALL_PAIRS}) {
+            assertSameResults(new SimilarityCalculator(AdjustedCosineSimilarityStrategy.INSTANCE, 0.1, 2,
+                    Integer.MAX_VALUE, mode, 1, SimilarityCalculator.DEFAULT_LSH_BANDS,
+                    SimilarityCalculator.DEFAULT_LSH_ROWS, true, null).compute(matrix), expected);
+        }
+    }
+
+    @Test
+    void approximate_shouldOnlyReturnExactPairsWithExactScores() {
+        InteractionMatrix matrix = InteractionMatrix.fromMap(randomMatrix(21, 80, 50, 900));
+        Map<String, Double> exact = calculator(CosineSimilarityStrategy.INSTANCE, ComputationMode.INVERTED_INDEX)
+                .compute(matrix).stream()
+                .collect(Collectors.toMap(r -> r.itemId1() + ":" + r.itemId2(), SimilarityResult::score));
+
+        List<SimilarityResult> approximate = new SimilarityCalculator(CosineSimilarityStrategy.INSTANCE, 0.1, 2,
+                Integer.MAX_VALUE, ComputationMode.APPROXIMATE, 1, 4, 3).compute(matrix);
+
+        assertThat(approximate).isNotEmpty().hasSizeLessThan(exact.size());
+        for (SimilarityResult result : approximate) {
+            assertThat(exact.get(result.itemId1() + ":" + result.itemId2())).isEqualTo(result.score());
+        }
+    }
+
+    @Test
+    void approximate_withManyBands_shouldReachFullRecall() {
+        InteractionMatrix matrix = InteractionMatrix.fromMap(randomMatrix(23, 80, 50, 900));
+        SimilarityCalculator exact = new SimilarityCalculator(CosineSimilarityStrategy.INSTANCE, 0.1, 2,
+                5, ComputationMode.INVERTED_INDEX, 1);
+        SimilarityCalculator approximate = new SimilarityCalculator(CosineSimilarityStrategy.INSTANCE, 0.1, 2,
+                5, ComputationMode.APPROXIMATE, 2, 256, 1);
+
+        RecallReport report = RecallReport.evaluate(matrix, exact, approximate);
+
+        assertThat(report.exactPairs()).isPositive();
+        assertThat(report.recall()).isEqualTo(1.0);
+        assertThat(report.meanItemRecall()).isEqualTo(1.0);
+        assertThat(report.approximatePairs()).isEqualTo(report.exactPairs());
+    }
+
+    @Test
+    void partition_shouldBalanceTriangularCosts() {
+        long[] costs = new long[100];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = costs.length - i;
+        }
+
+        int[] bounds = SimilarityCalculator.partition(costs, 4);
+
+        assertThat(bounds).hasSize(5).startsWith(0).endsWith(100);
+        // Early rows are expensive, so the first block covers far fewer rows
+        assertThat(bounds[1] - bounds[0]).isLessThan(bounds[4] - bounds[3]);
+        for (int k = 0; k < 4; k++) {
+            long blockCost = 0;
+            for (int i = bounds[k]; i < bounds[k + 1]; i++) {
+                blockCost += costs[i];
+            }
+            assertThat(blockCost).isBetween(1100L, 1450L); // total 5050 / 4 ≈ 1262
+        }
+    }
+
+    /** Fraction of the smaller item's users that are shared, counting its calls. */
+    private static SimilarityStrategy countingOverlap(AtomicLong calls, boolean symmetric) {
+        return new SimilarityStrategy() {
+            @Override
+            public double compute(Map<Integer, Double> v1, Map<Integer, Double> v2) {
+                calls.incrementAndGet();
+                long common = v1.keySet().stream().filter(v2::containsKey).count();
+                return (double) common / Math.min(v1.size(), v2.size());
+            }
+
+            @Override
+            public boolean isSymmetric() {
+                return symmetric;
+            }
+        };
+    }
+
+    private static SimilarityCalculator calculator(SimilarityStrategy strategy, ComputationMode mode) {
+        return new SimilarityCalculator(strategy, 0.1, 2, mode);
+    }
+
+    private static void assertSameResults(List<SimilarityResult> actual, List<SimilarityResult> expected) {
+        assertThat(actual).hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).itemId1()).isEqualTo(expected.get(i).itemId1());
+            assertThat(actual.get(i).itemId2()).isEqualTo(expected.get(i).itemId2());
+            assertThat(actual.get(i).score()).isCloseTo(expected.get(i).score(), within(1e-12));
+        }
+    }
+
+    static Map<Integer, Map<Integer, Double>> randomMatrix(long seed, int items, int users, int interactions) {
+        Random random = new Random(seed);
+        Map<Integer, Map<Integer, Double>> matrix = new HashMap<>();
+        for (int k = 0; k < interactions; k++) {
+            int itemId = 100 + random.nextInt(items);
+            int userId = 1 + random.nextInt(users);
+            double score = 1 + random.nextInt(5);
+            matrix.computeIfAbsent(itemId, i -> new HashMap<>()).merge(userId, score, Double::max);
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.thacbao.itemcf.port.impl;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactSimilarityIndexTest {
+
+    @Test
+    void findSimilar_shouldReturnPreSortedSlice() {
+        CompactSimilarityIndex index = CompactSimilarityIndex.of(List.of(
+                List.of(new SimilarityResult(7, 3, 0.25), new SimilarityResult(1, 9, 0.5)),
+                List.of(new SimilarityResult(7, 2, 0.75), new SimilarityResult(7, -4, 0.25),
+                        new SimilarityResult(7, 5, 1.0))));
+
+        assertThat(index.findSimilar(7, 10)).extracting(SimilarityResult::itemId2).containsExactly(5, 2, -4, 3);
+        assertThat(index.findSimilar(7, 2)).extracting(SimilarityResult::score).containsExactly(1.0, 0.75);
+        assertThat(index.findSimilar(1, Integer.MAX_VALUE)).containsExactly(new SimilarityResult(1, 9, 0.5));
+        assertThat(index.findSimilar(8, 10)).isEmpty();
+        assertThat(index.itemCount()).isEqualTo(2);
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+    @Test
+    void of_withNoResults_shouldBeEmpty() {
+        assertThat(CompactSimilarityIndex.of(List.of(List.of()))).isSameAs(CompactSimilarityIndex.EMPTY);
+        assertThat(CompactSimilarityIndex.EMPTY.findSimilar(1, 10)).isEmpty();
+    }
+
+    @Test
+    void of_withMorePairsThanAnArrayHolds_shouldFailBeforeCopying() {
+        // Two batches of 2^30 sum to 2^31, which overflows an int count
+        List<SimilarityResult> half = Collections.nCopies(1 << 30, new SimilarityResult(1, 2, 0.5));
+
+        assertThatThrownBy(() -> CompactSimilarityIndex.of(List.of(half, half)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("2147483648");
+        assertThatThrownBy(() -> CompactSimilarityIndex.builder().add(Collections.nCopies(Integer.MAX_VALUE,
+                new SimilarityResult(1, 2, 0.5)))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void builder_withBatchesFromSeveralThreads_shouldMatchOf() {
+        List<List<SimilarityResult>> batches = new ArrayList<>();
+        for (int b = 0; b < 50; b++) {
+            List<SimilarityResult> batch = new ArrayList<>();
+            for (int k = 0; k < 40; k++) {
+                batch.add(new SimilarityResult(k % 7, 10 + b * 40 + k, (k % 5 + 1) / 5.0));
+            }
+            batches.add(batch);
+        }
+        CompactSimilarityIndex.Builder builder = CompactSimilarityIndex.builder();
+        IntStream.range(0, batches.size()).parallel().forEach(b -> builder.add(batches.get(b)));
+
+        CompactSimilarityIndex built = builder.build();
+        CompactSimilarityIndex expected = CompactSimilarityIndex.of(batches);
+        assertThat(built.size()).isEqualTo(2000);
+        for (int itemId = 0; itemId < 7; itemId++) {
+            assertThat(built.findSimilar(itemId, Integer.MAX_VALUE))
+                    .isEqualTo(expected.findSimilar(itemId, Integer.MAX_VALUE));
+        }
+        assertThat(builder.build()).isSameAs(CompactSimilarityIndex.EMPTY);
+    }
+}
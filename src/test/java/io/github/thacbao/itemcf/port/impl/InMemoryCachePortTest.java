@@ -0,0 +1,158 @@
+package io.github.thacbao.itemcf.port.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryCachePortTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    @Test
+    void get_shouldHonourPerEntryTtlAndCountHitsAndMisses() {
+        AtomicLong now = new AtomicLong();
+        InMemoryCachePort cache = InMemoryCachePort.builder().ticker(now::get).build();
+        cache.put("short", "a", Duration.ofSeconds(1));
+        cache.put("long", "b", Duration.ofHours(1));
+        cache.put("never", "c", Duration.ZERO);
+
+        assertThat(cache.get("short")).contains("a");
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+
+        assertThat(cache.get("short")).isEmpty();
+        assertThat(cache.get("long")).contains("b");
+        assertThat(cache.get("never")).isEmpty();
+        assertThat(cache.size()).isEqualTo(1);
+        CacheStats stats = cache.stats();
+        assertThat(stats.hitCount()).isEqualTo(2);
+        assertThat(stats.missCount()).isEqualTo(2);
+        assertThat(stats.expirationCount()).isEqualTo(1);
+        assertThat(stats.hitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void evictByPattern_shouldRemoveOnlyMatchingKeys() {
+        InMemoryCachePort cache = InMemoryCachePort.builder().build();
+        for (String key : List.of("itemcf:similar:1", "itemcf:similar:12", "itemcf:similar:2",
+                "itemcf:user:1", "itemcf:user:2", "itemcf:user:3", "itemcf:users", "other")) {
+            cache.put(key, key, TTL);
+        }
+
+        cache.evictByPattern("itemcf:similar:*");
+        assertThat(cache.get("itemcf:similar:1")).isEmpty();
+        assertThat(cache.get("itemcf:similar:12")).isEmpty();
+        assertThat(cache.size()).isEqualTo(5);
+
+        cache.evictByPattern("itemcf:user:[12]");
+        assertThat(cache.get("itemcf:user:1")).isEmpty();
+        assertThat(cache.get("itemcf:user:3")).contains("itemcf:user:3");
+
+        cache.evictByPattern("itemcf:user?");
+        assertThat(cache.get("itemcf:users")).isEmpty();
+
+        cache.evictByPattern("other");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.weightedSize()).isEqualTo(1);
+    }
+
+    @Test
+    void compileGlob_shouldFollowRedisSemantics() {
+        assertThat(InMemoryCachePort.compileGlob("h?llo").matcher("hallo").matches()).isTrue();
+        assertThat(InMemoryCachePort.compileGlob("h[^e]llo").matcher("hello").matches()).isFalse();
+        assertThat(InMemoryCachePort.compileGlob("h[a-c]llo").matcher("hbllo").matches()).isTrue();
+        assertThat(InMemoryCachePort.compileGlob("a.b\\*").matcher("a.b*").matches()).isTrue();
+        assertThat(InMemoryCachePort.compileGlob("a.b\\*").matcher("axb*").matches()).isFalse();
+        assertThat(InMemoryCachePort.literalPrefix("itemcf:user:1?")).isEqualTo("itemcf:user:1");
+    }
+
+    @Test
+    void put_shouldKeepFrequentlyReadEntriesWhenFloodedWithOneOffKeys() {
+        InMemoryCachePort cache = InMemoryCachePort.builder().maximumWeight(100).build();
+        // 80 hot keys read in turn, each followed by a one-off key: 160 distinct keys
+        // between two reads of the same hot key, so an LRU cache of 100 would never hit
+        for (int k = 0; k < 20_000; k++) {
+            String hot = "hot:" + k % 80;
+            if (cache.get(hot).isEmpty()) {
+                cache.put(hot, k, TTL);
+            }
+            cache.get("scan:" + k);
+            cache.put("scan:" + k, k, TTL);
+        }
+
+        int hotLeft = 0;
+        for (int k = 0; k < 80; k++) {
+            if (cache.get("hot:" + k).isPresent()) {
+                hotLeft++;
+            }
+        }
+        assertThat(hotLeft).isGreaterThanOrEqualTo(70);
+        assertThat(cache.weightedSize()).isLessThanOrEqualTo(100);
+        assertThat(cache.stats().rejectionCount()).isGreaterThan(0);
+        assertThat(cache.stats().hitRate()).isGreaterThan(0.4);
+    }
+
+    @Test
+    void put_forResidentKeyOfFullCache_shouldReplaceTheValueInPlace() {
+        InMemoryCachePort cache = InMemoryCachePort.builder()
+                .maximumWeight(100)
+                .weigher(InMemoryCachePort::weighBySize)
+                .build();
+        for (int k = 0; k < 100; k++) {
+            cache.put("hot:" + k, List.of(k), TTL);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int k = 0; k < 100; k++) {
+                cache.get("hot:" + k);
+            }
+        }
+
+        // A grown entry that went through admission again would lose to its equally hot peers
+        cache.put("hot:3", List.of(3, 3), TTL);
+        cache.put("hot:7", List.of(7, 7), TTL);
+
+        assertThat(cache.get("hot:3")).contains(List.of(3, 3));
+        assertThat(cache.get("hot:7")).contains(List.of(7, 7));
+        assertThat(cache.weightedSize()).isEqualTo(100);
+        assertThat(cache.stats().rejectionCount()).isZero();
+    }
+
+    @Test
+    void put_forResidentKey_shouldTrackItsNewWeight() {
+        InMemoryCachePort cache = InMemoryCachePort.builder()
+                .maximumWeight(20)
+                .weigher(InMemoryCachePort::weighBySize)
+                .build();
+        cache.put("a", List.of(1, 2, 3), TTL);
+        cache.put("b", List.of(1, 2, 3), TTL);
+
+        cache.put("a", List.of(1), TTL);
+        assertThat(cache.weightedSize()).isEqualTo(4);
+        cache.put("a", Collections.nCopies(17, 0), TTL);
+        assertThat(cache.weightedSize()).isEqualTo(20);
+        cache.put("a", List.of(1, 2), Duration.ZERO);
+        assertThat(cache.get("a")).isEmpty();
+        assertThat(cache.weightedSize()).isEqualTo(3);
+    }
+
+    @Test
+    void weighBySize_shouldBoundTheNumberOfCachedElements() {
+        InMemoryCachePort cache = InMemoryCachePort.builder()
+                .maximumWeight(50)
+                .weigher(InMemoryCachePort::weighBySize)
+                .build();
+
+        for (int k = 0; k < 20; k++) {
+            cache.put("list:" + k, List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), TTL);
+        }
+        cache.put("too-big", Collections.nCopies(51, 0), TTL);
+
+        assertThat(cache.weightedSize()).isLessThanOrEqualTo(50);
+        assertThat(cache.size()).isLessThanOrEqualTo(5);
+        assertThat(cache.get("too-big")).isEmpty();
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.thacbao.itemcf.port.impl;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import io.github.thacbao.itemcf.port.SimilarityStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemorySimilarityStoreTest {
+
+    @Test
+    void generation_shouldStayInvisibleUntilCommitted() {
+        InMemorySimilarityStore store = new InMemorySimilarityStore();
+        store.saveAll(List.of(new SimilarityResult(1, 2, 0.5)));
+
+        SimilarityStore.Generation generation = store.beginGeneration();
+        generation.saveAll(List.of(new SimilarityResult(1, 3, 0.9)));
+
+        assertThat(store.findSimilar(1, 10)).extracting(SimilarityResult::itemId2).containsExactly(2);
+
+        generation.commit();
+
+        assertThat(store.findSimilar(1, 10)).extracting(SimilarityResult::itemId2).containsExactly(3);
+    }
+
+    @Test
+    void abortedGeneration_shouldLeaveCurrentDataInPlace() {
+        InMemorySimilarityStore store = new InMemorySimilarityStore();
+        store.saveAll(List.of(new SimilarityResult(1, 2, 0.5)));
+
+        SimilarityStore.Generation generation = store.beginGeneration();
+        generation.saveAll(List.of(new SimilarityResult(1, 3, 0.9)));
+        generation.abort();
+
+        assertThat(store.findSimilar(1, 10)).extracting(SimilarityResult::itemId2).containsExactly(2);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void replaceSimilar_shouldShadowCommittedNeighboursUntilNextCommit() {
+        InMemorySimilarityStore store = new InMemorySimilarityStore();
+        SimilarityStore.Generation generation = store.beginGeneration();
+        generation.saveAll(List.of(new SimilarityResult(1, 2, 0.5), new SimilarityResult(1, 3, 0.9),
+                new SimilarityResult(2, 1, 0.5)));
+        generation.commit();
+
+        store.replaceSimilar(1, List.of(new SimilarityResult(1, 4, 0.3), new SimilarityResult(1, 5, 0.6)));
+        store.replaceSimilar(2, List.of());
+
+        assertThat(store.findSimilar(1, 10)).extracting(SimilarityResult::itemId2).containsExactly(5, 4);
+        assertThat(store.findSimilar(2, 10)).isEmpty();
+        assertThat(store.size()).isEqualTo(2);
+
+        SimilarityStore.Generation next = store.beginGeneration();
+        next.saveAll(List.of(new SimilarityResult(2, 1, 0.5)));
+        next.commit();
+
+        assertThat(store.findSimilar(1, 10)).isEmpty();
+        assertThat(store.findSimilar(2, 10)).extracting(SimilarityResult::itemId2).containsExactly(1);
+    }
+
+    @Test
+    void bulkFindSimilar_shouldMatchSingleLookupsAcrossIndexAndOverlay() {
+        InMemorySimilarityStore store = new InMemorySimilarityStore();
+        SimilarityStore.Generation generation = store.beginGeneration();
+        generation.saveAll(List.of(
+                new SimilarityResult(1, 2, 0.9),
+                new SimilarityResult(1, 3, 0.4),
+                new SimilarityResult(2, 1, 0.9)));
+        generation.commit();
+        store.replaceSimilar(2, List.of(new SimilarityResult(2, 4, 0.7), new SimilarityResult(2, 5, 0.8)));
+
+        Map<Integer, List<SimilarityResult>> bulk = store.findSimilar(List.of(1, 2, 99), 1);
+
+        assertThat(bulk).containsOnlyKeys(1, 2);
+        assertThat(bulk.get(1)).isEqualTo(store.findSimilar(1, 1));
+        assertThat(bulk.get(2)).isEqualTo(store.findSimilar(2, 1));
+        assertThat(bulk.get(2)).extracting(SimilarityResult::itemId2).containsExactly(5);
+        assertThat(store.findSimilar(List.of(1, 2), 0)).isEmpty();
+    }
+}
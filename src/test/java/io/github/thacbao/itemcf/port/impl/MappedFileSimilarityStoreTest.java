@@ -0,0 +1,112 @@
+package io.github.thacbao.itemcf.port.impl;
+
+import io.github.thacbao.itemcf.model.SimilarityResult;
+import io.github.thacbao.itemcf.port.SimilarityStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class MappedFileSimilarityStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void committedGeneration_shouldBeServedByANewStoreOnTheSameFile() {
+        Path file = dir.resolve("similarities.icf");
+        MappedFileSimilarityStore writer = new MappedFileSimilarityStore(file);
+        SimilarityStore.Generation generation = writer.beginGeneration();
+        generation.saveAll(List.of(new SimilarityResult(10, 20, 0.4), new SimilarityResult(10, 30, 0.9)));
+        generation.saveAll(List.of(new SimilarityResult(20, 10, 0.4), new SimilarityResult(10, 40, 0.123456)));
+        generation.commit();
+
+        MappedFileSimilarityStore reader = new MappedFileSimilarityStore(file);
+
+        List<SimilarityResult> similar = reader.findSimilar(10, 2);
+        assertThat(similar).extracting(SimilarityResult::itemId2).containsExactly(30, 20);
+        assertThat(similar.get(0).score()).isCloseTo(0.9, within(1e-5));
+        assertThat(reader.findSimilar(10, 10).get(2).score()).isCloseTo(0.123456, within(1e-5));
+        assertThat(reader.findSimilar(20, 10)).extracting(SimilarityResult::itemId2).containsExactly(10);
+        assertThat(reader.findSimilar(99, 10)).isEmpty();
+        assertThat(reader.size()).isEqualTo(4);
+        assertThat(Files.exists(dir.resolve("similarities.icf.tmp"))).isFalse();
+    }
+
+    @Test
+    void abortedGeneration_shouldKeepFileAndMapping() {
+        Path file = dir.resolve("similarities.icf");
+        MappedFileSimilarityStore store = new MappedFileSimilarityStore(file);
+        store.saveAll(List.of(new SimilarityResult(1, 2, 0.5)));
+        store.saveAll(List.of(new SimilarityResult(1, 3, 0.7)));
+
+        SimilarityStore.Generation generation = store.beginGeneration();
+        generation.saveAll(List.of(new SimilarityResult(1, 4, 0.9)));
+        generation.abort();
+
+        assertThat(store.findSimilar(1, 10)).extracting(SimilarityResult::itemId2).containsExactly(3, 2);
+        assertThat(new MappedFileSimilarityStore(file).size()).isEqualTo(2);
+
+        store.deleteAll();
+        assertThat(store.findSimilar(1, 10)).isEmpty();
+        assertThat(Files.exists(file)).isFalse();
+        assertThat(dir.toFile().list()).isEmpty();
+    }
+
+    @Test
+    void generation_withUnorderedBatchesAndSmallChunks_shouldMatchInMemoryIndex() throws IOException {
+        Path file = dir.resolve("similarities.icf");
+        // 16-byte chunks, so every section spans many mappings
+        MappedFileSimilarityStore store = new MappedFileSimilarityStore(file, 4);
+        Random random = new Random(7);
+        List<SimilarityResult> all = new ArrayList<>();
+        for (int item = 1; item <= 40; item++) {
+            for (int neighbour = 1; neighbour <= 1 + random.nextInt(12); neighbour++) {
+                all.add(new SimilarityResult(item, 100 + neighbour, (1 + random.nextInt(1000)) / 1000.0));
+            }
+        }
+        Collections.shuffle(all, random);
+
+        SimilarityStore.Generation generation = store.beginGeneration();
+        for (int from = 0; from < all.size(); from += 7) {
+            generation.saveAll(all.subList(from, Math.min(all.size(), from + 7)));
+        }
+        generation.commit();
+
+        CompactSimilarityIndex expected = CompactSimilarityIndex.of(List.of(all));
+        MappedFileSimilarityStore reopened = new MappedFileSimilarityStore(file, 4);
+        for (int item = 1; item <= 40; item++) {
+            List<SimilarityResult> actual = reopened.findSimilar(item, 50);
+            List<SimilarityResult> wanted = expected.findSimilar(item, 50);
+            assertThat(actual).extracting(SimilarityResult::itemId2)
+                    .containsExactlyElementsOf(wanted.stream().map(SimilarityResult::itemId2).toList());
+            for (int k = 0; k < actual.size(); k++) {
+                assertThat(actual.get(k).score()).isCloseTo(wanted.get(k).score(), within(1e-5));
+            }
+        }
+        assertThat(reopened.size()).isEqualTo(all.size());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).containsExactly(file); // no spill or temporary file left behind
+        }
+    }
+
+    @Test
+    void open_withForeignFile_shouldFail() throws IOException {
+        Path file = Files.write(dir.resolve("other.bin"), new byte[32]);
+
+        assertThatThrownBy(() -> new MappedFileSimilarityStore(file))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("not a similarity file");
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.thacbao.itemcf.similarity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class CooccurrenceSimilarityStrategyTest {
+
+    // Users 1 and 2 are shared; item A has 4 users, item B has 3
+    private static final Map<Integer, Double> A = Map.of(1, 1.0, 2, 3.0, 3, 4.0, 4, 2.0);
+    private static final Map<Integer, Double> B = Map.of(1, 2.0, 2, 5.0, 5, 1.0);
+
+    @Test
+    void jaccard_shouldDivideCommonUsersByUnion() {
+        // 2 / (4 + 3 - 2)
+        assertThat(JaccardSimilarityStrategy.INSTANCE.compute(A, B)).isCloseTo(0.4, within(1e-12));
+    }
+
+    @Test
+    void conditionalProbability_shouldDampPopularNeighboursWithAlpha() {
+        // P(B | A) = 2 / 4
+        assertThat(ConditionalProbabilityStrategy.INSTANCE.compute(A, B)).isCloseTo(0.5, within(1e-12));
+        // 2 / (4 * 3)
+        assertThat(new ConditionalProbabilityStrategy(1.0).compute(A, B)).isCloseTo(2.0 / 12, within(1e-12));
+        assertThatThrownBy(() -> new ConditionalProbabilityStrategy(1.5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void pearson_shouldCorrelateScoresOfCommonUsers() {
+        Map<Integer, Double> v1 = Map.of(1, 1.0, 2, 2.0, 3, 3.0, 9, 5.0);
+        Map<Integer, Double> v2 = Map.of(1, 2.0, 2, 4.0, 3, 6.0);
+        Map<Integer, Double> reversed = Map.of(1, 3.0, 2, 2.0, 3, 1.0);
+
+        assertThat(PearsonCorrelationStrategy.INSTANCE.compute(v1, v2)).isCloseTo(1.0, within(1e-12));
+        assertThat(PearsonCorrelationStrategy.INSTANCE.compute(v1, reversed)).isCloseTo(-1.0, within(1e-12));
+        // Constant scores over the common users have no variance
+        assertThat(PearsonCorrelationStrategy.INSTANCE.compute(Map.of(1, 2.0, 2, 2.0), v2)).isEqualTo(0.0);
+    }
+
+    @Test
+    void sortedRows_shouldMatchMapComputation() {
+        int[] users = {1, 2, 3, 4, 1, 2, 5};
+        double[] scores = {1.0, 3.0, 4.0, 2.0, 2.0, 5.0, 1.0};
+
+        for (CooccurrenceSimilarityStrategy strategy : new CooccurrenceSimilarityStrategy[]{
+                JaccardSimilarityStrategy.INSTANCE, PearsonCorrelationStrategy.INSTANCE,
+                ConditionalProbabilityStrategy.INSTANCE}) {
+            assertThat(strategy.compute(users, scores, 0, 4, users, scores, 4, 7))
+                    .isCloseTo(strategy.compute(A, B), within(1e-12));
+        }
+    }
+
+    @Test
+    void adjustedCosine_onVectors_shouldBeCosineOverCommonUsers() {
+        Map<Integer, Double> centered1 = Map.of(1, 1.0, 2, -2.0, 3, 0.5);
+        Map<Integer, Double> centered2 = Map.of(1, 2.0, 2, -1.0, 4, 3.0);
+
+        // Users 1 and 2 only: (2 + 2) / (sqrt(5) * sqrt(5))
+        assertThat(AdjustedCosineSimilarityStrategy.INSTANCE.compute(centered1, centered2))
+                .isCloseTo(0.8, within(1e-12));
+    }
+}
@@ -91,4 +91,39 @@ class CosineSimilarityStrategyTest {
         double result = strategy.compute(v1, v2);
         assertThat(result).isBetween(0.0, 1.0);
     }
+
+    @Test
+    void sortedRows_shouldMatchMapComputation() {
+        Map<Integer, Double> vA = Map.of(1, 5.0, 2, 4.0, 3, 2.0);
+        Map<Integer, Double> vB = Map.of(1, 3.0, 2, 4.0);
+
+        int[] users = {1, 2, 3, 1, 2};
+        double[] scores = {5.0, 4.0, 2.0, 3.0, 4.0};
+
+        double fromRows = strategy.compute(users, scores, 0, 3, users, scores, 3, 5);
+        assertThat(fromRows).isCloseTo(strategy.compute(vA, vB), within(1e-12));
+    }
+
+    @Test
+    void sortedRowsWithNorms_shouldMatchMapComputation() {
+        Map<Integer, Double> vA = Map.of(1, 5.0, 2, 4.0, 3, 2.0);
+        Map<Integer, Double> vB = Map.of(1, 3.0, 2, 4.0, 7, 1.0);
+
+        int[] users = {1, 2, 3, 1, 2, 7};
+        double[] scores = {5.0, 4.0, 2.0, 3.0, 4.0, 1.0};
+
+        double fromRows = strategy.compute(users, scores, 0, 3, Math.sqrt(45), users, scores, 3, 6, Math.sqrt(26));
+        assertThat(fromRows).isEqualTo(strategy.compute(vA, vB));
+        assertThat(strategy.compute(users, scores, 0, 1, 5.0, users, scores, 5, 6, 1.0)).isEqualTo(0.0);
+    }
+
+    @Test
+    void sortedRows_defaultImplementation_shouldDelegateToMapComputation() {
+        SimilarityStrategy commonCount = (v1, v2) -> v1.keySet().stream().filter(v2::containsKey).count();
+
+        int[] users = {1, 4, 9, 4, 9, 12};
+        double[] scores = {1.0, 1.0, 1.0, 1.0, 1.0, 1.0};
+
+        assertThat(commonCount.compute(users, scores, 0, 3, users, scores, 3, 6)).isEqualTo(2.0);
+    }
 }
@@ -0,0 +1,44 @@
+package io.github.thacbao.itemcf.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntHashSetTest {
+
+    @Test
+    void add_shouldMatchJavaSetThroughResizes() {
+        IntHashSet set = new IntHashSet(2);
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(7);
+        for (int k = 0; k < 5_000; k++) {
+            int value = random.nextInt(3_000) - 1_500;
+            assertThat(set.add(value)).isEqualTo(expected.add(value));
+        }
+
+        assertThat(set.size()).isEqualTo(expected.size());
+        for (int value = -1_600; value < 1_600; value++) {
+            assertThat(set.contains(value)).isEqualTo(expected.contains(value));
+        }
+    }
+
+    @Test
+    void clear_shouldEmptyTheSetAndKeepItsCapacity() {
+        IntHashSet set = new IntHashSet();
+        for (int value = 0; value < 100; value++) {
+            set.add(value * 31);
+        }
+        int capacity = set.capacity();
+
+        set.clear();
+
+        assertThat(set.isEmpty()).isTrue();
+        assertThat(set.contains(31)).isFalse();
+        assertThat(set.capacity()).isEqualTo(capacity);
+        assertThat(set.add(31)).isTrue();
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.thacbao.itemcf.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKHeapTest {
+
+    @Test
+    void drainDescending_shouldReturnBestEntriesInOrder() {
+        TopKHeap heap = new TopKHeap(3);
+        heap.offer(1, 0.2);
+        heap.offer(2, 0.9);
+        heap.offer(3, 0.5);
+        heap.offer(4, 0.1); // worse than everything retained
+        heap.offer(5, 0.7); // evicts 0.2
+
+        int[] ids = new int[3];
+        double[] scores = new double[3];
+        int count = heap.drainDescending(ids, scores);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(ids).containsExactly(2, 5, 3);
+        assertThat(scores).containsExactly(0.9, 0.7, 0.5);
+        assertThat(heap.size()).isZero();
+    }
+
+    @Test
+    void offer_withHugeCapacity_shouldGrowAsEntriesArrive() {
+        TopKHeap heap = new TopKHeap(Integer.MAX_VALUE);
+        for (int id = 0; id < 100; id++) {
+            heap.offer(id, id / 100.0);
+        }
+
+        int[] ids = new int[100];
+        double[] scores = new double[100];
+        assertThat(heap.drainDescending(ids, scores)).isEqualTo(100);
+        assertThat(ids[0]).isEqualTo(99);
+        assertThat(ids[99]).isZero();
+    }
+
+    @Test
+    void ties_shouldPreferLowerIdsRegardlessOfInsertionOrder() {
+        TopKHeap forward = new TopKHeap(2);
+        TopKHeap backward = new TopKHeap(2);
+        for (int id = 1; id <= 5; id++) {
+            forward.offer(id, 0.5);
+            backward.offer(6 - id, 0.5);
+        }
+
+        int[] ids = new int[2];
+        double[] scores = new double[2];
+        forward.drainDescending(ids, scores);
+        assertThat(ids).containsExactly(1, 2);
+        backward.drainDescending(ids, scores);
+        assertThat(ids).containsExactly(1, 2);
+    }
+
+    @Test
+    void offer_shouldMatchFullSortOnRandomInput() {
+        Random random = new Random(1);
+        TopKHeap heap = new TopKHeap(10);
+        double[] all = new double[500];
+        for (int id = 0; id < all.length; id++) {
+            all[id] = random.nextDouble();
+            heap.offer(id, all[id]);
+        }
+
+        int[] ids = new int[10];
+        double[] scores = new double[10];
+        heap.drainDescending(ids, scores);
+
+        double[] sorted = all.clone();
+        Arrays.sort(sorted);
+        for (int k = 0; k < 10; k++) {
+            assertThat(scores[k]).isEqualTo(sorted[sorted.length - 1 - k]);
+            assertThat(all[ids[k]]).isEqualTo(scores[k]);
+        }
+    }
+}